@@ -0,0 +1,89 @@
+package com.tofti;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark fixtures. The world grows with the flock so that neighbourhood sizes stay comparable between 1k and
+ * 100k boids, otherwise the large flocks would measure nothing but pathological density.
+ */
+public final class Flocks {
+    public enum Distribution { UNIFORM, CLUSTERED }
+
+    static final double WINDOW_WIDTH = 1024;
+    static final double WINDOW_HEIGHT = 768;
+    static final double BOIDS_PER_WINDOW = 500;
+
+    static final int CLUSTER_SIZE = 50;
+    static final double CLUSTER_SPREAD = 2 * Boid.SEPERATION_DISTANCE;
+
+    private Flocks() {
+    }
+
+    static double xBound(int boids) {
+        return WINDOW_WIDTH * Math.max(1d, Math.sqrt(boids / BOIDS_PER_WINDOW));
+    }
+
+    static double yBound(int boids) {
+        return WINDOW_HEIGHT * Math.max(1d, Math.sqrt(boids / BOIDS_PER_WINDOW));
+    }
+
+    static double[][] positions(Distribution distribution, int n, double xBound, double yBound, Random rng) {
+        double[][] xy = new double[2][n];
+        double cx = 0;
+        double cy = 0;
+        for (int i = 0 ; i < n ; i++) {
+            if(distribution == Distribution.UNIFORM) {
+                xy[0][i] = rng.nextDouble() * xBound;
+                xy[1][i] = rng.nextDouble() * yBound;
+                continue;
+            }
+            if(i % CLUSTER_SIZE == 0) {
+                cx = rng.nextDouble() * xBound;
+                cy = rng.nextDouble() * yBound;
+            }
+            xy[0][i] = wrap(cx + rng.nextGaussian() * CLUSTER_SPREAD, xBound);
+            xy[1][i] = wrap(cy + rng.nextGaussian() * CLUSTER_SPREAD, yBound);
+        }
+        return xy;
+    }
+
+    private static double wrap(double v, double bound) {
+        return ((v % bound) + bound) % bound;
+    }
+
+    static FlockSimulation simulation(int n, Distribution distribution, boolean colorSensitive, long seed) {
+        FlockSimulation simulation = new FlockSimulation(xBound(n), yBound(n), seed);
+        simulation.setColorSensitive(colorSensitive);
+        double[][] xy = positions(distribution, n, xBound(n), yBound(n), new Random(seed));
+        simulation.getStore().ensureCapacity(n);
+        for (int i = 0 ; i < n ; i++) {
+            simulation.addBoid(xy[0][i], xy[1][i]);
+        }
+        return simulation;
+    }
+
+    static List<Boid> boids(int n, Distribution distribution, boolean colorSensitive, long seed) {
+        Random rng = new Random(seed);
+        double[][] xy = positions(distribution, n, xBound(n), yBound(n), rng);
+        List<Boid> boids = Lists.newArrayListWithCapacity(n);
+        for (int i = 0 ; i < n ; i++) {
+            Boid b = new Boid(xy[0][i], xy[1][i], xBound(n), yBound(n), rng);
+            b.setColorSensitive(colorSensitive);
+            boids.add(b);
+        }
+        return boids;
+    }
+
+    static SpatialGrid index(List<Boid> boids, SpatialGrid grid, double[] xs, double[] ys) {
+        for (int i = 0 ; i < boids.size() ; i++) {
+            xs[i] = boids.get(i).location.getX();
+            ys[i] = boids.get(i).location.getY();
+        }
+        Boid first = boids.get(0);
+        grid.rebuild(xs, ys, boids.size(), first.getXBound(), first.getYBound());
+        return grid;
+    }
+}
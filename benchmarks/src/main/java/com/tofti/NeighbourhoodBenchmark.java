@@ -0,0 +1,69 @@
+package com.tofti;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single neighbour queries, each invocation asks on behalf of the next boid in the flock.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeighbourhoodBenchmark {
+    @Param({"1000", "10000", "100000"})
+    int boids;
+
+    @Param({"UNIFORM", "CLUSTERED"})
+    Flocks.Distribution distribution;
+
+    @Param({"false", "true"})
+    boolean colorSensitive;
+
+    List<Boid> flock;
+    SpatialGrid grid;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        flock = Flocks.boids(boids, distribution, colorSensitive, 42);
+        grid = Flocks.index(flock, new SpatialGrid(Boid.CENTER_OF_MASS_NEIGHBORHOOD), new double[boids], new double[boids]);
+    }
+
+    private Boid nextBoid() {
+        next = next + 1 == boids ? 0 : next + 1;
+        return flock.get(next);
+    }
+
+    @Benchmark
+    public List<Boid> boidsWithinDistanceGrid() {
+        return Boid.boidsWithinDistance(flock, grid, nextBoid(), Boid.CENTER_OF_MASS_NEIGHBORHOOD);
+    }
+
+    @Benchmark
+    public List<Boid> boidsWithinDistanceScan() {
+        return Boid.boidsWithinDistance(flock, nextBoid(), Boid.CENTER_OF_MASS_NEIGHBORHOOD);
+    }
+
+    @Benchmark
+    public Optional<Vector2D> getCentreOfMass() {
+        Boid boid = nextBoid();
+        return Boid.getCentreOfMass(Boid.boidsWithinDistance(flock, grid, boid, Boid.CENTER_OF_MASS_NEIGHBORHOOD), boid);
+    }
+}
@@ -0,0 +1,72 @@
+package com.tofti;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full tick of the flock, through the {@link FlockSimulation} kernel and through the {@link Boid} reference
+ * implementation. The flock keeps evolving across invocations, as it would on screen.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TickBenchmark {
+    @Param({"1000", "10000", "100000"})
+    int boids;
+
+    @Param({"UNIFORM", "CLUSTERED"})
+    Flocks.Distribution distribution;
+
+    @Param({"false", "true"})
+    boolean colorSensitive;
+
+    FlockSimulation simulation;
+
+    List<Boid> flock;
+    SpatialGrid grid;
+    double[] xs;
+    double[] ys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        simulation = Flocks.simulation(boids, distribution, colorSensitive, 42);
+        flock = Flocks.boids(boids, distribution, colorSensitive, 42);
+        grid = new SpatialGrid(Boid.CENTER_OF_MASS_NEIGHBORHOOD);
+        xs = new double[boids];
+        ys = new double[boids];
+    }
+
+    @Benchmark
+    public FlockSimulation simulationStep() {
+        simulation.step(1d);
+        return simulation;
+    }
+
+    @Benchmark
+    public List<Boid> boidUpdate() {
+        Flocks.index(flock, grid, xs, ys);
+        for (Boid b : flock) {
+            b.update(flock, grid, null, 1d);
+        }
+        for (Boid b : flock) {
+            b.commit();
+        }
+        return flock;
+    }
+}
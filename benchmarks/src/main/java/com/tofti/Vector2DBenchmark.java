@@ -0,0 +1,60 @@
+package com.tofti;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Vector2DBenchmark {
+    Vector2D a = new Vector2D(3.5d, -1.25d);
+    Vector2D b = new Vector2D(-7.75d, 2.5d);
+    MutableVector2D m = new MutableVector2D();
+
+    @Benchmark
+    public Vector2D plus() {
+        return a.plus(b);
+    }
+
+    @Benchmark
+    public Vector2D minus() {
+        return a.minus(b);
+    }
+
+    @Benchmark
+    public Vector2D normalizeTo() {
+        return a.normalizeTo(Boid.MAX_VELOCITY);
+    }
+
+    @Benchmark
+    public Vector2D wrapAround() {
+        return b.wrapAround(1024d, 768d);
+    }
+
+    @Benchmark
+    public double getDistanceBetween() {
+        return Vector2D.getDistanceBetween(a, b);
+    }
+
+    @Benchmark
+    public boolean isWithinDistance() {
+        return Vector2D.isWithinDistance(a, b, Boid.SEPERATION_DISTANCE);
+    }
+
+    @Benchmark
+    public MutableVector2D mutableSteering() {
+        return m.set(a).add(b).sub(a).normalizeTo(Boid.MAX_VELOCITY);
+    }
+}
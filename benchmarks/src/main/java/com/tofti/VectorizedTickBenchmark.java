@@ -0,0 +1,51 @@
+package com.tofti;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full tick of the {@link FlockSimulation} kernel with the scalar and with the SIMD neighbour walk. The forked
+ * JVM has the Vector API, so {@code vectorized} takes effect.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorizedTickBenchmark {
+    @Param({"1000", "10000", "100000"})
+    int boids;
+
+    @Param({"UNIFORM", "CLUSTERED"})
+    Flocks.Distribution distribution;
+
+    @Param({"false", "true"})
+    boolean vectorized;
+
+    FlockSimulation simulation;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        simulation = Flocks.simulation(boids, distribution, false, 42);
+        simulation.setVectorized(vectorized);
+    }
+
+    @Benchmark
+    public FlockSimulation simulationStep() {
+        simulation.step(1d);
+        return simulation;
+    }
+}
@@ -0,0 +1,127 @@
+package com.tofti;
+
+import com.google.common.collect.Lists;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs every trial a {@link Scenario} file sets out and writes the {@link FlockStatistics} of each flock after its
+ * last tick as a CSV row, e.g. {@code java -cp alife.jar com.tofti.BatchRunner sweep.properties --out=sweep.csv}.
+ * Trials are independent, so one runs on every core ({@code --threads=<n>} for fewer), each stepping its flock
+ * sequentially. Rows are written as trials finish, so a sweep cut short keeps the trials it finished; the trial
+ * column is the scenario's place in the file's order.
+ */
+public class BatchRunner {
+
+    public static void main(String[] arguments) throws IOException, InterruptedException {
+        List<String> positional = Lists.newArrayList();
+        Path out = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (String a : arguments) {
+            if(a.startsWith("--out=")) {
+                out = Paths.get(a.substring("--out=".length()));
+            } else if(a.startsWith("--threads=")) {
+                threads = Integer.parseInt(a.substring("--threads=".length()));
+            } else {
+                positional.add(a);
+            }
+        }
+        if(positional.size() != 1) {
+            System.err.println("usage: BatchRunner <scenario.properties> [--out=<file.csv>] [--threads=<n>]");
+            System.exit(1);
+        }
+        List<Scenario> scenarios = Scenario.load(Paths.get(positional.get(0)));
+        System.err.println(scenarios.size() + " trials on " + threads + " threads");
+        if(out == null) {
+            PrintWriter writer = new PrintWriter(System.out);
+            run(scenarios, threads, writer);
+            writer.flush();
+        } else {
+            try (Writer writer = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+                run(scenarios, threads, writer);
+            }
+        }
+    }
+
+    /**
+     * Runs the trials on {@code threads} threads, writing a header and then one row per trial as it finishes. Stops
+     * at the first trial that fails.
+     */
+    static void run(List<Scenario> scenarios, int threads, Writer out) throws IOException, InterruptedException {
+        if(scenarios.isEmpty()) {
+            return;
+        }
+        StringBuilder header = new StringBuilder("trial,seed");
+        for (String key : scenarios.get(0).getSwept().keySet()) {
+            header.append(',').append(key);
+        }
+        out.write(header.append(",boids,ticks,polarization,clusters,mean_nearest_neighbour,seconds\n").toString());
+        out.flush();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "batch-trial");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ExecutorCompletionService<String> completion = new ExecutorCompletionService<>(executor);
+        List<Future<String>> futures = Lists.newArrayList();
+        try {
+            for (int t = 0 ; t < scenarios.size() ; t++) {
+                int trial = t;
+                futures.add(completion.submit(() -> row(trial, scenarios.get(trial))));
+            }
+            for (int t = 0 ; t < scenarios.size() ; t++) {
+                out.write(completion.take().get());
+                out.flush();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("a trial failed", e.getCause());
+        } finally {
+            for (Future<String> f : futures) {
+                f.cancel(true);
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    static String row(int trial, Scenario scenario) throws IOException {
+        long start = System.nanoTime();
+        FlockSimulation simulation = scenario.create();
+        for (int i = 0 ; i < scenario.getTicks() ; i++) {
+            simulation.step(1d);
+        }
+        FlockStatistics statistics = FlockStatistics.of(simulation, scenario.getClusterDistance());
+        double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+
+        StringBuilder row = new StringBuilder().append(trial).append(',').append(scenario.getSeed());
+        for (String value : scenario.getSwept().values()) {
+            row.append(',').append(quote(value));
+        }
+        return row.append(',').append(statistics.getBoids())
+                .append(',').append(scenario.getTicks())
+                .append(',').append(String.format(Locale.ROOT, "%.6f", statistics.getPolarization()))
+                .append(',').append(statistics.getClusters())
+                .append(',').append(String.format(Locale.ROOT, "%.4f", statistics.getMeanNearestNeighbour()))
+                .append(',').append(String.format(Locale.ROOT, "%.3f", seconds))
+                .append('\n').toString();
+    }
+
+    // values never hold commas, which separate alternatives, but may hold spaces
+    private static String quote(String value) {
+        return value.contains(" ") ? '"' + value + '"' : value;
+    }
+}
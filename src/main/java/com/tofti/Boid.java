@@ -0,0 +1,205 @@
+package com.tofti;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class Boid {
+    public static final boolean COLOR_SENSITIVE_DEFAULT = false;
+    Vector2D location;
+    Vector2D velocity;
+
+    // written by update, published by commit, so every boid in a tick reads the previous tick's state
+    Vector2D nextLocation;
+    Vector2D nextVelocity;
+
+    // per-boid scratch space for update, so the steering maths doesn't allocate
+    final MutableVector2D steering = new MutableVector2D();
+    final NeighbourSums neighbours = new NeighbourSums();
+
+    double xBound;
+    double yBound;
+
+    double aligmentWeight;
+    double seperationWeight;
+    double cohesionWeight;
+
+    boolean colorSensitive;
+
+    int color;
+
+    static final double MAX_VELOCITY = 3;
+
+    static final double TRI_SIZE = 8d;
+
+    static final double SEPERATION_DISTANCE = 10 * TRI_SIZE;
+    static final double ALIGNMENT_DISTANCE = 15 * TRI_SIZE;
+    static final double CENTER_OF_MASS_NEIGHBORHOOD = 25 * TRI_SIZE;
+    static final double DEFAULT_WEIGHT = 0.5d;
+    static final double MAX_WEIGHT = 3d;
+
+    static final int COLOR_COUNT = 4;
+
+    static final double PERTURBATION_PROBABILITY = 0.01;
+    static final double PERTURBATION_MAGNITUDE = 0.5;
+
+    static Function<Boid, Vector2D> TO_LOCATION_VECTOR_2D = b -> b.location;
+    static Function<Boid, Vector2D> TO_VELOCITY_VECTOR_2D = b -> b.velocity;
+
+    static Function<List<Boid>, List<Vector2D>> TO_LOCATION_VECTOR_2D_LIST
+            = lb -> lb.stream().map(TO_LOCATION_VECTOR_2D).collect(Collectors.toList());
+
+    static Function<List<Boid>, List<Vector2D>> TO_VELOCITY_VECTOR_2D_LIST
+            = lb -> lb.stream().map(TO_VELOCITY_VECTOR_2D).collect(Collectors.toList());
+
+    Boid(double locX, double locY, double xBound, double yBound, Random rng) {
+        this.location = new Vector2D(locX, locY);
+        this.xBound = xBound;
+        this.yBound = yBound;
+        this.velocity = new Vector2D(rng.nextDouble() * MAX_VELOCITY - 0.5 * MAX_VELOCITY,
+                                     rng.nextDouble() * MAX_VELOCITY - 0.5 * MAX_VELOCITY);
+
+        this.setAligmentWeight(DEFAULT_WEIGHT);
+        this.setSeperationWeight(DEFAULT_WEIGHT);
+        this.setCohesionWeight(DEFAULT_WEIGHT);
+        this.setColorSensitive(COLOR_SENSITIVE_DEFAULT);
+
+        color = rng.nextInt(COLOR_COUNT);
+    }
+
+    public Vector2D getLocation() {
+        return location;
+    }
+
+    public Vector2D getVelocity() {
+        return velocity;
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    public void setAligmentWeight(double aligmentWeight) {
+        this.aligmentWeight = aligmentWeight;
+    }
+
+    public void setSeperationWeight(double seperationWeight) {
+        this.seperationWeight = seperationWeight;
+    }
+
+    public void setCohesionWeight(double cohesionWeight) {
+        this.cohesionWeight = cohesionWeight;
+    }
+
+    public double getXBound() {
+        return xBound;
+    }
+
+    public void setXBound(double xBound) {
+        this.xBound = xBound;
+    }
+
+    public double getYBound() {
+        return yBound;
+    }
+
+    public void setYBound(double yBound) {
+        this.yBound = yBound;
+    }
+
+    public void setColorSensitive(Boolean colorSensitive) {
+        this.colorSensitive = colorSensitive;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("location=[%s] velocity=[%s]" + System.lineSeparator(), location, velocity);
+    }
+
+    void update(List<Boid> all, SpatialGrid grid, Vector2D perturbation, double dt) {
+        double x = location.getX();
+        double y = location.getY();
+        NeighbourSums sums = neighbours.reset();
+        grid.forEachCandidate(x, y, sums.getRadius(), i -> {
+            Boid o = all.get(i);
+            if(o != this && (!colorSensitive || color == o.color)) {
+                sums.add(x, y, o.location.getX(), o.location.getY(), o.velocity.getX(), o.velocity.getY());
+            }
+        });
+
+        MutableVector2D steered = sums.steer(steering.set(velocity), x, y, cohesionWeight, seperationWeight, aligmentWeight);
+        if(perturbation != null) {
+            steered.add(perturbation);
+        }
+
+        steered.normalizeTo(MAX_VELOCITY);
+        nextVelocity = steered.toVector2D();
+        nextLocation = new Vector2D(Vector2D.wrap(x + steered.getX() * dt, xBound),
+                                    Vector2D.wrap(y + steered.getY() * dt, yBound));
+    }
+
+    void commit() {
+        location = nextLocation;
+        velocity = nextVelocity;
+    }
+
+    /**
+     * Sets {@code out} to the random nudge of the boid with {@code stream}, see {@link BoidRandom#stream}, returning
+     * false if it isn't nudged this tick.
+     */
+    static boolean perturbation(long stream, MutableVector2D out) {
+        if(BoidRandom.nextDouble(stream, 0) >= PERTURBATION_PROBABILITY) {
+            return false;
+        }
+        out.set(BoidRandom.nextDouble(stream, 1) - 0.5, BoidRandom.nextDouble(stream, 2) - 0.5)
+                .normalizeTo(PERTURBATION_MAGNITUDE);
+        return true;
+    }
+
+    static Vector2D randomPerturbation(long seed, long id, long tick) {
+        MutableVector2D p = new MutableVector2D();
+        return perturbation(BoidRandom.stream(seed, id, tick), p) ? p.toVector2D() : null;
+    }
+
+    static List<Boid> boidsWithinDistance(List<Boid> others, Boid thiz, double distance) {
+        return others.stream()
+                      .filter(o -> !thiz.colorSensitive || (thiz.color == o.color))
+                      .filter(o -> Vector2D.isWithinDistance(TO_LOCATION_VECTOR_2D.apply(o),
+                                                             TO_LOCATION_VECTOR_2D.apply(thiz), distance))
+
+                     .collect(Collectors.toList());
+    }
+
+    static List<Boid> boidsWithinDistance(List<Boid> all, SpatialGrid grid, Boid thiz, double distance) {
+        List<Boid> within = Lists.newArrayList();
+        grid.forEachCandidate(thiz.location.getX(), thiz.location.getY(), distance, i -> {
+            Boid o = all.get(i);
+            if(o != thiz
+                    && (!thiz.colorSensitive || thiz.color == o.color)
+                    && Vector2D.isWithinDistance(o.location, thiz.location, distance)) {
+                within.add(o);
+            }
+        });
+        return within;
+    }
+
+    static Optional<Vector2D> getCentreOfMass(List<Boid> boids, Boid forBoid) {
+        if(boids.isEmpty()) {
+            return Optional.empty();
+        }
+
+        List<Boid> othersWithinDistance
+                = boidsWithinDistance(boids, forBoid, CENTER_OF_MASS_NEIGHBORHOOD);
+
+        if(othersWithinDistance.isEmpty()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(
+                Vector2D.getArithmeticMean(TO_LOCATION_VECTOR_2D_LIST.apply(othersWithinDistance)));
+    }
+}
@@ -0,0 +1,48 @@
+package com.tofti;
+
+/**
+ * Random numbers keyed by world seed, boid id and tick instead of drawn from one shared generator. Every boid gets
+ * its own stream per tick, so a draw doesn't depend on which thread makes it or in which order the boids are
+ * updated, nothing is shared between threads, and any tick of any boid can be reproduced from the seed alone.
+ * <p>
+ * Streams are derived the way {@link java.util.SplittableRandom} splits and advances its state: a golden-ratio
+ * increment followed by the SplitMix64 finalizer. Nothing is allocated.
+ */
+public final class BoidRandom {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    /** The tick key of the draws made when a boid is spawned. */
+    static final long SPAWN = -1L;
+
+    private BoidRandom() {
+    }
+
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * The stream of boid {@code id} at {@code tick} in the world seeded with {@code seed}.
+     */
+    public static long stream(long seed, long id, long tick) {
+        long boid = mix64(seed + (id + 1) * GOLDEN_GAMMA);
+        return mix64(boid + (tick + 1) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * The {@code n}th double of {@code stream}, uniform in [0, 1).
+     */
+    public static double nextDouble(long stream, int n) {
+        return (mix64(stream + (n + 1) * GOLDEN_GAMMA) >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * The {@code n}th int of {@code stream}, uniform in [0, bound).
+     */
+    public static int nextInt(long stream, int n, int bound) {
+        return (int) (nextDouble(stream, n) * bound);
+    }
+}
@@ -1,30 +1,42 @@
 package com.tofti;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import com.sun.javafx.perf.PerformanceTracker;
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.property.DoubleProperty;
 import javafx.beans.value.ChangeListener;
 import javafx.scene.*;
 import javafx.scene.control.*;
 import javafx.scene.input.MouseButton;
 import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
 import javafx.scene.shape.Polygon;
 import javafx.scene.shape.Rectangle;
-import javafx.scene.shape.Sphere;
 import javafx.stage.Stage;
 
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
-import java.util.Random;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 public class Boids extends Application {
 
+    // pass --renderer=canvas or --renderer=pixels to draw the flock in one batched pass instead of a node per boid,
+    // --steps-per-second, --catch-up=catch_up|slow_down and --max-steps-per-frame tune the simulation thread,
+    // --metrics=file.csv or --metrics=file.json dumps the metrics every --metrics-period milliseconds,
+    // --checkpoint=file is where the Save and Restore buttons keep the flock,
+    // --record=file records every --record-every'th tick, --replay=file plays a recording back instead of simulating,
+    // --world=WIDTHxHEIGHT fixes the world size instead of following the window, --boids is how many boids Reset
+    // spawns and --density-zoom is the zoom below which the flock is drawn as density tiles,
+    // --burst is how many boids a shortcut click spawns around the mouse, a shift click removes the boids around it,
+    // --environment=file loads obstacles and attractors, see Environment
     public static void main(String[] args) {
         Application.launch(args);
     }
@@ -33,289 +45,301 @@ public class Boids extends Application {
     private static int DEFAULT_WINDOW_HEIGHT = 768;
     private static boolean USE_DEPTH_BUFFER = true;
     private static double DEBUG_MARKER_SIZE = 5;
+    private static String DEFAULT_RENDERER = "nodes";
+    private static String DEFAULT_CHECKPOINT = "flock.checkpoint";
+    private static int DEFAULT_BOIDS = 1;
+    private static int DEFAULT_BURST = 1000;
+    private static List<String> SPECIES_NAMES = Arrays.asList("Red", "Green", "Blue", "Cyan");
+    private static double BRUSH_RADIUS = 50;
+    private static double ZOOM_PER_SCROLL_PIXEL = 1.005;
+
+    private SimulationScheduler scheduler;
+    private MetricsReporter reporter;
+    private TrajectoryRecorder recorder;
+    private TrajectoryPlayer player;
 
-    static class Boid {
-        public static final boolean COLOR_SENSITIVE_DEFAULT = false;
-        Vector2D location;
-        Vector2D velocity;
-
-        double xBound;
-        double yBound;
-
-        double aligmentWeight;
-        double seperationWeight;
-        double cohesionWeight;
-
-        boolean colorSensitive;
-
-        Sphere sphere;
-        Polygon poly;
-        Color color;
-
-        static final double MAX_VELOCITY = 3;
-
-        static final int LOC_Z = 0;
-        static final int RADIUS = 5;
-        static final double TRI_SIZE = 8d;
-
-        static final double SEPERATION_DISTANCE = 10 * TRI_SIZE;
-        static final double ALIGNMENT_DISTANCE = 15 * TRI_SIZE;
-        static final double CENTER_OF_MASS_NEIGHBORHOOD = 25 * TRI_SIZE;
-        static final double DEFAULT_WEIGHT = 0.5d;
-        static final double MAX_WEIGHT = 3d;
-
-        static Function<Boid, Vector2D> TO_LOCATION_VECTOR_2D = b -> b.location;
-        static Function<Boid, Vector2D> TO_VELOCITY_VECTOR_2D = b -> b.velocity;
-
-        static Function<List<Boid>, List<Vector2D>> TO_LOCATION_VECTOR_2D_LIST
-                = lb -> lb.stream().map(TO_LOCATION_VECTOR_2D).collect(Collectors.toList());
-
-        static Function<List<Boid>, List<Vector2D>> TO_VELOCITY_VECTOR_2D_LIST
-                = lb -> lb.stream().map(TO_VELOCITY_VECTOR_2D).collect(Collectors.toList());
-
-        static final Random RNG = new Random(System.currentTimeMillis());
-        static final ImmutableList<Color> COLORS = ImmutableList.of(Color.RED, Color.GREEN, Color.BLUE, Color.CYAN);
-
-        Boid(double locX, double locY, double xBound, double yBound) {
-            this.location = new Vector2D(locX, locY);
-            this.xBound = xBound;
-            this.yBound = yBound;
-            this.velocity = new Vector2D(RNG.nextDouble() * MAX_VELOCITY - 0.5 * MAX_VELOCITY,
-                                         RNG.nextDouble() * MAX_VELOCITY- 0.5 * MAX_VELOCITY);
-
-            this.setAligmentWeight(DEFAULT_WEIGHT);
-            this.setSeperationWeight(DEFAULT_WEIGHT);
-            this.setCohesionWeight(DEFAULT_WEIGHT);
-            this.setColorSensitive(COLOR_SENSITIVE_DEFAULT);
-
-            this.sphere = new Sphere(RADIUS);
-            this.poly = new Polygon();
-            poly.getPoints().addAll(new Double[]{0.0, TRI_SIZE, TRI_SIZE, -TRI_SIZE, -TRI_SIZE, -TRI_SIZE });
-            poly.setCache(true);
-            poly.setCacheHint(CacheHint.SPEED);
-
-            color = COLORS.get(RNG.nextInt(COLORS.size()));
-            poly.setFill(color);
-        }
-
-        public void setAligmentWeight(double aligmentWeight) {
-            this.aligmentWeight = aligmentWeight;
-        }
-
-        public void setSeperationWeight(double seperationWeight) {
-            this.seperationWeight = seperationWeight;
-        }
+    static Rectangle addDebugMarkers(double x, double y, double xSize, double ySize) {
+        Rectangle tl = new Rectangle(x, y, xSize, ySize);
+        tl.setFill(Color.RED);
+        return tl;
+    }
 
-        public void setCohesionWeight(double cohesionWeight) {
-            this.cohesionWeight = cohesionWeight;
+    static List<Node> environmentNodes(Environment environment) {
+        List<Node> nodes = Lists.newArrayList();
+        for (Environment.Circle c : environment.getCircles()) {
+            Circle circle = new Circle(c.getX(), c.getY(), c.getRadius());
+            circle.setFill(Color.DIMGRAY);
+            nodes.add(circle);
         }
-
-        public double getXBound() {
-            return xBound;
+        for (Environment.Polygon p : environment.getPolygons()) {
+            Polygon polygon = new Polygon(p.getPoints());
+            polygon.setFill(Color.DIMGRAY);
+            nodes.add(polygon);
         }
-
-        public void setXBound(double xBound) {
-            this.xBound = xBound;
+        for (Environment.Attractor a : environment.getAttractors()) {
+            Circle ring = new Circle(a.getX(), a.getY(), a.getRadius());
+            ring.setFill(null);
+            ring.setStroke(a.getStrength() < 0 ? Color.DARKRED : Color.DARKGREEN);
+            nodes.add(ring);
         }
+        return nodes;
+    }
 
-        public double getYBound() {
-            return yBound;
-        }
+    static  List<Rectangle> reinitDebugMarkersInCorner( List<Rectangle> nodes, double xBound, double yBound) {
+        nodes.clear();
+        nodes.add(addDebugMarkers( 0, 0, DEBUG_MARKER_SIZE , DEBUG_MARKER_SIZE));
+        nodes.add(addDebugMarkers( xBound-DEBUG_MARKER_SIZE, 0, DEBUG_MARKER_SIZE , DEBUG_MARKER_SIZE));
+        nodes.add(addDebugMarkers( xBound-DEBUG_MARKER_SIZE, yBound-DEBUG_MARKER_SIZE, DEBUG_MARKER_SIZE , DEBUG_MARKER_SIZE));
+        nodes.add(addDebugMarkers( 0, yBound-DEBUG_MARKER_SIZE, DEBUG_MARKER_SIZE , DEBUG_MARKER_SIZE));
+        return nodes;
+    }
 
-        public void setYBound(double yBound) {
-            this.yBound = yBound;
-        }
+    void reinit(SimulationScheduler scheduler, List<Slider> sliders) {
+        int boids = Integer.parseInt(getParameters().getNamed().getOrDefault("boids", String.valueOf(DEFAULT_BOIDS)));
+        scheduler.submit(simulation -> {
+            simulation.clear();
+            simulation.addRandomBoids(boids);
+        });
+        sliders.stream().forEach(s -> s.valueProperty().set(Boid.DEFAULT_WEIGHT));
+    }
 
-        @Override
-        public String toString() {
-            return String.format("location=[%s] velocity=[%s]" + System.lineSeparator(), location, velocity);
-        }
+    SimulationScheduler createScheduler(FlockSimulation simulation) {
+        Map<String, String> named = getParameters().getNamed();
+        SimulationScheduler scheduler = new SimulationScheduler(simulation,
+                Double.parseDouble(named.getOrDefault("steps-per-second", String.valueOf(SimulationScheduler.DEFAULT_STEPS_PER_SECOND))),
+                1d,
+                SimulationScheduler.CatchUpPolicy.valueOf(named.getOrDefault("catch-up", "catch_up").toUpperCase()),
+                Integer.parseInt(named.getOrDefault("max-steps-per-frame", String.valueOf(SimulationScheduler.DEFAULT_MAX_STEPS_PER_FRAME))));
+        scheduler.setFailureHandler(t -> {
+            System.err.println("the simulation stopped: " + t);
+            t.printStackTrace();
+        });
+        return scheduler;
+    }
 
-        void updateAndRender(List<Boid> all) {
-            update(all);
-            render();
+    // runs on the simulation thread, the flock keeps the world's bounds rather than the saved ones
+    static void restore(FlockSimulation simulation, Path checkpoint, double width, double height, Consumer<double[]> showWeights) {
+        try {
+            FlockCheckpoint.restore(simulation, checkpoint);
+        } catch (IOException e) {
+            System.err.println("could not restore " + checkpoint + ": " + e);
+            return;
         }
+        simulation.setXBound(width);
+        simulation.setYBound(height);
+        showWeights.accept(new double[]{simulation.getAlignmentWeight(), simulation.getCohesionWeight(), simulation.getSeparationWeight()});
+    }
 
-        void update(List<Boid> all) {
-            List<Boid> others = Lists.newArrayList(all);
-            others.remove(this);
-
-            Optional<Vector2D> centreOfMassAdj = centreOfMassVelocity(others, cohesionWeight);
-            if(centreOfMassAdj.isPresent()) {
-                velocity = velocity.plus(centreOfMassAdj.get());
-            }
-
-            Optional<Vector2D> avoidOthersAdj = avoidOthersAdj(others, seperationWeight);
-            if(avoidOthersAdj.isPresent()) {
-                velocity = velocity.plus(avoidOthersAdj.get());
-            }
-
-            Optional<Vector2D> alignmentAdj = alignmentAdj(others, aligmentWeight);
-            if(alignmentAdj.isPresent()) {
-                velocity = velocity.plus(alignmentAdj.get());
+    /**
+     * Moves the sliders to {@code weights} while {@code showing} keeps their listeners from sending the weights back
+     * to the simulation, which would overwrite the per-species and per-boid weights with them.
+     */
+    static void showWeights(List<DoubleProperty> sliders, AtomicBoolean showing, double[] weights) {
+        showing.set(true);
+        try {
+            for (int i = 0 ; i < weights.length ; i++) {
+                sliders.get(i).set(weights[i]);
             }
+        } finally {
+            showing.set(false);
+        }
+    }
 
-            if(RNG.nextDouble() < 0.01) {
-                velocity = velocity.plus(new Vector2D(RNG.nextDouble() - 0.5, RNG.nextDouble() - 0.5).normalizeTo(0.5));
+    static ChangeListener<Number> unlessShowing(AtomicBoolean showing, ChangeListener<Number> listener) {
+        return (ov, oldValue, newValue) -> {
+            if(!showing.get()) {
+                listener.changed(ov, oldValue, newValue);
             }
+        };
+    }
 
-            velocity = velocity.normalizeTo(MAX_VELOCITY);
-            location = location.plus(velocity);
-            location = location.wrapAround(xBound, yBound);
+    MetricsReporter createReporter(FlockMetrics metrics) throws IOException {
+        Map<String, String> named = getParameters().getNamed();
+        MetricsReporter reporter = new MetricsReporter(metrics,
+                Long.parseLong(named.getOrDefault("metrics-period", String.valueOf(MetricsReporter.DEFAULT_PERIOD_MILLIS))),
+                TimeUnit.MILLISECONDS);
+        if(named.containsKey("metrics")) {
+            reporter.dumpTo(Paths.get(named.get("metrics")));
         }
+        return reporter;
+    }
 
-        private Optional<Vector2D> alignmentAdj(List<Boid> boids, double magnitude) {
-            if(boids.isEmpty()) {
-                return Optional.empty();
-            }
+    FlockRenderer createRenderer(double width, double height) {
+        Map<String, String> named = getParameters().getNamed();
+        return FlockRenderer.create(named.getOrDefault("renderer", DEFAULT_RENDERER), width, height,
+                Double.parseDouble(named.getOrDefault("density-zoom", String.valueOf(LevelOfDetailRenderer.DEFAULT_DENSITY_ZOOM))));
+    }
 
-            List<Boid> othersWithinDistance
-                    = boidsWithinDistance(boids, this, SEPERATION_DISTANCE);
-            if(othersWithinDistance.isEmpty()) {
-                return Optional.empty();
-            }
-            return Optional.of(
-                    Vector2D.getArithmeticMean(TO_VELOCITY_VECTOR_2D_LIST.apply(othersWithinDistance)).normalizeTo(magnitude));
+    // the --world size, or null when the world follows the window
+    double[] worldSize() {
+        String world = getParameters().getNamed().get("world");
+        if(world == null) {
+            return null;
         }
+        String[] parts = world.toLowerCase().split("x");
+        if(parts.length != 2) {
+            throw new IllegalArgumentException("expected --world=WIDTHxHEIGHT, got " + world);
+        }
+        return new double[]{Double.parseDouble(parts[0]), Double.parseDouble(parts[1])};
+    }
 
-        private Optional<Vector2D> avoidOthersAdj(List<Boid> boids, double magnitude) {
-            if(boids.isEmpty()) {
-                return Optional.empty();
-            }
-            List<Boid> othersWithinDistance
-                    = boidsWithinDistance(boids, this, SEPERATION_DISTANCE);
-
-            if(othersWithinDistance.isEmpty()) {
-                return Optional.empty();
+    // dragging pans the viewport and scrolling zooms it about the mouse
+    static void navigate(Scene scene, Viewport viewport) {
+        final double[] last = new double[2];
+        scene.setOnMousePressed(e -> {
+            last[0] = e.getSceneX();
+            last[1] = e.getSceneY();
+        });
+        scene.setOnMouseDragged(e -> {
+            if(e.getButton() == MouseButton.PRIMARY) {
+                viewport.pan(e.getSceneX() - last[0], e.getSceneY() - last[1]);
+                last[0] = e.getSceneX();
+                last[1] = e.getSceneY();
             }
+        });
+        scene.setOnScroll(e -> viewport.zoomAt(Math.pow(ZOOM_PER_SCROLL_PIXEL, e.getDeltaY()), e.getSceneX(), e.getSceneY()));
+        scene.widthProperty().addListener((obs, oldVal, newVal) -> viewport.setScreenSize(scene.getWidth(), scene.getHeight()));
+        scene.heightProperty().addListener((obs, oldVal, newVal) -> viewport.setScreenSize(scene.getWidth(), scene.getHeight()));
+    }
 
-            Vector2D thisVec = TO_LOCATION_VECTOR_2D.apply(this);
-
-            Vector2D adj = new Vector2D(0d, 0d);
-            for(Vector2D other : TO_LOCATION_VECTOR_2D_LIST.apply(othersWithinDistance)) {
-                adj = adj.plus(thisVec.minus(other));
+    @Override
+    public void stop() throws Exception {
+        try {
+            if(scheduler != null) {
+                // rethrows what stopped the simulation thread, after the others are closed
+                scheduler.close();
             }
-            return Optional.of(adj.normalizeTo(magnitude));
-        }
-
-        private Optional<Vector2D> centreOfMassVelocity(List<Boid> all, double magnitude) {
-            Optional<Vector2D> center = getCentreOfMass(all, this);
-            if(!center.isPresent()) {
-                return center;
+        } finally {
+            if(reporter != null) {
+                reporter.close();
             }
-            Vector2D v = center.get().minus(location);
-            return Optional.of(v.normalizeTo(magnitude));
-        }
-
-        static List<Boid> boidsWithinDistance(List<Boid> others, Boid thiz, double distance) {
-            List<Vector2D> othersLocations = TO_LOCATION_VECTOR_2D_LIST.apply(others);
-            return others.stream()
-                          .filter(o -> !thiz.colorSensitive || (thiz.color == o.color))
-                          .filter(o -> Vector2D.getDistanceBetween(TO_LOCATION_VECTOR_2D.apply(o),
-                                                                  TO_LOCATION_VECTOR_2D.apply(thiz)) < distance)
-
-                         .collect(Collectors.toList());
-        }
-
-        static Optional<Vector2D> getCentreOfMass(List<Boid> boids, Boid forBoid) {
-            if(boids.isEmpty()) {
-                return Optional.empty();
+            if(recorder != null) {
+                recorder.close();
             }
-
-            List<Boid> othersWithinDistance
-                    = boidsWithinDistance(boids, forBoid, CENTER_OF_MASS_NEIGHBORHOOD);
-
-            if(othersWithinDistance.isEmpty()) {
-                return Optional.empty();
+            if(player != null) {
+                player.close();
             }
-
-            return Optional.of(
-                    Vector2D.getArithmeticMean(TO_LOCATION_VECTOR_2D_LIST.apply(othersWithinDistance)));
-        }
-
-        void render() {
-            sphere.setTranslateX(location.getX());
-            sphere.setTranslateY(location.getY());
-            sphere.setTranslateZ(-LOC_Z);
-
-            poly.setTranslateX(location.getX());
-            poly.setTranslateY(location.getY());
-            double r = -90 + Math.toDegrees(Math.atan(velocity.getY() / velocity.getX()));
-            r = velocity.getX() < 0.0d ? r -180d : r;
-            poly.setRotate(r);
-        }
-
-        List<Node> getNodes() {
-            return Arrays.asList(poly);
-        }
-
-        public void setColorSensitive(Boolean colorSensitive) {
-            this.colorSensitive = colorSensitive;
-        }
-    }
-
-    static Rectangle addDebugMarkers(double x, double y, double xSize, double ySize) {
-        Rectangle tl = new Rectangle(x, y, xSize, ySize);
-        tl.setFill(Color.RED);
-        return tl;
-    }
-
-    static  List<Rectangle> reinitDebugMarkersInCorner( List<Rectangle> nodes, double xBound, double yBound) {
-        nodes.clear();
-        nodes.add(addDebugMarkers( 0, 0, DEBUG_MARKER_SIZE , DEBUG_MARKER_SIZE));
-        nodes.add(addDebugMarkers( xBound-DEBUG_MARKER_SIZE, 0, DEBUG_MARKER_SIZE , DEBUG_MARKER_SIZE));
-        nodes.add(addDebugMarkers( xBound-DEBUG_MARKER_SIZE, yBound-DEBUG_MARKER_SIZE, DEBUG_MARKER_SIZE , DEBUG_MARKER_SIZE));
-        nodes.add(addDebugMarkers( 0, yBound-DEBUG_MARKER_SIZE, DEBUG_MARKER_SIZE , DEBUG_MARKER_SIZE));
-        return nodes;
-    }
-
-    List<Boid> initRandomBoids(final int n) {
-        List<Boid> boids = Lists.newArrayList();
-        Random rand = new Random();
-        for (int i = 0 ; i < n ; i++) {
-            boids.add(new Boid(rand.nextDouble() * DEFAULT_WINDOW_WIDTH,
-                               rand.nextDouble() * DEFAULT_WINDOW_HEIGHT,
-                               DEFAULT_WINDOW_WIDTH,
-                               DEFAULT_WINDOW_HEIGHT ));
         }
-        return boids;
     }
 
-    List<Boid> initAFewBoids() {
-        List<Boid> boids = Lists.newArrayList();
-        boids.add(new Boid(150, 150, DEFAULT_WINDOW_WIDTH, DEFAULT_WINDOW_HEIGHT));
-        boids.add(new Boid(5,DEFAULT_WINDOW_HEIGHT-5, DEFAULT_WINDOW_WIDTH, DEFAULT_WINDOW_HEIGHT));
-        return boids;
-    }
+    void startReplay(Stage stage, Path recording) throws IOException {
+        Group root = new Group();
+        Scene scene = new Scene(root, DEFAULT_WINDOW_WIDTH, DEFAULT_WINDOW_HEIGHT, USE_DEPTH_BUFFER);
+        final FlockRenderer renderer = createRenderer(scene.getWidth(), scene.getHeight());
+        root.getChildren().add(renderer.getNode());
+        final Viewport viewport = new Viewport(scene.getWidth(), scene.getHeight());
+        navigate(scene, viewport);
+        scene.widthProperty().addListener((obs, oldVal, newVal) -> renderer.resize(scene.getWidth(), scene.getHeight()));
+        scene.heightProperty().addListener((obs, oldVal, newVal) -> renderer.resize(scene.getWidth(), scene.getHeight()));
+
+        final TrajectoryPlayer player = new TrajectoryPlayer(recording, Double.parseDouble(getParameters().getNamed()
+                .getOrDefault("steps-per-second", String.valueOf(SimulationScheduler.DEFAULT_STEPS_PER_SECOND))));
+        this.player = player;
+        final PerspectiveCamera camera = new PerspectiveCamera(false);
+        AnimationTimer t = new AnimationTimer() {
+            @Override public void handle(long now) {
+                try {
+                    ViewportCamera.apply(camera, viewport);
+                    renderer.render(player.frameAt(now), viewport);
+                } catch (IOException e) {
+                    System.err.println("could not replay " + recording + ": " + e);
+                    stop();
+                }
+            }
+        };
 
-    void reinit(List<Boid> boids, Group root, List<Slider> sliders) {
-        root.getChildren().removeAll(boids.stream().map(Boid::getNodes).flatMap(l -> l.stream()).collect(Collectors.toList()));
-        boids.clear();
-        boids.addAll(initRandomBoids(1));
-        root.getChildren().addAll(boids.stream().map(Boid::getNodes).flatMap(l -> l.stream()).collect(Collectors.toList()));
-        sliders.stream().forEach(s -> s.valueProperty().set(Boid.DEFAULT_WEIGHT));
+        scene.setCamera(camera);
+        scene.setFill(Color.BLACK);
+        stage.setScene(scene);
+        stage.setTitle("JavaFX Boids - " + recording.getFileName());
+        t.start();
+        stage.show();
     }
 
     @Override
-    public void start(Stage stage) {
+    public void start(Stage stage) throws IOException {
+        Map<String, String> named = getParameters().getNamed();
+        if(named.containsKey("replay")) {
+            startReplay(stage, Paths.get(named.get("replay")));
+            return;
+        }
         PerspectiveCamera camera = new PerspectiveCamera(false);
 
         Group root = new Group();
         Scene scene = new Scene(root, DEFAULT_WINDOW_WIDTH, DEFAULT_WINDOW_HEIGHT, USE_DEPTH_BUFFER);
         final ContextMenu contextMenu = new ContextMenu();
-        final List<Boid> boids = Lists.newArrayList();
+        final FlockMetrics metrics = new FlockMetrics();
+        metrics.register();
+        this.reporter = createReporter(metrics);
+        final double[] world = worldSize();
+        final FlockSimulation simulation = world == null
+                ? new FlockSimulation(DEFAULT_WINDOW_WIDTH, DEFAULT_WINDOW_HEIGHT, System.currentTimeMillis())
+                : new FlockSimulation(world[0], world[1], System.currentTimeMillis());
+        simulation.setMetrics(metrics);
+        if(named.containsKey("environment")) {
+            simulation.setEnvironment(Environment.load(Paths.get(named.get("environment"))));
+            root.getChildren().addAll(environmentNodes(simulation.getEnvironment()));
+        }
+        final SimulationScheduler scheduler = createScheduler(simulation);
+        this.scheduler = scheduler;
+        if(named.containsKey("record")) {
+            this.recorder = new TrajectoryRecorder(Paths.get(named.get("record")),
+                    Integer.parseInt(named.getOrDefault("record-every", "1")));
+            scheduler.addStepListener(recorder);
+        }
+        final FlockRenderer renderer = createRenderer(scene.getWidth(), scene.getHeight());
+        root.getChildren().add(renderer.getNode());
+        final Viewport viewport = new Viewport(scene.getWidth(), scene.getHeight());
+        if(world != null) {
+            viewport.fit(world[0], world[1]);
+        }
 
+        // the sliders set the weights of the chosen species, or of all of them
+        ChoiceBox<String> speciesChoice = new ChoiceBox<>();
+        speciesChoice.getItems().add("All species");
+        speciesChoice.getItems().addAll(SPECIES_NAMES);
+        speciesChoice.getSelectionModel().select(0);
+        contextMenu.getItems().add(new CustomMenuItem(speciesChoice, false));
+
+        final AtomicBoolean showingWeights = new AtomicBoolean();
         Slider alignmentSlider = new Slider();
         List<CustomMenuItem> alignmentControls = buildLabelAndSlider(alignmentSlider, "Alignment: %.3f", 0.1,
-                Boid.MAX_WEIGHT, (ov, old_val, new_val) -> boids.forEach(b -> b.setAligmentWeight(new_val.doubleValue())));
+                Boid.MAX_WEIGHT, unlessShowing(showingWeights, (ov, old_val, new_val) -> {
+                    int target = speciesChoice.getSelectionModel().getSelectedIndex() - 1;
+                    scheduler.submit(s -> {
+                        if(target < 0) {
+                            s.setAlignmentWeight(new_val.doubleValue());
+                        } else {
+                            s.setAlignmentWeight(target, new_val.doubleValue());
+                        }
+                    });
+                }));
 
         Slider cohesionSlider = new Slider();
         List<CustomMenuItem> cohesionControls = buildLabelAndSlider(cohesionSlider, "Cohesion: %.3f", 0.1, Boid.MAX_WEIGHT,
-                (ov, old_val, new_val) -> boids.forEach(b -> b.setCohesionWeight(new_val.doubleValue())));
+                unlessShowing(showingWeights, (ov, old_val, new_val) -> {
+                    int target = speciesChoice.getSelectionModel().getSelectedIndex() - 1;
+                    scheduler.submit(s -> {
+                        if(target < 0) {
+                            s.setCohesionWeight(new_val.doubleValue());
+                        } else {
+                            s.setCohesionWeight(target, new_val.doubleValue());
+                        }
+                    });
+                }));
 
         Slider seperationSlider = new Slider();
         List<CustomMenuItem> seperationControls = buildLabelAndSlider(seperationSlider, "Seperation: %.3f", 0.1, Boid.MAX_WEIGHT,
-                (ov, old_val, new_val) -> boids.forEach(b -> b.setSeperationWeight(new_val.doubleValue())));
+                unlessShowing(showingWeights, (ov, old_val, new_val) -> {
+                    int target = speciesChoice.getSelectionModel().getSelectedIndex() - 1;
+                    scheduler.submit(s -> {
+                        if(target < 0) {
+                            s.setSeparationWeight(new_val.doubleValue());
+                        } else {
+                            s.setSeparationWeight(target, new_val.doubleValue());
+                        }
+                    });
+                }));
 
         contextMenu.getItems().addAll(alignmentControls);
         contextMenu.getItems().addAll(cohesionControls);
@@ -326,36 +350,74 @@ public class Boids extends Application {
         ToggleButton colorSensitive = new ToggleButton();
         colorSensitive.setSelected(Boid.COLOR_SENSITIVE_DEFAULT);
         colorSensitive.setText("Color Sensitive");
-        colorSensitive.selectedProperty().addListener((observable, oldValue, newValue) -> boids.forEach(b->b.setColorSensitive(newValue)));
+        colorSensitive.selectedProperty().addListener((observable, oldValue, newValue) -> scheduler.submit(s -> s.setColorSensitive(newValue)));
         contextMenu.getItems().add(new CustomMenuItem(colorSensitive));
 
         Button reset = new Button();
         reset.setText("Reset");
-        reset.setOnAction(e -> reinit(boids, root, allSliders));
+        reset.setOnAction(e -> reinit(scheduler, allSliders));
         contextMenu.getItems().add(new CustomMenuItem(reset));
 
-        final Label fpsLabel = new Label();
-        contextMenu.getItems().add(new CustomMenuItem(fpsLabel));
+        final Path checkpoint = Paths.get(getParameters().getNamed().getOrDefault("checkpoint", DEFAULT_CHECKPOINT));
+        Button save = new Button();
+        save.setText("Save");
+        save.setOnAction(e -> scheduler.submit(s -> {
+            try {
+                FlockCheckpoint.save(s, checkpoint);
+            } catch (IOException ex) {
+                System.err.println("could not save " + checkpoint + ": " + ex);
+            }
+        }));
+        Button restore = new Button();
+        restore.setText("Restore");
+        restore.setOnAction(e -> {
+            double width = world == null ? scene.getWidth() : world[0];
+            double height = world == null ? scene.getHeight() : world[1];
+            List<DoubleProperty> weights = Arrays.asList(alignmentSlider.valueProperty(), cohesionSlider.valueProperty(),
+                    seperationSlider.valueProperty());
+            scheduler.submit(s -> restore(s, checkpoint, width, height,
+                    w -> Platform.runLater(() -> showWeights(weights, showingWeights, w))));
+        });
+        contextMenu.getItems().add(new CustomMenuItem(save));
+        contextMenu.getItems().add(new CustomMenuItem(restore));
+
+        final Label metricsLabel = new Label();
+        contextMenu.getItems().add(new CustomMenuItem(metricsLabel));
 
-        reinit(boids, root, allSliders);
+        reinit(scheduler, allSliders);
 
+        navigate(scene, viewport);
+        final int burst = Integer.parseInt(named.getOrDefault("burst", String.valueOf(DEFAULT_BURST)));
         scene.setOnMouseClicked(e -> {
             if(e.getButton() == MouseButton.SECONDARY) {
                 contextMenu.show(stage, e.getScreenX(), e.getScreenY());
             }
-            if(e.getButton() == MouseButton.PRIMARY) {
-                Boid newBoid = new Boid(e.getSceneX(), e.getSceneY(), scene.getWidth(), scene.getHeight());
-                boids.add(newBoid);
-                root.getChildren().addAll(newBoid.getNodes());
+            if(e.getButton() == MouseButton.PRIMARY && e.isStillSincePress()) {
+                double x = viewport.toWorldX(e.getSceneX());
+                double y = viewport.toWorldY(e.getSceneY());
+                double radius = BRUSH_RADIUS / viewport.getZoom();
+                if(e.isShiftDown()) {
+                    scheduler.submit(s -> s.removeBoidsWithin(x, y, radius));
+                } else if(e.isShortcutDown()) {
+                    scheduler.submit(s -> s.spawn(burst, SpawnRegion.gaussian(x, y, radius)));
+                } else {
+                    scheduler.submit(s -> s.addBoid(x, y));
+                }
             }
         });
 
         final List<Rectangle> debugNodes = Lists.newArrayList();
-        reinitDebugMarkersInCorner(debugNodes, scene.getWidth(), scene.getHeight());
+        reinitDebugMarkersInCorner(debugNodes, simulation.getXBound(), simulation.getYBound());
         root.getChildren().addAll(debugNodes);
 
+        // a fixed size world only needs the renderer resized, otherwise the world follows the window
         scene.heightProperty().addListener((obs, oldVal, newVal) -> {
-            boids.stream().forEach(b -> b.setYBound(newVal.doubleValue()));
+            renderer.resize(scene.getWidth(), scene.getHeight());
+            if(world != null) {
+                return;
+            }
+            scheduler.submit(s -> s.setYBound(newVal.doubleValue()));
+            viewport.fit(scene.getWidth(), scene.getHeight());
             root.getChildren().removeAll(debugNodes);
             reinitDebugMarkersInCorner(debugNodes, scene.getWidth(), scene.getHeight());
             root.getChildren().addAll(debugNodes);
@@ -363,7 +425,12 @@ public class Boids extends Application {
         });
 
         scene.widthProperty().addListener((obs, oldVal, newVal) -> {
-            boids.stream().forEach(b -> b.setXBound(newVal.doubleValue()));
+            renderer.resize(scene.getWidth(), scene.getHeight());
+            if(world != null) {
+                return;
+            }
+            scheduler.submit(s -> s.setXBound(newVal.doubleValue()));
+            viewport.fit(scene.getWidth(), scene.getHeight());
             root.getChildren().removeAll(debugNodes);
             reinitDebugMarkersInCorner(debugNodes, scene.getWidth(), scene.getHeight());
             root.getChildren().addAll(debugNodes);
@@ -375,13 +442,25 @@ public class Boids extends Application {
         stage.setScene(scene);
         stage.setTitle("JavaFX Boids");
 
+        final FlockSnapshot.Interpolated interpolated = new FlockSnapshot.Interpolated();
         AnimationTimer t = new AnimationTimer() {
+            private MetricsSnapshot shown;
+
             @Override public void handle(long now) {
-                boids.stream().forEach(b -> b.updateAndRender(boids));
-                fpsLabel.setText(String.format("FPS: %.3f", PerformanceTracker.getSceneTracker(scene).getAverageFPS()));
+                FlockSnapshot snapshot = scheduler.acquire();
+                long start = System.nanoTime();
+                ViewportCamera.apply(camera, viewport);
+                renderer.render(interpolated.set(snapshot, snapshot.alpha(start)), viewport);
+                metrics.recordRender(System.nanoTime() - start);
+                MetricsSnapshot latest = metrics.getLatest();
+                if(latest != shown) {
+                    shown = latest;
+                    metricsLabel.setText(latest.describe());
+                }
             }
         };
         t.start();
+        scheduler.start();
         stage.show();
     }
 
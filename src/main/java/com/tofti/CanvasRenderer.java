@@ -0,0 +1,97 @@
+package com.tofti;
+
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+
+import java.util.Arrays;
+
+/**
+ * Draws the visible flock onto a single screen sized {@link Canvas}, one colour at a time, instead of keeping a node
+ * per boid. The visible boids are found in one pass over the flock and sorted by colour, so the fill only changes
+ * once per colour.
+ */
+class CanvasRenderer implements FlockRenderer {
+    static final double TRI_SIZE = Boid.TRI_SIZE;
+
+    private final Canvas canvas;
+    private final double[] xs = new double[3];
+    private final double[] ys = new double[3];
+    // the visible boids, then the same sorted by colour, the boids of colour c being at [start[c], start[c + 1])
+    private int[] visible = new int[0];
+    private int[] byColor = new int[0];
+    private final int[] start = new int[COLORS.size() + 1];
+    private final int[] next = new int[COLORS.size()];
+
+    CanvasRenderer(double width, double height) {
+        canvas = new Canvas(width, height);
+    }
+
+    @Override
+    public Node getNode() {
+        return canvas;
+    }
+
+    @Override
+    public void resize(double width, double height) {
+        canvas.setWidth(width);
+        canvas.setHeight(height);
+    }
+
+    @Override
+    public void render(FlockView flock, Viewport viewport) {
+        ViewportCamera.pin(canvas, viewport);
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        double size = TRI_SIZE * viewport.getZoom();
+        sortVisible(flock, viewport);
+        for (int c = 0 ; c < COLORS.size() ; c++) {
+            if(start[c] == start[c + 1]) {
+                continue;
+            }
+            gc.setFill(COLORS.get(c));
+            for (int k = start[c] ; k < start[c + 1] ; k++) {
+                int i = byColor[k];
+                triangle(viewport.toScreenX(flock.getX(i)), viewport.toScreenY(flock.getY(i)),
+                        flock.getVelocityX(i), flock.getVelocityY(i), size);
+                gc.fillPolygon(xs, ys, 3);
+            }
+        }
+    }
+
+    // a counting sort of the visible boids by colour
+    private void sortVisible(FlockView flock, Viewport viewport) {
+        if(visible.length < flock.size()) {
+            visible = new int[flock.size()];
+            byColor = new int[flock.size()];
+        }
+        Arrays.fill(start, 0);
+        int n = 0;
+        for (int i = 0 ; i < flock.size() ; i++) {
+            if(viewport.contains(flock.getX(i), flock.getY(i), NodeRenderer.MARGIN)) {
+                visible[n++] = i;
+                start[flock.getColor(i) + 1]++;
+            }
+        }
+        for (int c = 0 ; c < COLORS.size() ; c++) {
+            start[c + 1] += start[c];
+            next[c] = start[c];
+        }
+        for (int k = 0 ; k < n ; k++) {
+            byColor[next[flock.getColor(visible[k])]++] = visible[k];
+        }
+    }
+
+    // the same triangle NodeRenderer draws, nose along the velocity, in screen coordinates
+    private void triangle(double x, double y, double vx, double vy, double size) {
+        double m = Math.sqrt(vx * vx + vy * vy);
+        double hx = m == 0d ? 0d : vx / m;
+        double hy = m == 0d ? 1d : vy / m;
+        xs[0] = x + hx * size;
+        ys[0] = y + hy * size;
+        xs[1] = x + (hy - hx) * size;
+        ys[1] = y + (-hx - hy) * size;
+        xs[2] = x + (-hy - hx) * size;
+        ys[2] = y + (hx - hy) * size;
+    }
+}
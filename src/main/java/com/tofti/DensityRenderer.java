@@ -0,0 +1,52 @@
+package com.tofti;
+
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+
+/**
+ * Draws the visible flock as {@link DensityTiles}, one square per tile in the tile's most common colour, opaque in
+ * proportion to the log of its count. The cost is one pass over the boids plus one rectangle per occupied tile, however
+ * many boids share a tile.
+ */
+class DensityRenderer implements FlockRenderer {
+    static final double TILE_SIZE = 8d;
+
+    private final Canvas canvas;
+    private final DensityTiles tiles = new DensityTiles(COLORS.size());
+
+    DensityRenderer(double width, double height) {
+        canvas = new Canvas(width, height);
+    }
+
+    @Override
+    public Node getNode() {
+        return canvas;
+    }
+
+    @Override
+    public void resize(double width, double height) {
+        canvas.setWidth(width);
+        canvas.setHeight(height);
+    }
+
+    @Override
+    public void render(FlockView flock, Viewport viewport) {
+        ViewportCamera.pin(canvas, viewport);
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        tiles.accumulate(flock, viewport, TILE_SIZE);
+        double scale = 1d / Math.log1p(Math.max(1, tiles.getMax()));
+        for (int row = 0 ; row < tiles.getRows() ; row++) {
+            for (int column = 0 ; column < tiles.getColumns() ; column++) {
+                int count = tiles.getCount(column, row);
+                if(count > 0) {
+                    gc.setGlobalAlpha(Math.max(0.2d, Math.log1p(count) * scale));
+                    gc.setFill(COLORS.get(tiles.getDominantColor(column, row)));
+                    gc.fillRect(column * TILE_SIZE, row * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+                }
+            }
+        }
+        gc.setGlobalAlpha(1d);
+    }
+}
@@ -0,0 +1,89 @@
+package com.tofti;
+
+import java.util.Arrays;
+
+/**
+ * The visible boids binned into square screen tiles, with the number of boids of each colour per tile, for drawing
+ * a flock too dense to tell boids apart as one shaded tile per region instead.
+ */
+class DensityTiles {
+    private final int colors;
+
+    private int columns;
+    private int rows;
+    private double tileSize;
+    private int[] counts = new int[0];
+    private int[] colorCounts = new int[0];
+    private int max;
+
+    DensityTiles(int colors) {
+        this.colors = colors;
+    }
+
+    /**
+     * Bins the boids of {@code flock} visible in {@code viewport} into tiles of {@code tileSize} pixels.
+     */
+    void accumulate(FlockView flock, Viewport viewport, double tileSize) {
+        this.tileSize = tileSize;
+        columns = Math.max(1, (int) Math.ceil(viewport.getWidth() / tileSize));
+        rows = Math.max(1, (int) Math.ceil(viewport.getHeight() / tileSize));
+        int tiles = columns * rows;
+        if(counts.length < tiles) {
+            counts = new int[tiles];
+            colorCounts = new int[tiles * colors];
+        } else {
+            Arrays.fill(counts, 0, tiles, 0);
+            Arrays.fill(colorCounts, 0, tiles * colors, 0);
+        }
+        max = 0;
+        for (int i = 0 ; i < flock.size() ; i++) {
+            double x = flock.getX(i);
+            double y = flock.getY(i);
+            if(!viewport.contains(x, y, 0d)) {
+                continue;
+            }
+            int column = Math.min(columns - 1, (int) (viewport.toScreenX(x) / tileSize));
+            int row = Math.min(rows - 1, (int) (viewport.toScreenY(y) / tileSize));
+            int tile = row * columns + column;
+            max = Math.max(max, ++counts[tile]);
+            colorCounts[tile * colors + flock.getColor(i)]++;
+        }
+    }
+
+    int getColumns() {
+        return columns;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    double getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * The largest count of any tile.
+     */
+    int getMax() {
+        return max;
+    }
+
+    int getCount(int column, int row) {
+        return counts[row * columns + column];
+    }
+
+    /**
+     * The most common colour in a tile, the lowest on a tie.
+     */
+    int getDominantColor(int column, int row) {
+        int base = (row * columns + column) * colors;
+        int dominant = 0;
+        for (int c = 1 ; c < colors ; c++) {
+            if(colorCounts[base + c] > colorCounts[base + dominant]) {
+                dominant = c;
+            }
+        }
+        return dominant;
+    }
+}
@@ -0,0 +1,237 @@
+package com.tofti;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The static scenery of a world: circular and polygonal obstacles the boids avoid, and point attractors (or, with a
+ * negative strength, repulsors) that pull them in. The shapes only describe the scene, the boids steer by the
+ * {@link EnvironmentField} baked from them.
+ * <p>
+ * {@link #load} reads one shape per line, blank lines and lines starting with {@code #} being ignored:
+ * <pre>
+ * circle x y radius
+ * polygon x1 y1 x2 y2 x3 y3 ...
+ * attractor x y strength radius
+ * </pre>
+ */
+public class Environment {
+
+    public static final class Circle {
+        final double x;
+        final double y;
+        final double radius;
+
+        Circle(double x, double y, double radius) {
+            this.x = x;
+            this.y = y;
+            this.radius = radius;
+        }
+
+        double signedDistance(double px, double py) {
+            return Math.hypot(px - x, py - y) - radius;
+        }
+
+        public double getX() {
+            return x;
+        }
+
+        public double getY() {
+            return y;
+        }
+
+        public double getRadius() {
+            return radius;
+        }
+    }
+
+    public static final class Polygon {
+        // x0, y0, x1, y1, ... of a closed outline
+        final double[] points;
+
+        Polygon(double[] points) {
+            if(points.length < 6 || points.length % 2 != 0) {
+                throw new IllegalArgumentException("a polygon needs at least three x, y pairs");
+            }
+            this.points = points.clone();
+        }
+
+        double signedDistance(double px, double py) {
+            int n = points.length / 2;
+            double nearest = Double.MAX_VALUE;
+            boolean inside = false;
+            for (int i = 0, j = n - 1 ; i < n ; j = i++) {
+                double ax = points[2 * j];
+                double ay = points[2 * j + 1];
+                double bx = points[2 * i];
+                double by = points[2 * i + 1];
+                double ex = bx - ax;
+                double ey = by - ay;
+                double t = Math.max(0d, Math.min(1d, ((px - ax) * ex + (py - ay) * ey) / (ex * ex + ey * ey)));
+                double dx = px - (ax + t * ex);
+                double dy = py - (ay + t * ey);
+                nearest = Math.min(nearest, dx * dx + dy * dy);
+                // even-odd crossing test
+                if((ay > py) != (by > py) && px < ax + (py - ay) / (by - ay) * ex) {
+                    inside = !inside;
+                }
+            }
+            double d = Math.sqrt(nearest);
+            return inside ? -d : d;
+        }
+
+        double minX() {
+            return min(0);
+        }
+
+        double minY() {
+            return min(1);
+        }
+
+        double maxX() {
+            return max(0);
+        }
+
+        double maxY() {
+            return max(1);
+        }
+
+        private double min(int offset) {
+            double m = Double.MAX_VALUE;
+            for (int i = offset ; i < points.length ; i += 2) {
+                m = Math.min(m, points[i]);
+            }
+            return m;
+        }
+
+        private double max(int offset) {
+            double m = -Double.MAX_VALUE;
+            for (int i = offset ; i < points.length ; i += 2) {
+                m = Math.max(m, points[i]);
+            }
+            return m;
+        }
+
+        public double[] getPoints() {
+            return points.clone();
+        }
+    }
+
+    public static final class Attractor {
+        final double x;
+        final double y;
+        final double strength;
+        final double radius;
+
+        Attractor(double x, double y, double strength, double radius) {
+            this.x = x;
+            this.y = y;
+            this.strength = strength;
+            this.radius = radius;
+        }
+
+        public double getX() {
+            return x;
+        }
+
+        public double getY() {
+            return y;
+        }
+
+        public double getStrength() {
+            return strength;
+        }
+
+        public double getRadius() {
+            return radius;
+        }
+    }
+
+    private final List<Circle> circles = Lists.newArrayList();
+    private final List<Polygon> polygons = Lists.newArrayList();
+    private final List<Attractor> attractors = Lists.newArrayList();
+
+    public Environment addCircle(double x, double y, double radius) {
+        circles.add(new Circle(x, y, radius));
+        return this;
+    }
+
+    public Environment addPolygon(double... points) {
+        polygons.add(new Polygon(points));
+        return this;
+    }
+
+    /**
+     * Adds a point pulling boids within {@code radius} towards it, or pushing them away for a negative
+     * {@code strength}, with a force of {@code strength} at the point falling to nothing at the radius.
+     */
+    public Environment addAttractor(double x, double y, double strength, double radius) {
+        attractors.add(new Attractor(x, y, strength, radius));
+        return this;
+    }
+
+    public List<Circle> getCircles() {
+        return ImmutableList.copyOf(circles);
+    }
+
+    public List<Polygon> getPolygons() {
+        return ImmutableList.copyOf(polygons);
+    }
+
+    public List<Attractor> getAttractors() {
+        return ImmutableList.copyOf(attractors);
+    }
+
+    public boolean isEmpty() {
+        return circles.isEmpty() && polygons.isEmpty() && attractors.isEmpty();
+    }
+
+    public static Environment load(Path path) throws IOException {
+        Environment environment = new Environment();
+        int number = 0;
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            number++;
+            String trimmed = line.trim();
+            if(trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] words = trimmed.split("\\s+");
+            double[] values = new double[words.length - 1];
+            try {
+                for (int i = 0 ; i < values.length ; i++) {
+                    values[i] = Double.parseDouble(words[i + 1]);
+                }
+                switch (words[0]) {
+                    case "circle":
+                        expect(values, 3);
+                        environment.addCircle(values[0], values[1], values[2]);
+                        break;
+                    case "polygon":
+                        environment.addPolygon(values);
+                        break;
+                    case "attractor":
+                        expect(values, 4);
+                        environment.addAttractor(values[0], values[1], values[2], values[3]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown shape '" + words[0] + "'");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException(path + ":" + number + ": " + e.getMessage(), e);
+            }
+        }
+        return environment;
+    }
+
+    private static void expect(double[] values, int count) {
+        if(values.length != count) {
+            throw new IllegalArgumentException("expected " + count + " numbers, got " + values.length);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.tofti;
+
+import java.util.Arrays;
+
+/**
+ * An {@link Environment} baked once onto a regular grid covering the world, so a boid's fourth steering term costs
+ * one bilinear lookup however many obstacles and attractors there are. Each grid node holds the signed distance to
+ * the nearest obstacle, clamped to {@link #AVOIDANCE_RANGE} since nothing further away steers a boid, and the summed
+ * pull of the attractors. Baking only visits the nodes within reach of each shape.
+ * <p>
+ * Boids within {@link #AVOIDANCE_RANGE} of an obstacle are pushed away along the distance gradient, harder the
+ * closer they are. Obstacles and attractors don't wrap around the edges of the world.
+ * <p>
+ * The grid is coarsened for large worlds, but never beyond {@link #MAX_CELL_SIZE} so that the avoidance range stays
+ * several nodes wide. A world that would need more than {@link #LARGEST_GRID} nodes at that size is rejected.
+ */
+final class EnvironmentField {
+    static final double AVOIDANCE_RANGE = 4 * Boid.TRI_SIZE;
+    static final double AVOIDANCE_STRENGTH = 2 * Boid.MAX_VELOCITY;
+    static final double MIN_CELL_SIZE = Boid.TRI_SIZE / 2;
+    static final double MAX_CELL_SIZE = AVOIDANCE_RANGE / 2;
+    // keeps the grid of a large world to a few megabytes by coarsening it, as far as MAX_CELL_SIZE
+    static final int MAX_NODES = 1 << 20;
+    static final int LARGEST_GRID = 1 << 24;
+
+    private final double width;
+    private final double height;
+    private final double cell;
+    private final int columns;
+    private final int rows;
+
+    private final float[] distance;
+    private final float[] pullX;
+    private final float[] pullY;
+    private final boolean attracting;
+
+    private EnvironmentField(double width, double height, boolean attracting) {
+        this.width = width;
+        this.height = height;
+        this.cell = Math.min(MAX_CELL_SIZE, Math.max(MIN_CELL_SIZE, Math.sqrt(width * height / MAX_NODES)));
+        double nodes = (Math.ceil(width / cell) + 1) * (Math.ceil(height / cell) + 1);
+        if(nodes > LARGEST_GRID) {
+            throw new IllegalArgumentException("a " + width + "x" + height + " world is too large for an environment, "
+                    + "its grid would have " + (long) nodes + " nodes");
+        }
+        this.columns = (int) Math.ceil(width / cell) + 1;
+        this.rows = (int) Math.ceil(height / cell) + 1;
+        this.distance = new float[columns * rows];
+        this.attracting = attracting;
+        this.pullX = attracting ? new float[columns * rows] : null;
+        this.pullY = attracting ? new float[columns * rows] : null;
+        Arrays.fill(distance, (float) AVOIDANCE_RANGE);
+    }
+
+    static EnvironmentField bake(Environment environment, double width, double height) {
+        EnvironmentField field = new EnvironmentField(width, height, !environment.getAttractors().isEmpty());
+        for (Environment.Circle c : environment.getCircles()) {
+            double reach = c.radius + AVOIDANCE_RANGE;
+            field.bakeObstacle(c.x - reach, c.y - reach, c.x + reach, c.y + reach, c::signedDistance);
+        }
+        for (Environment.Polygon p : environment.getPolygons()) {
+            field.bakeObstacle(p.minX() - AVOIDANCE_RANGE, p.minY() - AVOIDANCE_RANGE,
+                    p.maxX() + AVOIDANCE_RANGE, p.maxY() + AVOIDANCE_RANGE, p::signedDistance);
+        }
+        for (Environment.Attractor a : environment.getAttractors()) {
+            field.bakeAttractor(a);
+        }
+        return field;
+    }
+
+    private interface SignedDistance {
+        double at(double x, double y);
+    }
+
+    private int firstColumn(double x) {
+        return Math.max(0, (int) Math.floor(x / cell));
+    }
+
+    private int lastColumn(double x) {
+        return Math.min(columns - 1, (int) Math.ceil(x / cell));
+    }
+
+    private int firstRow(double y) {
+        return Math.max(0, (int) Math.floor(y / cell));
+    }
+
+    private int lastRow(double y) {
+        return Math.min(rows - 1, (int) Math.ceil(y / cell));
+    }
+
+    private void bakeObstacle(double minX, double minY, double maxX, double maxY, SignedDistance shape) {
+        for (int row = firstRow(minY) ; row <= lastRow(maxY) ; row++) {
+            for (int column = firstColumn(minX) ; column <= lastColumn(maxX) ; column++) {
+                int node = row * columns + column;
+                distance[node] = (float) Math.min(distance[node], shape.at(column * cell, row * cell));
+            }
+        }
+    }
+
+    private void bakeAttractor(Environment.Attractor a) {
+        for (int row = firstRow(a.y - a.radius) ; row <= lastRow(a.y + a.radius) ; row++) {
+            for (int column = firstColumn(a.x - a.radius) ; column <= lastColumn(a.x + a.radius) ; column++) {
+                double dx = a.x - column * cell;
+                double dy = a.y - row * cell;
+                double d = Math.sqrt(dx * dx + dy * dy);
+                if(d < a.radius && d > 0d) {
+                    double pull = a.strength * (1d - d / a.radius) / d;
+                    int node = row * columns + column;
+                    pullX[node] += (float) (dx * pull);
+                    pullY[node] += (float) (dy * pull);
+                }
+            }
+        }
+    }
+
+    double getCellSize() {
+        return cell;
+    }
+
+    /**
+     * Whether this field was baked for a world of this size.
+     */
+    boolean covers(double width, double height) {
+        return this.width == width && this.height == height;
+    }
+
+    /**
+     * The signed distance from {@code (x, y)} to the nearest obstacle, negative inside one, as far as
+     * {@link #AVOIDANCE_RANGE}.
+     */
+    double distance(double x, double y) {
+        double gx = gridX(x);
+        double gy = gridY(y);
+        return bilinear(distance, (int) gy * columns + (int) gx, gx - (int) gx, gy - (int) gy);
+    }
+
+    // grid coordinates, clamped so that the cell's right and bottom nodes exist
+    private double gridX(double x) {
+        return Math.max(0d, Math.min(columns - 1.000001d, x / cell));
+    }
+
+    private double gridY(double y) {
+        return Math.max(0d, Math.min(rows - 1.000001d, y / cell));
+    }
+
+    private double bilinear(float[] values, int node, double fx, double fy) {
+        double top = values[node] + (values[node + 1] - values[node]) * fx;
+        double bottom = values[node + columns] + (values[node + columns + 1] - values[node + columns]) * fx;
+        return top + (bottom - top) * fy;
+    }
+
+    /**
+     * Adds the avoidance and attraction at {@code (x, y)} to {@code velocity}.
+     */
+    void steer(double x, double y, MutableVector2D velocity) {
+        double gx = gridX(x);
+        double gy = gridY(y);
+        int column = (int) gx;
+        int row = (int) gy;
+        double fx = gx - column;
+        double fy = gy - row;
+        int node = row * columns + column;
+
+        double d00 = distance[node];
+        double d10 = distance[node + 1];
+        double d01 = distance[node + columns];
+        double d11 = distance[node + columns + 1];
+        double d = (d00 + (d10 - d00) * fx) * (1d - fy) + (d01 + (d11 - d01) * fx) * fy;
+        if(d < AVOIDANCE_RANGE) {
+            // the gradient of the bilinear patch points away from the obstacle
+            double ax = (d10 - d00) * (1d - fy) + (d11 - d01) * fy;
+            double ay = (d01 - d00) * (1d - fx) + (d11 - d10) * fx;
+            double m = Math.sqrt(ax * ax + ay * ay);
+            if(m > 0d) {
+                double push = AVOIDANCE_STRENGTH * Math.min(2d, 1d - d / AVOIDANCE_RANGE) / m;
+                velocity.add(ax * push, ay * push);
+            }
+        }
+        if(attracting) {
+            velocity.add(bilinear(pullX, node, fx, fy), bilinear(pullY, node, fx, fy));
+        }
+    }
+}
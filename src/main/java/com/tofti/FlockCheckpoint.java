@@ -0,0 +1,209 @@
+package com.tofti;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves and restores a whole {@link FlockSimulation} in a compact binary file, through memory mapped buffers so a
+ * large flock is copied array by array instead of boid by boid. A restored simulation continues exactly as the saved
+ * one would have, including its random draws, which only depend on the seed, the boid ids and the tick.
+ * <p>
+ * The file is little endian: a {@value #HEADER_BYTES} byte header of magic, version, boid count, species count,
+ * tick, seed, next boid id, bounds and the simulation's weights, followed by one block per array of the
+ * {@link FlockStore}: ids as longs, x, y, vx, vy, alignment, separation and cohesion weights as doubles, then colors
+ * as ints. The {@link SpeciesTable} comes last, the radii, top speed and weights of each species as doubles, then
+ * its interaction matrix row by row, one byte per interaction. A checkpoint is mapped in one piece, which limits it
+ * to 2GB, or about 30 million boids.
+ */
+public final class FlockCheckpoint {
+    static final int MAGIC = 0x464C434B; // "FLCK"
+    static final int VERSION = 3;
+    static final int HEADER_BYTES = 80;
+
+    private static final int DOUBLE_ARRAYS = 7;
+    private static final int SPECIES_DOUBLES = 9;
+
+    private FlockCheckpoint() {
+    }
+
+    static long fileSize(int boids, int species) {
+        return HEADER_BYTES + (long) boids * (Long.BYTES + DOUBLE_ARRAYS * Double.BYTES + Integer.BYTES)
+                + species * (SPECIES_DOUBLES * Double.BYTES + species);
+    }
+
+    /**
+     * Writes {@code simulation} to {@code path}. The file is written next to {@code path} and moved into place, so an
+     * existing checkpoint is only replaced by a complete one.
+     */
+    public static void save(FlockSimulation simulation, Path path) throws IOException {
+        FlockStore store = simulation.getStore();
+        SpeciesTable species = simulation.getSpecies();
+        int n = store.size();
+        long size = fileSize(n, species.size());
+        if(size > Integer.MAX_VALUE) {
+            throw new IOException(n + " boids are too many for one checkpoint");
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(n)
+                    .putInt(species.size())
+                    .putLong(simulation.getTick())
+                    .putLong(simulation.getSeed())
+                    .putLong(store.getNextId())
+                    .putDouble(simulation.getXBound())
+                    .putDouble(simulation.getYBound())
+                    .putDouble(simulation.getAlignmentWeight())
+                    .putDouble(simulation.getSeparationWeight())
+                    .putDouble(simulation.getCohesionWeight());
+
+            buffer.asLongBuffer().put(store.id, 0, n);
+            buffer.position(buffer.position() + n * Long.BYTES);
+            for (double[] a : doubleArrays(store)) {
+                buffer.asDoubleBuffer().put(a, 0, n);
+                buffer.position(buffer.position() + n * Double.BYTES);
+            }
+            buffer.asIntBuffer().put(store.color, 0, n);
+            buffer.position(buffer.position() + n * Integer.BYTES);
+            putSpecies(buffer, species);
+            buffer.force();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * A new simulation in the state saved at {@code path}.
+     */
+    public static FlockSimulation load(Path path) throws IOException {
+        FlockSimulation simulation = new FlockSimulation(0, 0, 0L);
+        restore(simulation, path);
+        return simulation;
+    }
+
+    /**
+     * Replaces the whole state of {@code simulation} with the one saved at {@code path}.
+     */
+    public static void restore(FlockSimulation simulation, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if(length < HEADER_BYTES) {
+                throw new IOException(path + " is too short to be a flock checkpoint");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if(buffer.getInt() != MAGIC) {
+                throw new IOException(path + " is not a flock checkpoint");
+            }
+            int version = buffer.getInt();
+            if(version != VERSION) {
+                throw new IOException(path + " has checkpoint version " + version + ", expected " + VERSION);
+            }
+            int n = buffer.getInt();
+            int speciesCount = buffer.getInt();
+            if(speciesCount < 1 || speciesCount > SpeciesTable.MAX_SPECIES) {
+                throw new IOException(path + " has " + speciesCount + " species");
+            }
+            if(n < 0 || length != fileSize(n, speciesCount)) {
+                throw new IOException(path + " is " + length + " bytes, expected " + fileSize(n, speciesCount)
+                        + " for " + n + " boids of " + speciesCount + " species");
+            }
+            long tick = buffer.getLong();
+            long seed = buffer.getLong();
+            long nextId = buffer.getLong();
+            double xBound = buffer.getDouble();
+            double yBound = buffer.getDouble();
+            double alignmentWeight = buffer.getDouble();
+            double separationWeight = buffer.getDouble();
+            double cohesionWeight = buffer.getDouble();
+            int arrays = buffer.position();
+            buffer.position(arrays + (int) (fileSize(n, 0) - HEADER_BYTES));
+            SpeciesTable species = getSpecies(buffer, speciesCount, path);
+            buffer.position(arrays);
+
+            simulation.clear();
+            simulation.setXBound(xBound);
+            simulation.setYBound(yBound);
+            simulation.setAlignmentWeight(alignmentWeight);
+            simulation.setSeparationWeight(separationWeight);
+            simulation.setCohesionWeight(cohesionWeight);
+            // after the weights, which would overwrite the per-species ones
+            simulation.setSpecies(species);
+            simulation.setTick(tick);
+            simulation.setSeed(seed);
+
+            FlockStore store = simulation.getStore();
+            store.ensureCapacity(n);
+            buffer.asLongBuffer().get(store.id, 0, n);
+            buffer.position(buffer.position() + n * Long.BYTES);
+            for (double[] a : doubleArrays(store)) {
+                buffer.asDoubleBuffer().get(a, 0, n);
+                buffer.position(buffer.position() + n * Double.BYTES);
+            }
+            buffer.asIntBuffer().get(store.color, 0, n);
+            store.size = n;
+            store.nextId = nextId;
+        }
+    }
+
+    private static void putSpecies(MappedByteBuffer buffer, SpeciesTable species) {
+        for (int s = 0 ; s < species.size() ; s++) {
+            SpeciesTable.Species sp = species.get(s);
+            buffer.putDouble(sp.cohesionRadius)
+                    .putDouble(sp.separationRadius)
+                    .putDouble(sp.alignmentRadius)
+                    .putDouble(sp.interactionRadius)
+                    .putDouble(sp.maxVelocity)
+                    .putDouble(sp.alignmentWeight)
+                    .putDouble(sp.separationWeight)
+                    .putDouble(sp.cohesionWeight)
+                    .putDouble(sp.interactionWeight);
+        }
+        for (int s = 0 ; s < species.size() ; s++) {
+            for (int t = 0 ; t < species.size() ; t++) {
+                buffer.put((byte) species.getInteraction(s, t).ordinal());
+            }
+        }
+    }
+
+    private static SpeciesTable getSpecies(MappedByteBuffer buffer, int count, Path path) throws IOException {
+        SpeciesTable species = new SpeciesTable(count);
+        for (int s = 0 ; s < count ; s++) {
+            SpeciesTable.Species sp = species.get(s);
+            sp.cohesionRadius = buffer.getDouble();
+            sp.separationRadius = buffer.getDouble();
+            sp.alignmentRadius = buffer.getDouble();
+            sp.interactionRadius = buffer.getDouble();
+            sp.maxVelocity = buffer.getDouble();
+            sp.alignmentWeight = buffer.getDouble();
+            sp.separationWeight = buffer.getDouble();
+            sp.cohesionWeight = buffer.getDouble();
+            sp.interactionWeight = buffer.getDouble();
+        }
+        SpeciesTable.Interaction[] interactions = SpeciesTable.Interaction.values();
+        for (int s = 0 ; s < count ; s++) {
+            for (int t = 0 ; t < count ; t++) {
+                int interaction = buffer.get();
+                if(interaction < 0 || interaction >= interactions.length) {
+                    throw new IOException(path + " has an unknown interaction " + interaction);
+                }
+                species.setInteraction(s, t, interactions[interaction]);
+            }
+        }
+        return species;
+    }
+
+    private static double[][] doubleArrays(FlockStore store) {
+        return new double[][] {store.x, store.y, store.vx, store.vy,
+                store.alignmentWeight, store.separationWeight, store.cohesionWeight};
+    }
+}
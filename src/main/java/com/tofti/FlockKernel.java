@@ -0,0 +1,230 @@
+package com.tofti;
+
+import java.util.function.IntConsumer;
+
+/**
+ * The three flocking rules of {@link Boid#update} evaluated directly over a {@link FlockStore}, with one walk over
+ * the neighbour candidates per boid, plus a fourth term steering around obstacles and towards attractors when there
+ * is an {@link EnvironmentField}. Radii, top speed and which species flock, avoid or chase each other come from a
+ * {@link SpeciesTable}; when the grid is split by species, ignored species are never visited. The flocking walk can
+ * also run in SIMD lanes, see {@link #vectorized}, or over cached {@link NeighbourLists}. A kernel holds the
+ * accumulators for one boid at a time, so each thread updating the flock needs its own instance; reusing one keeps
+ * the update free of allocation.
+ */
+final class FlockKernel implements IntConsumer {
+    // whether the JVM has the Vector API, checked without loading any of it
+    static final boolean VECTOR_API = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private final FlockStore store;
+    private final SpatialGrid grid;
+    private NeighbourSums[] speciesSums = new NeighbourSums[0];
+    private NeighbourSums sums;
+    private final IntConsumer avoider = this::avoid;
+    private final IntConsumer chaser = this::chase;
+    private final MutableVector2D steered = new MutableVector2D();
+    private final MutableVector2D perturbation = new MutableVector2D();
+
+    private FlockMetrics.Probe probe;
+    private EnvironmentField environment;
+    private VectorNeighbourScan scan;
+    private NeighbourLists lists;
+
+    private double xBound;
+    private double yBound;
+    private SpeciesTable species;
+    // the species the current boid has an interaction with, for grids that aren't split by species
+    private int flockMask;
+    private int avoidMask;
+    private int chaseMask;
+    // whether candidates need their species checked, only when the grid isn't split and they might be ignored
+    private boolean filtered;
+    private double dt;
+    private long seed;
+    private long tick;
+
+    private int self;
+    private int selfColor;
+    private double selfX;
+    private double selfY;
+
+    FlockKernel(FlockStore store, SpatialGrid grid) {
+        this.store = store;
+        this.grid = grid;
+    }
+
+    FlockKernel configure(double xBound, double yBound, SpeciesTable species, double dt) {
+        this.xBound = xBound;
+        this.yBound = yBound;
+        this.species = species;
+        this.dt = dt;
+        if(speciesSums.length != species.size()) {
+            speciesSums = new NeighbourSums[species.size()];
+            for (int s = 0 ; s < speciesSums.length ; s++) {
+                speciesSums[s] = new NeighbourSums();
+            }
+        }
+        for (int s = 0 ; s < speciesSums.length ; s++) {
+            SpeciesTable.Species sp = species.get(s);
+            speciesSums[s].setRadii(sp.cohesionRadius, sp.separationRadius, sp.alignmentRadius)
+                    .setInteractionRadius(sp.interactionRadius);
+        }
+        return this;
+    }
+
+    /**
+     * Keys the random perturbations of {@link #update(int, int)} to the world seed and the tick being computed.
+     */
+    FlockKernel random(long seed, long tick) {
+        this.seed = seed;
+        this.tick = tick;
+        return this;
+    }
+
+    /**
+     * Reports neighbour counts and sampled phase times to {@code probe}, or nothing when it is null.
+     */
+    FlockKernel probe(FlockMetrics.Probe probe) {
+        this.probe = probe;
+        return this;
+    }
+
+    /**
+     * Steers boids by {@code environment} as well, or by the flock alone when it is null.
+     */
+    FlockKernel environment(EnvironmentField environment) {
+        this.environment = environment;
+        return this;
+    }
+
+    /**
+     * Walks the flocking candidates with {@link VectorNeighbourScan} when {@code vectorized} and the Vector API is
+     * available, which needs the grid {@link SpatialGrid#pack packed} with {@link #padding()} spare slots.
+     */
+    FlockKernel vectorized(boolean vectorized) {
+        if(!vectorized || !VECTOR_API) {
+            scan = null;
+        } else if(scan == null) {
+            scan = new VectorNeighbourScan(grid);
+        }
+        return this;
+    }
+
+    /**
+     * Walks the flocking candidates in {@code lists} instead of the grid, or the grid again when it is null. The
+     * lists must be up to date for the flock being updated.
+     */
+    FlockKernel neighbourLists(NeighbourLists lists) {
+        this.lists = lists;
+        return this;
+    }
+
+    /**
+     * The padding the packed grid needs for the vectorized walk.
+     */
+    static int padding() {
+        return VectorNeighbourScan.LANES.length();
+    }
+
+    void update(int from, int to) {
+        for (int i = from ; i < to ; i++) {
+            update(i);
+        }
+    }
+
+    void update(int i) {
+        if(Boid.perturbation(BoidRandom.stream(seed, store.id[i], tick), perturbation)) {
+            update(i, true, perturbation.getX(), perturbation.getY());
+        } else {
+            update(i, false, 0d, 0d);
+        }
+    }
+
+    void update(int i, boolean perturbed, double perturbX, double perturbY) {
+        FlockStore s = store;
+        FlockMetrics.Probe p = probe;
+        boolean timed = p != null && p.isSampled(i);
+        long t0 = timed ? System.nanoTime() : 0L;
+        self = i;
+        selfColor = s.color[i];
+        selfX = s.x[i];
+        selfY = s.y[i];
+        SpeciesTable table = species;
+        flockMask = table.mask(selfColor, SpeciesTable.Interaction.FLOCK);
+        avoidMask = table.mask(selfColor, SpeciesTable.Interaction.AVOID);
+        chaseMask = table.mask(selfColor, SpeciesTable.Interaction.CHASE);
+        filtered = grid.getSpeciesCount() != table.size() && flockMask != table.allMask();
+
+        NeighbourSums n = sums = speciesSums[selfColor];
+        n.reset();
+        if(lists != null) {
+            int[] items = lists.items;
+            for (int k = lists.start[i], end = lists.start[i + 1] ; k < end ; k++) {
+                accept(items[k]);
+            }
+        } else if(scan != null && !filtered) {
+            scan.scan(n, i, selfX, selfY, flockMask);
+        } else {
+            grid.forEachCandidate(selfX, selfY, n.getRadius(), flockMask, this);
+        }
+        if(avoidMask != 0) {
+            grid.forEachCandidate(selfX, selfY, n.getInteractionRadius(), avoidMask, avoider);
+        }
+        if(chaseMask != 0) {
+            grid.forEachCandidate(selfX, selfY, n.getInteractionRadius(), chaseMask, chaser);
+        }
+        long t1 = timed ? System.nanoTime() : 0L;
+
+        SpeciesTable.Species sp = table.get(selfColor);
+        MutableVector2D v = n.steer(steered.set(s.vx[i], s.vy[i]), selfX, selfY,
+                s.cohesionWeight[i], s.separationWeight[i], s.alignmentWeight[i]);
+        if((avoidMask | chaseMask) != 0) {
+            n.steerInteractions(v, sp.interactionWeight);
+        }
+        if(perturbed) {
+            v.add(perturbX, perturbY);
+        }
+        if(environment != null) {
+            environment.steer(selfX, selfY, v);
+        }
+        v.normalizeTo(sp.maxVelocity);
+        long t2 = timed ? System.nanoTime() : 0L;
+
+        s.nextVx[i] = v.getX();
+        s.nextVy[i] = v.getY();
+        s.nextX[i] = Vector2D.wrap(selfX + v.getX() * dt, xBound);
+        s.nextY[i] = Vector2D.wrap(selfY + v.getY() * dt, yBound);
+
+        if(p != null) {
+            p.recordNeighbours(n.getNeighbourCount());
+            if(timed) {
+                p.recordSample(t1 - t0, t2 - t1, System.nanoTime() - t2);
+            }
+        }
+    }
+
+    // a grid split by species only visits the masked species, one that isn't visits everything
+    private boolean skip(int j, int mask) {
+        return j == self || (filtered && (mask >>> store.color[j] & 1) == 0);
+    }
+
+    @Override
+    public void accept(int j) {
+        FlockStore s = store;
+        if(skip(j, flockMask)) {
+            return;
+        }
+        sums.add(selfX, selfY, s.x[j], s.y[j], s.vx[j], s.vy[j]);
+    }
+
+    private void avoid(int j) {
+        if(!skip(j, avoidMask)) {
+            sums.avoid(selfX, selfY, store.x[j], store.y[j]);
+        }
+    }
+
+    private void chase(int j) {
+        if(!skip(j, chaseMask)) {
+            sums.chase(selfX, selfY, store.x[j], store.y[j]);
+        }
+    }
+}
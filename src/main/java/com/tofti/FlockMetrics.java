@@ -0,0 +1,343 @@
+package com.tofti;
+
+import org.HdrHistogram.Histogram;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-phase timings, neighbour counts and allocation for a {@link FlockSimulation}, plus the render times reported
+ * by the UI. The simulation records into live histograms as it steps; {@link #roll()} closes the current interval
+ * into an immutable {@link MetricsSnapshot}, which is what the JMX bean, the dumps and the context menu show.
+ * <p>
+ * The neighbour walk, steering and integration are fused into one pass by {@link FlockKernel}, so their split is
+ * estimated: every {@link #SAMPLE_INTERVAL}th boid is timed phase by phase, and the sampled proportions are applied
+ * to the measured time of the whole pass. Neighbour counts are recorded for every boid.
+ * <p>
+ * Allocation is counted on the thread stepping the simulation and on every thread that has run part of a tick for
+ * it, such as the fork-join workers of a parallel step. A worker shared with other work has that counted too. A
+ * worker's probe is dropped once its thread has died and its counts have gone into the totals, so workers that
+ * retire and respawn don't pile up probes; what a worker allocated between its last tick and dying goes uncounted.
+ * <p>
+ * Each instance registers over JMX under its own {@code name} key, so several simulations in one JVM can publish.
+ */
+public class FlockMetrics implements FlockMetricsMXBean {
+    static final String OBJECT_NAME = "com.tofti:type=FlockMetrics";
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+    static final int SAMPLE_INTERVAL = 16;
+    static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Histogram tickNanos = new Histogram(SIGNIFICANT_DIGITS);
+    private final Histogram[] phaseNanos = new Histogram[TickPhase.values().length];
+    private final Histogram neighbours = new Histogram(SIGNIFICANT_DIGITS);
+    private long ticks;
+    private long boidTicks;
+    private int boids;
+    private long allocatedBytes;
+    private long frames;
+    private long intervalStartNanos = System.nanoTime();
+
+    // one probe per thread running kernels, drained at the end of every tick
+    private final List<Probe> probes = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Probe> probe = ThreadLocal.withInitial(this::newProbe);
+
+    private final com.sun.management.ThreadMXBean threads;
+    private long allocationOverhead;
+    private long tickStartBytes;
+
+    private volatile MetricsSnapshot latest;
+    private final ObjectName objectName;
+
+    public FlockMetrics() {
+        for (TickPhase phase : TickPhase.values()) {
+            phaseNanos[phase.ordinal()] = new Histogram(SIGNIFICANT_DIGITS);
+        }
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+            // reading the counter can allocate, measure that so it can be taken off every tick
+            for (int i = 0 ; i < 3 ; i++) {
+                allocationOverhead = -allocatedBytes() + allocatedBytes();
+            }
+        } else {
+            threads = null;
+        }
+        try {
+            objectName = new ObjectName(OBJECT_NAME + ",name=flock-" + INSTANCES.incrementAndGet());
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+        roll();
+    }
+
+    private Probe newProbe() {
+        Probe p = new Probe(Thread.currentThread());
+        p.allocationMark = allocatedBytes();
+        probes.add(p);
+        return p;
+    }
+
+    Probe probe() {
+        return probe.get();
+    }
+
+    private long allocatedBytes() {
+        return threads == null ? 0L : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Marks the start of a tick on the simulation thread, returning the start time.
+     */
+    long startTick() {
+        if(threads != null) {
+            // the other threads first, so that reading their counters isn't counted against this one
+            long self = Thread.currentThread().getId();
+            for (int i = 0 ; i < probes.size() ; i++) {
+                Probe p = probes.get(i);
+                if(p.threadId != self) {
+                    p.allocationMark = threads.getThreadAllocatedBytes(p.threadId);
+                }
+            }
+        }
+        tickStartBytes = allocatedBytes();
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a tick from the times each phase of {@link FlockSimulation#step(double)} started at.
+     */
+    void endTick(int n, long start, long indexStart, long kernelStart, long swapStart, long end) {
+        long allocated = threads == null ? 0L : Math.max(0L, allocatedBytes() - tickStartBytes - allocationOverhead);
+        if(threads != null) {
+            long self = Thread.currentThread().getId();
+            for (int i = 0 ; i < probes.size() ; i++) {
+                Probe p = probes.get(i);
+                if(p.threadId != self) {
+                    // -1 once the thread has died
+                    long bytes = threads.getThreadAllocatedBytes(p.threadId);
+                    allocated += Math.max(0L, bytes - p.allocationMark);
+                    p.allocationMark = bytes;
+                }
+            }
+        }
+
+        long sampledNeighbours = 0;
+        long sampledSteering = 0;
+        long sampledIntegration = 0;
+        for (int i = 0 ; i < probes.size() ; i++) {
+            Probe p = probes.get(i);
+            sampledNeighbours += p.neighbourNanos;
+            sampledSteering += p.steeringNanos;
+            sampledIntegration += p.integrationNanos;
+        }
+        long kernel = swapStart - kernelStart;
+        double sampled = sampledNeighbours + sampledSteering + sampledIntegration;
+        long neighbourNanos = sampled == 0d ? kernel : Math.round(kernel * (sampledNeighbours / sampled));
+        long steeringNanos = sampled == 0d ? 0L : Math.round(kernel * (sampledSteering / sampled));
+
+        synchronized (this) {
+            ticks++;
+            boids = n;
+            boidTicks += n;
+            allocatedBytes += allocated;
+            tickNanos.recordValue(end - start);
+            // drawing the perturbations counts as steering, publishing the next state as integration
+            phaseNanos[TickPhase.INDEX.ordinal()].recordValue(kernelStart - indexStart);
+            phaseNanos[TickPhase.NEIGHBOURS.ordinal()].recordValue(neighbourNanos);
+            phaseNanos[TickPhase.STEERING.ordinal()].recordValue(indexStart - start + steeringNanos);
+            phaseNanos[TickPhase.INTEGRATION.ordinal()].recordValue(
+                    Math.max(0L, kernel - neighbourNanos - steeringNanos) + end - swapStart);
+            for (int i = 0 ; i < probes.size() ; i++) {
+                Probe p = probes.get(i);
+                neighbours.add(p.neighbours);
+                p.reset();
+            }
+        }
+        // drained above, so a dead thread's probe has nothing left to give
+        probes.removeIf(p -> !p.thread.isAlive());
+    }
+
+    int probeCount() {
+        return probes.size();
+    }
+
+    /**
+     * Records the time the UI took to draw one frame.
+     */
+    public synchronized void recordRender(long nanos) {
+        phaseNanos[TickPhase.RENDER.ordinal()].recordValue(nanos);
+        frames++;
+    }
+
+    /**
+     * Closes the current interval, returning its snapshot and making it the {@link #getLatest() latest}.
+     */
+    public synchronized MetricsSnapshot roll() {
+        long now = System.nanoTime();
+        MetricsSnapshot snapshot = new MetricsSnapshot(System.currentTimeMillis(), now - intervalStartNanos,
+                boids, ticks, boidTicks, frames, allocatedBytes, tickNanos, phaseNanos, neighbours);
+        intervalStartNanos = now;
+        ticks = 0;
+        boidTicks = 0;
+        frames = 0;
+        allocatedBytes = 0;
+        tickNanos.reset();
+        for (Histogram h : phaseNanos) {
+            h.reset();
+        }
+        neighbours.reset();
+        latest = snapshot;
+        return snapshot;
+    }
+
+    public MetricsSnapshot getLatest() {
+        return latest;
+    }
+
+    public ObjectName register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("could not register " + objectName, e);
+        }
+    }
+
+    public void unregister() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("could not unregister " + objectName, e);
+        }
+    }
+
+    @Override
+    public int getBoids() {
+        return latest.getBoids();
+    }
+
+    @Override
+    public long getTicks() {
+        return latest.getTicks();
+    }
+
+    @Override
+    public double getTicksPerSecond() {
+        return latest.getTicksPerSecond();
+    }
+
+    @Override
+    public double getBoidsPerSecond() {
+        return latest.getBoidsPerSecond();
+    }
+
+    @Override
+    public double getFramesPerSecond() {
+        return latest.getFramesPerSecond();
+    }
+
+    @Override
+    public double getTickMeanMillis() {
+        return MetricsSnapshot.millis(latest.getTickMeanNanos());
+    }
+
+    @Override
+    public double getTickP50Millis() {
+        return MetricsSnapshot.millis(latest.getTickP50Nanos());
+    }
+
+    @Override
+    public double getTickP99Millis() {
+        return MetricsSnapshot.millis(latest.getTickP99Nanos());
+    }
+
+    @Override
+    public double getTickMaxMillis() {
+        return MetricsSnapshot.millis(latest.getTickMaxNanos());
+    }
+
+    @Override
+    public Map<String, Double> getPhaseMeanMillis() {
+        MetricsSnapshot s = latest;
+        Map<String, Double> means = new LinkedHashMap<>();
+        for (TickPhase phase : TickPhase.values()) {
+            means.put(phase.key(), MetricsSnapshot.millis(s.getPhaseMeanNanos(phase)));
+        }
+        return means;
+    }
+
+    @Override
+    public Map<String, Double> getPhaseP99Millis() {
+        MetricsSnapshot s = latest;
+        Map<String, Double> p99s = new LinkedHashMap<>();
+        for (TickPhase phase : TickPhase.values()) {
+            p99s.put(phase.key(), MetricsSnapshot.millis(s.getPhaseP99Nanos(phase)));
+        }
+        return p99s;
+    }
+
+    @Override
+    public double getNeighboursMean() {
+        return latest.getNeighboursMean();
+    }
+
+    @Override
+    public long getNeighboursP99() {
+        return latest.getNeighboursP99();
+    }
+
+    @Override
+    public double getAllocatedBytesPerTick() {
+        return latest.getAllocatedBytesPerTick();
+    }
+
+    /**
+     * Sampled phase times and neighbour counts from the kernels run by one thread. Written only by its thread while
+     * a tick runs, and drained by the simulation thread once the tick's kernels have all finished.
+     */
+    static final class Probe {
+        final Thread thread;
+        final long threadId;
+        // the thread's allocated bytes when the current tick started
+        long allocationMark;
+        final Histogram neighbours = new Histogram(SIGNIFICANT_DIGITS);
+        long neighbourNanos;
+        long steeringNanos;
+        long integrationNanos;
+
+        Probe(Thread thread) {
+            this.thread = thread;
+            this.threadId = thread.getId();
+        }
+
+        boolean isSampled(int i) {
+            return i % SAMPLE_INTERVAL == 0;
+        }
+
+        void recordNeighbours(int count) {
+            neighbours.recordValue(count);
+        }
+
+        void recordSample(long neighbourNanos, long steeringNanos, long integrationNanos) {
+            this.neighbourNanos += neighbourNanos;
+            this.steeringNanos += steeringNanos;
+            this.integrationNanos += integrationNanos;
+        }
+
+        void reset() {
+            neighbours.reset();
+            neighbourNanos = 0;
+            steeringNanos = 0;
+            integrationNanos = 0;
+        }
+    }
+}
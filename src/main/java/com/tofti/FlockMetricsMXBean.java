@@ -0,0 +1,37 @@
+package com.tofti;
+
+import java.util.Map;
+
+/**
+ * The JMX view of {@link FlockMetrics}, registered as {@value FlockMetrics#OBJECT_NAME} with a {@code name} key
+ * telling instances apart. Every attribute comes from the most recently rolled {@link MetricsSnapshot}.
+ */
+public interface FlockMetricsMXBean {
+    int getBoids();
+
+    long getTicks();
+
+    double getTicksPerSecond();
+
+    double getBoidsPerSecond();
+
+    double getFramesPerSecond();
+
+    double getTickMeanMillis();
+
+    double getTickP50Millis();
+
+    double getTickP99Millis();
+
+    double getTickMaxMillis();
+
+    Map<String, Double> getPhaseMeanMillis();
+
+    Map<String, Double> getPhaseP99Millis();
+
+    double getNeighboursMean();
+
+    long getNeighboursP99();
+
+    double getAllocatedBytesPerTick();
+}
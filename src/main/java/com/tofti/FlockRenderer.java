@@ -0,0 +1,39 @@
+package com.tofti;
+
+import com.google.common.collect.ImmutableList;
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+
+/**
+ * Draws a flock once per frame. Renderers follow boids being added and removed between frames by themselves, and
+ * leave boids outside the {@link Viewport} out of the frame.
+ */
+interface FlockRenderer {
+    ImmutableList<Color> COLORS = ImmutableList.of(Color.RED, Color.GREEN, Color.BLUE, Color.CYAN);
+
+    Node getNode();
+
+    void resize(double width, double height);
+
+    void render(FlockView flock, Viewport viewport);
+
+    /**
+     * The named renderer, drawing density tiles instead whenever the zoom is below {@code densityZoom}.
+     */
+    static FlockRenderer create(String name, double width, double height, double densityZoom) {
+        return new LevelOfDetailRenderer(create(name, width, height), new DensityRenderer(width, height), densityZoom);
+    }
+
+    static FlockRenderer create(String name, double width, double height) {
+        switch (name) {
+            case "nodes":
+                return new NodeRenderer();
+            case "canvas":
+                return new CanvasRenderer(width, height);
+            case "pixels":
+                return new PixelRenderer(width, height);
+            default:
+                throw new IllegalArgumentException("unknown renderer '" + name + "', expected nodes, canvas or pixels");
+        }
+    }
+}
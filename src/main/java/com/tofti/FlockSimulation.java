@@ -0,0 +1,410 @@
+package com.tofti;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntPredicate;
+
+/**
+ * The boids world without any rendering. {@link #step(double)} advances every boid by {@code dt} ticks, where one
+ * tick is one frame of the original frame-locked animation.
+ * <p>
+ * A tick is double buffered: every boid reads the state of the previous tick and writes its next state, which is
+ * published once all boids are updated. Update order therefore doesn't matter, and {@link UpdateMode#PARALLEL}
+ * gives exactly the same results as {@link UpdateMode#SEQUENTIAL} for the same seed. Random draws are keyed by the
+ * seed, boid id and tick through {@link BoidRandom}, so they need no shared generator either.
+ * <p>
+ * The flock lives in a {@link FlockStore} and is updated by {@link FlockKernel}, which follow the rules of
+ * {@link Boid}. Once the store has grown to the size of the flock a sequential tick allocates nothing.
+ */
+public class FlockSimulation {
+    public enum UpdateMode { SEQUENTIAL, PARALLEL }
+
+    // boids per fork-join leaf task
+    static final int PARALLEL_THRESHOLD = 256;
+
+    private final FlockStore store = new FlockStore();
+    private final SpatialGrid grid = new SpatialGrid(Boid.CENTER_OF_MASS_NEIGHBORHOOD);
+    private final FlockKernel kernel = new FlockKernel(store, grid);
+    private long seed;
+
+    private double xBound;
+    private double yBound;
+
+    private double alignmentWeight = Boid.DEFAULT_WEIGHT;
+    private double separationWeight = Boid.DEFAULT_WEIGHT;
+    private double cohesionWeight = Boid.DEFAULT_WEIGHT;
+    private SpeciesTable species;
+
+    private UpdateMode updateMode = UpdateMode.SEQUENTIAL;
+    private boolean vectorized;
+    private NeighbourLists lists;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private FlockMetrics metrics;
+    private Environment environment;
+    private EnvironmentField field;
+
+    private long tick;
+
+    public FlockSimulation(double xBound, double yBound, long seed) {
+        this(xBound, yBound, seed, SpeciesTable.standard(Boid.COLOR_SENSITIVE_DEFAULT));
+    }
+
+    /**
+     * A simulation whose boids are drawn from the species of {@code species}. The renderers only have colours for the
+     * first {@link Boid#COLOR_COUNT} species.
+     */
+    public FlockSimulation(double xBound, double yBound, long seed, SpeciesTable species) {
+        this.xBound = xBound;
+        this.yBound = yBound;
+        this.seed = seed;
+        this.species = species;
+    }
+
+    public int addBoid(double x, double y) {
+        long spawn = BoidRandom.stream(seed, store.getNextId(), BoidRandom.SPAWN);
+        return addBoid(spawn, x, y);
+    }
+
+    private int addBoid(long spawn, double x, double y) {
+        double vx = BoidRandom.nextDouble(spawn, 0) * Boid.MAX_VELOCITY - 0.5 * Boid.MAX_VELOCITY;
+        double vy = BoidRandom.nextDouble(spawn, 1) * Boid.MAX_VELOCITY - 0.5 * Boid.MAX_VELOCITY;
+        int color = BoidRandom.nextInt(spawn, 2, species.size());
+        int i = store.add(x, y, vx, vy, color);
+        SpeciesTable.Species sp = species.get(color);
+        store.setAlignmentWeight(i, sp.alignmentWeight);
+        store.setSeparationWeight(i, sp.separationWeight);
+        store.setCohesionWeight(i, sp.cohesionWeight);
+        return i;
+    }
+
+    public int addRandomBoids(int n) {
+        return spawn(n, SpawnRegion.rectangle(0, 0, xBound, yBound));
+    }
+
+    /**
+     * Adds {@code n} boids placed by {@code region}, wrapped into the world, growing the store once. Returns the
+     * index of the first.
+     */
+    public int spawn(int n, SpawnRegion region) {
+        int first = store.size();
+        store.ensureCapacity(first + n);
+        MutableVector2D location = new MutableVector2D();
+        for (int i = 0 ; i < n ; i++) {
+            long spawn = BoidRandom.stream(seed, store.getNextId(), BoidRandom.SPAWN);
+            region.sample(spawn, location);
+            addBoid(spawn, wrapInto(location.getX(), xBound), wrapInto(location.getY(), yBound));
+        }
+        return first;
+    }
+
+    // any distance outside the world, where Vector2D.wrap only handles overshooting by less than a world
+    private static double wrapInto(double v, double bound) {
+        return v - Math.floor(v / bound) * bound;
+    }
+
+    /**
+     * Removes every boid {@code remove} accepts the index of, see {@link FlockStore#removeIf}.
+     */
+    public int removeBoids(IntPredicate remove) {
+        return store.removeIf(remove);
+    }
+
+    /**
+     * Removes every boid within {@code radius} of {@code (x, y)}.
+     */
+    public int removeBoidsWithin(double x, double y, double radius) {
+        double r2 = radius * radius;
+        return store.removeIf(i -> {
+            double dx = store.x[i] - x;
+            double dy = store.y[i] - y;
+            return dx * dx + dy * dy <= r2;
+        });
+    }
+
+    public void clear() {
+        store.clear();
+    }
+
+    public FlockStore getStore() {
+        return store;
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    void setTick(long tick) {
+        this.tick = tick;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public double getXBound() {
+        return xBound;
+    }
+
+    public double getYBound() {
+        return yBound;
+    }
+
+    public void setXBound(double xBound) {
+        this.xBound = xBound;
+    }
+
+    public void setYBound(double yBound) {
+        this.yBound = yBound;
+    }
+
+    public Environment getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * Sets the obstacles and attractors the boids steer by, or none for null. The environment is baked on the next
+     * step, and again whenever the bounds change, so it mustn't be modified once set.
+     */
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+        this.field = null;
+    }
+
+    public double getAlignmentWeight() {
+        return alignmentWeight;
+    }
+
+    public double getSeparationWeight() {
+        return separationWeight;
+    }
+
+    public double getCohesionWeight() {
+        return cohesionWeight;
+    }
+
+    public void setAlignmentWeight(double alignmentWeight) {
+        this.alignmentWeight = alignmentWeight;
+        for (int s = 0 ; s < species.size() ; s++) {
+            species.get(s).alignmentWeight = alignmentWeight;
+        }
+        store.setAlignmentWeight(alignmentWeight);
+    }
+
+    public void setSeparationWeight(double separationWeight) {
+        this.separationWeight = separationWeight;
+        for (int s = 0 ; s < species.size() ; s++) {
+            species.get(s).separationWeight = separationWeight;
+        }
+        store.setSeparationWeight(separationWeight);
+    }
+
+    public void setCohesionWeight(double cohesionWeight) {
+        this.cohesionWeight = cohesionWeight;
+        for (int s = 0 ; s < species.size() ; s++) {
+            species.get(s).cohesionWeight = cohesionWeight;
+        }
+        store.setCohesionWeight(cohesionWeight);
+    }
+
+    /**
+     * Sets the alignment weight of species {@code s} and of every boid of it.
+     */
+    public void setAlignmentWeight(int s, double alignmentWeight) {
+        species.get(s).alignmentWeight = alignmentWeight;
+        for (int i = 0 ; i < store.size() ; i++) {
+            if(store.color[i] == s) {
+                store.alignmentWeight[i] = alignmentWeight;
+            }
+        }
+    }
+
+    public void setSeparationWeight(int s, double separationWeight) {
+        species.get(s).separationWeight = separationWeight;
+        for (int i = 0 ; i < store.size() ; i++) {
+            if(store.color[i] == s) {
+                store.separationWeight[i] = separationWeight;
+            }
+        }
+    }
+
+    public void setCohesionWeight(int s, double cohesionWeight) {
+        species.get(s).cohesionWeight = cohesionWeight;
+        for (int i = 0 ; i < store.size() ; i++) {
+            if(store.color[i] == s) {
+                store.cohesionWeight[i] = cohesionWeight;
+            }
+        }
+    }
+
+    /**
+     * The species of the flock, to be changed between steps only. Weights are set through the simulation, which
+     * applies them to the existing boids too.
+     */
+    public SpeciesTable getSpecies() {
+        return species;
+    }
+
+    /**
+     * Replaces the species table, for a flock whose boids' colours are all species of {@code species}.
+     */
+    void setSpecies(SpeciesTable species) {
+        this.species = species;
+    }
+
+    public boolean isColorSensitive() {
+        return species.isColorSensitive();
+    }
+
+    public void setColorSensitive(boolean colorSensitive) {
+        species.setColorSensitive(colorSensitive);
+    }
+
+    public UpdateMode getUpdateMode() {
+        return updateMode;
+    }
+
+    public void setUpdateMode(UpdateMode updateMode) {
+        this.updateMode = updateMode;
+    }
+
+    public boolean isVectorized() {
+        return vectorized;
+    }
+
+    /**
+     * Walks the flocking neighbours in SIMD lanes, see {@link VectorNeighbourScan}, when the JVM was started with
+     * {@code --add-modules jdk.incubator.vector}, and with the scalar walk otherwise. The two sum the neighbours in
+     * a different order, so they agree to rounding rather than to the bit.
+     */
+    public void setVectorized(boolean vectorized) {
+        this.vectorized = vectorized;
+    }
+
+    /**
+     * The skin of the neighbour lists, 0 when every tick queries the grid.
+     */
+    public double getNeighbourSkin() {
+        return lists == null ? 0d : lists.getSkin();
+    }
+
+    /**
+     * Caches every boid's neighbour candidates, see {@link NeighbourLists}, within its neighbourhood plus
+     * {@code skin}, or queries the grid every tick for 0. A wider skin rebuilds the lists less often but makes them
+     * longer. The lists sum a boid's neighbours in the order they were found rather than the grid's current
+     * order, so results agree with the grid's to rounding. The lists take precedence over
+     * {@link #setVectorized vectorized} walks.
+     */
+    public void setNeighbourSkin(double skin) {
+        this.lists = skin > 0d ? new NeighbourLists(skin) : null;
+    }
+
+    /**
+     * How many times the neighbour lists have been built, 0 without them.
+     */
+    public int getNeighbourListRebuilds() {
+        return lists == null ? 0 : lists.getRebuilds();
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public FlockMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Records the phases of every step into {@code metrics}, or stops recording when it is null.
+     */
+    public void setMetrics(FlockMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void step(double dt) {
+        FlockMetrics recorder = metrics;
+        long start = recorder == null ? 0L : recorder.startTick();
+        int n = store.size();
+
+        long indexStart = recorder == null ? 0L : System.nanoTime();
+        if(environment != null && (field == null || !field.covers(xBound, yBound))) {
+            field = EnvironmentField.bake(environment, xBound, yBound);
+        }
+        if(species.flocksWithAll()) {
+            grid.rebuild(store.x, store.y, n, xBound, yBound);
+        } else {
+            grid.rebuild(store.x, store.y, store.color, species.size(), n, xBound, yBound);
+        }
+        if(lists != null) {
+            lists.update(store, grid, species, xBound, yBound);
+        }
+        boolean vectorize = vectorized && FlockKernel.VECTOR_API && lists == null;
+        if(vectorize) {
+            grid.pack(store.x, store.y, store.vx, store.vy, FlockKernel.padding());
+        }
+
+        long kernelStart = recorder == null ? 0L : System.nanoTime();
+        if(updateMode == UpdateMode.PARALLEL && n > PARALLEL_THRESHOLD) {
+            pool.invoke(new UpdateTask(0, n, dt, vectorize));
+        } else {
+            kernel.configure(xBound, yBound, species, dt)
+                    .random(seed, tick)
+                    .probe(recorder == null ? null : recorder.probe())
+                    .environment(field)
+                    .vectorized(vectorize)
+                    .neighbourLists(lists)
+                    .update(0, n);
+        }
+
+        long swapStart = recorder == null ? 0L : System.nanoTime();
+        store.swap();
+        tick++;
+        if(recorder != null) {
+            recorder.endTick(n, start, indexStart, kernelStart, swapStart, System.nanoTime());
+        }
+    }
+
+    private class UpdateTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final double dt;
+        private final boolean vectorize;
+
+        UpdateTask(int from, int to, double dt, boolean vectorize) {
+            this.from = from;
+            this.to = to;
+            this.dt = dt;
+            this.vectorize = vectorize;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= PARALLEL_THRESHOLD) {
+                new FlockKernel(store, grid)
+                        .configure(xBound, yBound, species, dt)
+                        .random(seed, tick)
+                        .probe(metrics == null ? null : metrics.probe())
+                        .environment(field)
+                        .vectorized(vectorize)
+                        .neighbourLists(lists)
+                        .update(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new UpdateTask(from, mid, dt, vectorize), new UpdateTask(mid, to, dt, vectorize));
+        }
+    }
+}
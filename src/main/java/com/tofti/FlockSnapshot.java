@@ -0,0 +1,167 @@
+package com.tofti;
+
+import java.util.Arrays;
+
+/**
+ * A copy of the flock taken after a simulation step, along with the locations before that step so a renderer can
+ * interpolate between the two. Snapshots are filled by {@link SimulationScheduler} and handed to the reader through
+ * a {@link TripleBuffer}; a snapshot the reader holds is never written.
+ */
+public final class FlockSnapshot implements FlockView {
+    int size;
+    long tick;
+    long publishedNanos;
+    long stepNanos;
+    double xBound;
+    double yBound;
+
+    double[] previousX = new double[0];
+    double[] previousY = new double[0];
+    double[] x = new double[0];
+    double[] y = new double[0];
+    double[] vx = new double[0];
+    double[] vy = new double[0];
+    int[] color = new int[0];
+
+    void ensureCapacity(int capacity) {
+        if(x.length < capacity) {
+            previousX = Arrays.copyOf(previousX, capacity);
+            previousY = Arrays.copyOf(previousY, capacity);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            vx = Arrays.copyOf(vx, capacity);
+            vy = Arrays.copyOf(vy, capacity);
+            color = Arrays.copyOf(color, capacity);
+        }
+    }
+
+    void capturePrevious(FlockStore store) {
+        ensureCapacity(store.size());
+        System.arraycopy(store.x, 0, previousX, 0, store.size());
+        System.arraycopy(store.y, 0, previousY, 0, store.size());
+    }
+
+    void capture(FlockSimulation simulation, long stepNanos) {
+        FlockStore store = simulation.getStore();
+        int n = store.size();
+        ensureCapacity(n);
+        System.arraycopy(store.x, 0, x, 0, n);
+        System.arraycopy(store.y, 0, y, 0, n);
+        System.arraycopy(store.vx, 0, vx, 0, n);
+        System.arraycopy(store.vy, 0, vy, 0, n);
+        System.arraycopy(store.color, 0, color, 0, n);
+        this.size = n;
+        this.tick = simulation.getTick();
+        this.xBound = simulation.getXBound();
+        this.yBound = simulation.getYBound();
+        this.stepNanos = stepNanos;
+        this.publishedNanos = System.nanoTime();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public long getPublishedNanos() {
+        return publishedNanos;
+    }
+
+    @Override
+    public double getX(int i) {
+        return x[i];
+    }
+
+    @Override
+    public double getY(int i) {
+        return y[i];
+    }
+
+    @Override
+    public double getVelocityX(int i) {
+        return vx[i];
+    }
+
+    @Override
+    public double getVelocityY(int i) {
+        return vy[i];
+    }
+
+    @Override
+    public int getColor(int i) {
+        return color[i];
+    }
+
+    /**
+     * How far the display time {@code nowNanos} is from the previous step to this one, in [0, 1]. Rendering runs
+     * one step behind the simulation, so the interpolated state is always between two simulated ones.
+     */
+    public double alpha(long nowNanos) {
+        if(stepNanos <= 0) {
+            return 1d;
+        }
+        double alpha = (nowNanos - publishedNanos) / (double) stepNanos;
+        return Math.max(0d, Math.min(1d, alpha));
+    }
+
+    static double interpolate(double previous, double current, double alpha, double bound) {
+        // a boid that wrapped around the world jumps rather than sweeping back across it
+        if(Math.abs(current - previous) > bound / 2) {
+            return current;
+        }
+        return previous + (current - previous) * alpha;
+    }
+
+    /**
+     * A snapshot seen at a point between its previous and current locations. Owned by the reader and reused from
+     * frame to frame.
+     */
+    public static final class Interpolated implements FlockView {
+        private FlockSnapshot snapshot = new FlockSnapshot();
+        private double alpha = 1d;
+
+        public Interpolated set(FlockSnapshot snapshot, double alpha) {
+            this.snapshot = snapshot;
+            this.alpha = alpha;
+            return this;
+        }
+
+        public FlockSnapshot getSnapshot() {
+            return snapshot;
+        }
+
+        @Override
+        public int size() {
+            return snapshot.size;
+        }
+
+        @Override
+        public double getX(int i) {
+            return interpolate(snapshot.previousX[i], snapshot.x[i], alpha, snapshot.xBound);
+        }
+
+        @Override
+        public double getY(int i) {
+            return interpolate(snapshot.previousY[i], snapshot.y[i], alpha, snapshot.yBound);
+        }
+
+        @Override
+        public double getVelocityX(int i) {
+            return snapshot.vx[i];
+        }
+
+        @Override
+        public double getVelocityY(int i) {
+            return snapshot.vy[i];
+        }
+
+        @Override
+        public int getColor(int i) {
+            return snapshot.color[i];
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.tofti;
+
+/**
+ * How ordered a flock is at one tick, for comparing runs rather than timing them:
+ * <ul>
+ * <li>polarization, the length of the mean heading, 1 when every boid flies the same way and near 0 when they fly
+ * every which way,</li>
+ * <li>the number of clusters, boids being in one cluster when a chain of boids each within the cluster distance of
+ * the next joins them,</li>
+ * <li>the mean distance from a boid to its nearest neighbour.</li>
+ * </ul>
+ * Distances are measured around the world.
+ */
+public final class FlockStatistics {
+    static final double DEFAULT_CLUSTER_DISTANCE = Boid.ALIGNMENT_DISTANCE;
+
+    private final int boids;
+    private final double polarization;
+    private final int clusters;
+    private final double meanNearestNeighbour;
+
+    private FlockStatistics(int boids, double polarization, int clusters, double meanNearestNeighbour) {
+        this.boids = boids;
+        this.polarization = polarization;
+        this.clusters = clusters;
+        this.meanNearestNeighbour = meanNearestNeighbour;
+    }
+
+    public static FlockStatistics of(FlockSimulation simulation) {
+        return of(simulation, DEFAULT_CLUSTER_DISTANCE);
+    }
+
+    public static FlockStatistics of(FlockSimulation simulation, double clusterDistance) {
+        FlockStore store = simulation.getStore();
+        double xBound = simulation.getXBound();
+        double yBound = simulation.getYBound();
+        int n = store.size();
+        SpatialGrid grid = new SpatialGrid(clusterDistance);
+        grid.rebuild(store.x, store.y, n, xBound, yBound);
+        // the grid wraps after whole cells, so a query reaches up to a cell further to be sure of the world's edge
+        double reach = clusterDistance + grid.getCellSize();
+
+        double headingX = 0d;
+        double headingY = 0d;
+        int[] parent = new int[n];
+        for (int i = 0 ; i < n ; i++) {
+            parent[i] = i;
+        }
+        double nearestSum = 0d;
+        double[] nearest = new double[1];
+        for (int i = 0 ; i < n ; i++) {
+            double speed = Math.sqrt(store.vx[i] * store.vx[i] + store.vy[i] * store.vy[i]);
+            if(speed > 0d) {
+                headingX += store.vx[i] / speed;
+                headingY += store.vy[i] / speed;
+            }
+
+            int self = i;
+            double selfX = store.x[i];
+            double selfY = store.y[i];
+            double link2 = clusterDistance * clusterDistance;
+            grid.forEachCandidate(selfX, selfY, reach, j -> {
+                if(j > self && distance2(store, j, selfX, selfY, xBound, yBound) <= link2) {
+                    union(parent, self, j);
+                }
+            });
+
+            // widen the search until the nearest boid found is closer than the search reaches
+            double radius = reach;
+            nearest[0] = Double.MAX_VALUE;
+            while(n > 1) {
+                grid.forEachCandidate(selfX, selfY, radius, j -> {
+                    if(j != self) {
+                        nearest[0] = Math.min(nearest[0], distance2(store, j, selfX, selfY, xBound, yBound));
+                    }
+                });
+                if(Math.sqrt(nearest[0]) <= radius - grid.getCellSize() || radius > xBound + yBound) {
+                    break;
+                }
+                radius *= 2;
+            }
+            nearestSum += Math.sqrt(nearest[0]);
+        }
+
+        int clusters = 0;
+        for (int i = 0 ; i < n ; i++) {
+            if(find(parent, i) == i) {
+                clusters++;
+            }
+        }
+        return new FlockStatistics(n,
+                n == 0 ? 0d : Math.sqrt(headingX * headingX + headingY * headingY) / n,
+                clusters,
+                n < 2 ? Double.NaN : nearestSum / n);
+    }
+
+    private static double distance2(FlockStore store, int j, double x, double y, double xBound, double yBound) {
+        double dx = wrapped(store.x[j] - x, xBound);
+        double dy = wrapped(store.y[j] - y, yBound);
+        return dx * dx + dy * dy;
+    }
+
+    // the shortest way from one coordinate to another around the world
+    private static double wrapped(double d, double bound) {
+        d = Math.abs(d) % bound;
+        return Math.min(d, bound - d);
+    }
+
+    private static int find(int[] parent, int i) {
+        while(parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int i, int j) {
+        int a = find(parent, i);
+        int b = find(parent, j);
+        if(a != b) {
+            parent[Math.max(a, b)] = Math.min(a, b);
+        }
+    }
+
+    public int getBoids() {
+        return boids;
+    }
+
+    public double getPolarization() {
+        return polarization;
+    }
+
+    public int getClusters() {
+        return clusters;
+    }
+
+    /**
+     * The mean distance to the nearest other boid, NaN for fewer than two boids.
+     */
+    public double getMeanNearestNeighbour() {
+        return meanNearestNeighbour;
+    }
+}
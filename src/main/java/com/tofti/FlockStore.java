@@ -0,0 +1,277 @@
+package com.tofti;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Structure-of-arrays storage for a flock, boid {@code i} is slot {@code i} of every array. Locations and velocities
+ * are double buffered: {@link FlockKernel} reads the current arrays and writes the next ones, and {@link #swap()}
+ * publishes them. Nothing is allocated except when the capacity grows.
+ * <p>
+ * Every boid added gets the next id, which is never reused, not even after {@link #clear()}. Ids key the boid's
+ * random draws, see {@link BoidRandom}.
+ */
+public class FlockStore implements FlockView {
+    static final int DEFAULT_CAPACITY = 16;
+
+    int size;
+
+    double[] x;
+    double[] y;
+    double[] vx;
+    double[] vy;
+
+    double[] nextX;
+    double[] nextY;
+    double[] nextVx;
+    double[] nextVy;
+
+    double[] alignmentWeight;
+    double[] separationWeight;
+    double[] cohesionWeight;
+
+    int[] color;
+
+    long[] id;
+    long nextId;
+
+    // bumped whenever boids are added, removed or reordered, so caches keyed by index know to rebuild
+    int version;
+
+    // scratch of sortById
+    private int[] order = new int[0];
+    private int[] merged = new int[0];
+
+    public FlockStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public FlockStore(int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    private void allocate(int capacity) {
+        x = resize(x, capacity);
+        y = resize(y, capacity);
+        vx = resize(vx, capacity);
+        vy = resize(vy, capacity);
+        nextX = resize(nextX, capacity);
+        nextY = resize(nextY, capacity);
+        nextVx = resize(nextVx, capacity);
+        nextVy = resize(nextVy, capacity);
+        alignmentWeight = resize(alignmentWeight, capacity);
+        separationWeight = resize(separationWeight, capacity);
+        cohesionWeight = resize(cohesionWeight, capacity);
+        color = color == null ? new int[capacity] : Arrays.copyOf(color, capacity);
+        id = id == null ? new long[capacity] : Arrays.copyOf(id, capacity);
+    }
+
+    private static double[] resize(double[] a, int capacity) {
+        return a == null ? new double[capacity] : Arrays.copyOf(a, capacity);
+    }
+
+    public void ensureCapacity(int capacity) {
+        if(capacity > x.length) {
+            allocate(Math.max(capacity, 2 * x.length));
+        }
+    }
+
+    public int add(double locX, double locY, double velX, double velY, int boidColor) {
+        ensureCapacity(size + 1);
+        int i = size++;
+        x[i] = locX;
+        y[i] = locY;
+        vx[i] = velX;
+        vy[i] = velY;
+        alignmentWeight[i] = Boid.DEFAULT_WEIGHT;
+        separationWeight[i] = Boid.DEFAULT_WEIGHT;
+        cohesionWeight[i] = Boid.DEFAULT_WEIGHT;
+        color[i] = boidColor;
+        id[i] = nextId++;
+        version++;
+        return i;
+    }
+
+    public void clear() {
+        size = 0;
+        version++;
+    }
+
+    /**
+     * Removes every boid {@code remove} accepts the index of, in one pass that moves the survivors down in order.
+     * Returns how many were removed.
+     */
+    public int removeIf(IntPredicate remove) {
+        int kept = 0;
+        for (int i = 0 ; i < size ; i++) {
+            if(remove.test(i)) {
+                continue;
+            }
+            if(kept != i) {
+                x[kept] = x[i];
+                y[kept] = y[i];
+                vx[kept] = vx[i];
+                vy[kept] = vy[i];
+                alignmentWeight[kept] = alignmentWeight[i];
+                separationWeight[kept] = separationWeight[i];
+                cohesionWeight[kept] = cohesionWeight[i];
+                color[kept] = color[i];
+                id[kept] = id[i];
+            }
+            kept++;
+        }
+        int removed = size - kept;
+        size = kept;
+        if(removed > 0) {
+            version++;
+        }
+        return removed;
+    }
+
+    /**
+     * Puts the boids in id order, the order of a store that has only ever had boids added and removed. Boids
+     * gathered from several stores are back in the order a single store would visit them in after this.
+     */
+    void sortById() {
+        int n = size;
+        boolean sorted = true;
+        for (int i = 1 ; i < n && sorted ; i++) {
+            sorted = id[i - 1] < id[i];
+        }
+        if(sorted) {
+            return;
+        }
+        version++;
+        if(order.length < n) {
+            order = new int[n];
+            merged = new int[n];
+        }
+        for (int i = 0 ; i < n ; i++) {
+            order[i] = i;
+        }
+        // bottom up merge sort of the indices, order[k] being the boid that belongs in slot k
+        int[] from = order;
+        int[] to = merged;
+        for (int width = 1 ; width < n ; width *= 2) {
+            for (int lo = 0 ; lo < n ; lo += 2 * width) {
+                int mid = Math.min(lo + width, n);
+                int hi = Math.min(lo + 2 * width, n);
+                for (int a = lo, b = mid, k = lo ; k < hi ; k++) {
+                    to[k] = b >= hi || (a < mid && id[from[a]] < id[from[b]]) ? from[a++] : from[b++];
+                }
+            }
+            int[] t = from; from = to; to = t;
+        }
+        order = from;
+        merged = to;
+
+        // follow each cycle of the permutation, parking its first boid in the spare slot past the end
+        ensureCapacity(n + 1);
+        for (int k = 0 ; k < n ; k++) {
+            if(order[k] == k) {
+                continue;
+            }
+            move(k, n);
+            int j = k;
+            while(order[j] != k) {
+                int next = order[j];
+                move(next, j);
+                order[j] = j;
+                j = next;
+            }
+            move(n, j);
+            order[j] = j;
+        }
+    }
+
+    private void move(int from, int to) {
+        x[to] = x[from];
+        y[to] = y[from];
+        vx[to] = vx[from];
+        vy[to] = vy[from];
+        alignmentWeight[to] = alignmentWeight[from];
+        separationWeight[to] = separationWeight[from];
+        cohesionWeight[to] = cohesionWeight[from];
+        color[to] = color[from];
+        id[to] = id[from];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return x.length;
+    }
+
+    void swap() {
+        double[] t = x; x = nextX; nextX = t;
+        t = y; y = nextY; nextY = t;
+        t = vx; vx = nextVx; nextVx = t;
+        t = vy; vy = nextVy; nextVy = t;
+    }
+
+    public double getX(int i) {
+        return x[i];
+    }
+
+    public double getY(int i) {
+        return y[i];
+    }
+
+    public double getVelocityX(int i) {
+        return vx[i];
+    }
+
+    public double getVelocityY(int i) {
+        return vy[i];
+    }
+
+    public int getColor(int i) {
+        return color[i];
+    }
+
+    public long getId(int i) {
+        return id[i];
+    }
+
+    public long getNextId() {
+        return nextId;
+    }
+
+    public double getAlignmentWeight(int i) {
+        return alignmentWeight[i];
+    }
+
+    public double getSeparationWeight(int i) {
+        return separationWeight[i];
+    }
+
+    public double getCohesionWeight(int i) {
+        return cohesionWeight[i];
+    }
+
+    public void setAlignmentWeight(int i, double weight) {
+        alignmentWeight[i] = weight;
+    }
+
+    public void setSeparationWeight(int i, double weight) {
+        separationWeight[i] = weight;
+    }
+
+    public void setCohesionWeight(int i, double weight) {
+        cohesionWeight[i] = weight;
+    }
+
+    public void setAlignmentWeight(double weight) {
+        Arrays.fill(alignmentWeight, 0, size, weight);
+    }
+
+    public void setSeparationWeight(double weight) {
+        Arrays.fill(separationWeight, 0, size, weight);
+    }
+
+    public void setCohesionWeight(double weight) {
+        Arrays.fill(cohesionWeight, 0, size, weight);
+    }
+}
@@ -0,0 +1,18 @@
+package com.tofti;
+
+/**
+ * Read-only, index based access to the state of a flock, as needed to draw it.
+ */
+public interface FlockView {
+    int size();
+
+    double getX(int i);
+
+    double getY(int i);
+
+    double getVelocityX(int i);
+
+    double getVelocityY(int i);
+
+    int getColor(int i);
+}
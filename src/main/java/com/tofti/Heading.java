@@ -0,0 +1,53 @@
+package com.tofti;
+
+/**
+ * Headings quantized to {@link #STEPS} per turn without any trigonometry per call. A velocity is mapped to its
+ * "diamond angle", which grows monotonically with the true angle but needs only a division, and the step it falls in
+ * indexes a table of rotations filled once with {@link Math#atan2}. The heading is off by at most a degree.
+ */
+final class Heading {
+    static final int STEPS = 256;
+
+    // rotation in degrees of a shape drawn nose down, as NodeRenderer's polygon is, for each step
+    private static final double[] ROTATION = new double[STEPS];
+
+    static {
+        for (int step = 0 ; step < STEPS ; step++) {
+            double d = (step + 0.5) * 4d / STEPS;
+            double x = d < 2d ? 1d - d : d - 3d;
+            double y = d < 1d ? d : (d < 3d ? 2d - d : d - 4d);
+            ROTATION[step] = Math.toDegrees(Math.atan2(y, x)) - 90d;
+        }
+    }
+
+    private Heading() {
+    }
+
+    /**
+     * The step of the heading of {@code (vx, vy)}, in [0, {@link #STEPS}). A zero velocity is heading 0.
+     */
+    static int quantize(double vx, double vy) {
+        double ax = Math.abs(vx);
+        double ay = Math.abs(vy);
+        double sum = ax + ay;
+        if(sum == 0d) {
+            return 0;
+        }
+        // the diamond angle, in [0, 4) for a full turn
+        double d;
+        if(vy >= 0d) {
+            d = vx >= 0d ? vy / sum : 1d + ax / sum;
+        } else {
+            d = vx < 0d ? 2d + ay / sum : 3d + ax / sum;
+        }
+        int step = (int) (d * (STEPS / 4));
+        return step >= STEPS ? step - STEPS : step;
+    }
+
+    /**
+     * The rotation in degrees that points a shape drawn nose down along {@code step}.
+     */
+    static double rotation(int step) {
+        return ROTATION[step];
+    }
+}
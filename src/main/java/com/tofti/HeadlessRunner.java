@@ -0,0 +1,155 @@
+package com.tofti;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Steps a flock as fast as possible without a display and reports the throughput, e.g.
+ * {@code java -cp alife.jar com.tofti.HeadlessRunner 5000 1000 42 parallel}. {@code --restore=<file>} starts from a
+ * {@link FlockCheckpoint} instead of a random flock, and {@code --save=<file>} checkpoints the flock at the end.
+ * {@code --record=<file>} records every {@code --record-every=<n>}th tick with a {@link TrajectoryRecorder}, which
+ * holds the simulation back when the writer falls behind rather than dropping frames. {@code --tiles=<c>x<r>} steps
+ * the flock as a {@link PartitionedSimulation} of that many tiles instead, talking through
+ * {@code --transport=memory} (the default) or {@code socket}. {@code --vectorized} walks the neighbours in SIMD lanes
+ * when the JVM runs with {@code --add-modules jdk.incubator.vector}. {@code --skin=<px>} caches neighbour lists with
+ * that skin instead of querying the grid every tick.
+ */
+public class HeadlessRunner {
+    static final double DEFAULT_WIDTH = 1024;
+    static final double DEFAULT_HEIGHT = 768;
+
+    public static void main(String[] arguments) throws IOException, InterruptedException {
+        List<String> positional = new ArrayList<>();
+        Path restore = null;
+        Path save = null;
+        Path record = null;
+        int recordEvery = 1;
+        Path environment = null;
+        int[] tiles = null;
+        String transport = "memory";
+        boolean vectorized = false;
+        double skin = 0d;
+        for (String a : arguments) {
+            if(a.startsWith("--restore=")) {
+                restore = Paths.get(a.substring("--restore=".length()));
+            } else if(a.startsWith("--save=")) {
+                save = Paths.get(a.substring("--save=".length()));
+            } else if(a.startsWith("--record=")) {
+                record = Paths.get(a.substring("--record=".length()));
+            } else if(a.startsWith("--environment=")) {
+                environment = Paths.get(a.substring("--environment=".length()));
+            } else if(a.startsWith("--tiles=")) {
+                String[] size = a.substring("--tiles=".length()).split("x");
+                tiles = new int[]{Integer.parseInt(size[0]), Integer.parseInt(size[1])};
+            } else if(a.startsWith("--skin=")) {
+                skin = Double.parseDouble(a.substring("--skin=".length()));
+            } else if(a.equals("--vectorized")) {
+                vectorized = true;
+            } else if(a.startsWith("--transport=")) {
+                transport = a.substring("--transport=".length());
+            } else if(a.startsWith("--record-every=")) {
+                recordEvery = Integer.parseInt(a.substring("--record-every=".length()));
+            } else {
+                positional.add(a);
+            }
+        }
+        String[] args = positional.toArray(new String[0]);
+        if(args.length < 2 || args.length > 4) {
+            System.err.println("usage: HeadlessRunner <boids> <ticks> [seed] [sequential|parallel] [--restore=<file>] [--save=<file>]"
+                    + " [--record=<file>] [--record-every=<n>] [--environment=<file>] [--tiles=<c>x<r>] [--transport=memory|socket]"
+                    + " [--vectorized] [--skin=<px>]");
+            System.exit(1);
+        }
+        int boids = Integer.parseInt(args[0]);
+        int ticks = Integer.parseInt(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.currentTimeMillis();
+        FlockSimulation.UpdateMode mode = args.length > 3
+                ? FlockSimulation.UpdateMode.valueOf(args[3].toUpperCase())
+                : FlockSimulation.UpdateMode.SEQUENTIAL;
+
+        FlockSimulation simulation;
+        if(restore != null) {
+            simulation = FlockCheckpoint.load(restore);
+            boids = simulation.size();
+        } else {
+            simulation = new FlockSimulation(DEFAULT_WIDTH, DEFAULT_HEIGHT, seed);
+            simulation.addRandomBoids(boids);
+        }
+        simulation.setUpdateMode(mode);
+        simulation.setVectorized(vectorized);
+        simulation.setNeighbourSkin(skin);
+        if(environment != null) {
+            simulation.setEnvironment(Environment.load(environment));
+        }
+        FlockMetrics metrics = new FlockMetrics();
+        simulation.setMetrics(metrics);
+
+        TrajectoryRecorder recorder = record == null ? null : new TrajectoryRecorder(record, recordEvery,
+                TrajectoryRecorder.DEFAULT_CAPACITY, TrajectoryFormat.DEFAULT_FRAMES_PER_CHUNK, TrajectoryRecorder.Overflow.WAIT);
+
+        if(tiles != null) {
+            TileLayout layout = new TileLayout(simulation.getXBound(), simulation.getYBound(), tiles[0], tiles[1]);
+            double ticksPerSecond;
+            try (PartitionedSimulation partitioned = new PartitionedSimulation(simulation, layout,
+                    transport.equals("socket") ? new LoopbackSocketTransport(layout) : new InProcessTransport(layout.size()))) {
+                ticksPerSecond = run(partitioned, simulation, ticks, recorder);
+            }
+            System.out.println(String.format("boids=%d ticks=%d seed=%d tiles=%dx%d transport=%s ticks/s=%.2f",
+                    boids, ticks, seed, tiles[0], tiles[1], transport, ticksPerSecond));
+        } else {
+            metrics.roll();
+            double ticksPerSecond = run(simulation, ticks, recorder);
+            System.out.println(String.format("boids=%d ticks=%d seed=%d mode=%s vectorized=%s ticks/s=%.2f",
+                    boids, ticks, seed, mode, vectorized && FlockKernel.VECTOR_API, ticksPerSecond));
+            System.out.println(metrics.roll().describe());
+            if(skin > 0d) {
+                System.out.println("neighbour lists rebuilt " + simulation.getNeighbourListRebuilds() + " times");
+            }
+        }
+        if(recorder != null) {
+            recorder.close();
+            System.out.println("recorded " + recorder.getWritten() + " frames to " + record);
+        }
+        if(save != null) {
+            FlockCheckpoint.save(simulation, save);
+            System.out.println("saved tick " + simulation.getTick() + " to " + save);
+        }
+    }
+
+    static double run(FlockSimulation simulation, int ticks) {
+        return run(simulation, ticks, null);
+    }
+
+    static double run(FlockSimulation simulation, int ticks, Consumer<FlockSimulation> afterStep) {
+        long start = System.nanoTime();
+        for (int i = 0 ; i < ticks ; i++) {
+            simulation.step(1d);
+            if(afterStep != null) {
+                afterStep.accept(simulation);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        return ticks / (elapsed / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    // gathers the tiles back into the simulation after every step when there is something to record
+    static double run(PartitionedSimulation partitioned, FlockSimulation simulation, int ticks,
+                      Consumer<FlockSimulation> afterStep) {
+        long start = System.nanoTime();
+        for (int i = 0 ; i < ticks ; i++) {
+            partitioned.step(1d);
+            if(afterStep != null) {
+                partitioned.copyTo(simulation);
+                afterStep.accept(simulation);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        partitioned.copyTo(simulation);
+        return ticks / (elapsed / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,48 @@
+package com.tofti;
+
+import com.google.common.collect.Lists;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A {@link TileTransport} for tiles in the same JVM: one queue per ordered pair of tiles, holding copies of the
+ * messages.
+ */
+public class InProcessTransport implements TileTransport {
+    private final int tiles;
+    private final List<BlockingQueue<ByteBuffer>> queues;
+
+    public InProcessTransport(int tiles) {
+        this.tiles = tiles;
+        this.queues = Lists.newArrayListWithCapacity(tiles * tiles);
+        for (int q = 0 ; q < tiles * tiles ; q++) {
+            queues.add(new LinkedBlockingQueue<>());
+        }
+    }
+
+    @Override
+    public void send(int from, int to, ByteBuffer message) {
+        ByteBuffer copy = ByteBuffer.allocate(message.remaining());
+        copy.put(message.duplicate()).flip();
+        queues.get(from * tiles + to).add(copy);
+    }
+
+    @Override
+    public ByteBuffer receive(int to, int from) throws IOException {
+        try {
+            return queues.get(from * tiles + to).take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted waiting for tile " + from);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,44 @@
+package com.tofti;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+
+/**
+ * Switches between drawing individual boids and drawing density tiles by zoom. Below {@code densityZoom} a boid is
+ * only a pixel or two across, so the boids themselves are hidden and not drawn at all.
+ */
+class LevelOfDetailRenderer implements FlockRenderer {
+    static final double DEFAULT_DENSITY_ZOOM = 0.25d;
+
+    private final FlockRenderer detail;
+    private final FlockRenderer density;
+    private final double densityZoom;
+    private final Group group;
+
+    LevelOfDetailRenderer(FlockRenderer detail, FlockRenderer density, double densityZoom) {
+        this.detail = detail;
+        this.density = density;
+        this.densityZoom = densityZoom;
+        this.group = new Group(detail.getNode(), density.getNode());
+        density.getNode().setVisible(false);
+    }
+
+    @Override
+    public Node getNode() {
+        return group;
+    }
+
+    @Override
+    public void resize(double width, double height) {
+        detail.resize(width, height);
+        density.resize(width, height);
+    }
+
+    @Override
+    public void render(FlockView flock, Viewport viewport) {
+        boolean dense = viewport.getZoom() < densityZoom;
+        detail.getNode().setVisible(!dense);
+        density.getNode().setVisible(dense);
+        (dense ? density : detail).render(flock, viewport);
+    }
+}
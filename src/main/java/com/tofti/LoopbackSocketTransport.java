@@ -0,0 +1,141 @@
+package com.tofti;
+
+import com.google.common.collect.Lists;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A {@link TileTransport} over TCP on the loopback interface, one connection per pair of neighbouring tiles and
+ * direction, each message framed by its length. A thread per connection reads messages as they arrive, so a sender
+ * never waits on a receiver that is busy sending itself.
+ * <p>
+ * All the tiles are in this JVM, but they only share the sockets, so the same framing would carry a tile per
+ * process.
+ */
+public class LoopbackSocketTransport implements TileTransport {
+    // queued in place of a message when a connection fails
+    private static final ByteBuffer BROKEN = ByteBuffer.allocate(0);
+
+    private final int tiles;
+    private final DataOutputStream[] outputs;
+    private final List<BlockingQueue<ByteBuffer>> inboxes;
+    private final IOException[] failures;
+    private final List<Socket> sockets = Lists.newArrayList();
+    private byte[] scratch = new byte[0];
+
+    public LoopbackSocketTransport(TileLayout layout) throws IOException {
+        this.tiles = layout.size();
+        this.outputs = new DataOutputStream[tiles * tiles];
+        this.inboxes = Lists.newArrayList(Collections.nCopies(tiles * tiles, (BlockingQueue<ByteBuffer>) null));
+        this.failures = new IOException[tiles * tiles];
+        try (ServerSocket server = new ServerSocket(0, 64, InetAddress.getLoopbackAddress())) {
+            for (int from = 0 ; from < tiles ; from++) {
+                for (int to : layout.neighbours(from)) {
+                    connect(server, from, to);
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void connect(ServerSocket server, int from, int to) throws IOException {
+        Socket out = new Socket(server.getInetAddress(), server.getLocalPort());
+        sockets.add(out);
+        Socket in = server.accept();
+        sockets.add(in);
+        out.setTcpNoDelay(true);
+        int pair = from * tiles + to;
+        outputs[pair] = new DataOutputStream(new BufferedOutputStream(out.getOutputStream()));
+        BlockingQueue<ByteBuffer> inbox = new LinkedBlockingQueue<>();
+        inboxes.set(pair, inbox);
+        DataInputStream input = new DataInputStream(new BufferedInputStream(in.getInputStream()));
+        Thread reader = new Thread(() -> {
+            try {
+                while(true) {
+                    byte[] message = new byte[input.readInt()];
+                    input.readFully(message);
+                    inbox.add(ByteBuffer.wrap(message));
+                }
+            } catch (IOException e) {
+                failures[pair] = e;
+                inbox.add(BROKEN);
+            }
+        }, "tile-" + from + "-to-" + to);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Sends on the connection from {@code from}, which only the thread stepping that tile may use.
+     */
+    @Override
+    public void send(int from, int to, ByteBuffer message) throws IOException {
+        DataOutputStream output = outputs[from * tiles + to];
+        if(output == null) {
+            throw new IOException("tile " + from + " isn't connected to tile " + to);
+        }
+        int length = message.remaining();
+        output.writeInt(length);
+        if(message.hasArray()) {
+            output.write(message.array(), message.arrayOffset() + message.position(), length);
+        } else {
+            synchronized (this) {
+                if(scratch.length < length) {
+                    scratch = new byte[length];
+                }
+                message.duplicate().get(scratch, 0, length);
+                output.write(scratch, 0, length);
+            }
+        }
+        output.flush();
+    }
+
+    @Override
+    public ByteBuffer receive(int to, int from) throws IOException {
+        int pair = from * tiles + to;
+        if(inboxes.get(pair) == null) {
+            throw new IOException("tile " + to + " isn't connected to tile " + from);
+        }
+        try {
+            ByteBuffer message = inboxes.get(pair).take();
+            if(message == BROKEN) {
+                inboxes.get(pair).add(BROKEN);
+                throw new IOException("connection from tile " + from + " to tile " + to + " failed", failures[pair]);
+            }
+            return message;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted waiting for tile " + from);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Socket s : sockets) {
+            try {
+                s.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.tofti;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Rolls a {@link FlockMetrics} at a fixed period on a daemon thread and passes each {@link MetricsSnapshot} to its
+ * listeners, such as a {@link #dumpTo(Path) dump file}.
+ */
+public class MetricsReporter implements AutoCloseable {
+    static final long DEFAULT_PERIOD_MILLIS = 1000;
+
+    private final FlockMetrics metrics;
+    private final List<Consumer<MetricsSnapshot>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Closeable> resources = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "flock-metrics");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public MetricsReporter(FlockMetrics metrics, long period, TimeUnit unit) {
+        this.metrics = metrics;
+        executor.scheduleAtFixedRate(this::report, period, period, unit);
+    }
+
+    public MetricsReporter addListener(Consumer<MetricsSnapshot> listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Appends every snapshot to {@code path}, created if missing, as JSON lines if it ends in {@code .json} and as CSV otherwise.
+     */
+    public MetricsReporter dumpTo(Path path) throws IOException {
+        BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+        boolean json = path.getFileName().toString().endsWith(".json");
+        // a CSV file appended to already has its header
+        boolean empty = Files.size(path) == 0;
+        resources.add(writer);
+        return addListener(new Consumer<MetricsSnapshot>() {
+            private boolean header = !json && empty;
+
+            @Override
+            public void accept(MetricsSnapshot snapshot) {
+                try {
+                    if(header) {
+                        writer.write(snapshot.toCsvHeader());
+                        writer.newLine();
+                        header = false;
+                    }
+                    writer.write(json ? snapshot.toJson() : snapshot.toCsv());
+                    writer.newLine();
+                    writer.flush();
+                } catch (IOException e) {
+                    System.err.println("could not write metrics to " + path + ": " + e);
+                }
+            }
+        });
+    }
+
+    private void report() {
+        MetricsSnapshot snapshot = metrics.roll();
+        for (Consumer<MetricsSnapshot> listener : listeners) {
+            try {
+                listener.accept(snapshot);
+            } catch (RuntimeException e) {
+                // a failing listener must not cancel the schedule
+                System.err.println("metrics listener failed: " + e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Closeable resource : resources) {
+            resource.close();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.tofti;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The metrics of one interval rolled by {@link FlockMetrics#roll()}. Times are in nanoseconds, except in the
+ * {@link #toMap() columns} of the dumps, which use milliseconds.
+ */
+public final class MetricsSnapshot {
+    private static final double[] PERCENTILES = {50d, 90d, 99d, 99.9d};
+    private static final String[] PERCENTILE_KEYS = {"p50", "p90", "p99", "p999"};
+
+    private final long timestampMillis;
+    private final long intervalNanos;
+    private final int boids;
+    private final long ticks;
+    private final long boidTicks;
+    private final long frames;
+    private final long allocatedBytes;
+
+    private final double tickMeanNanos;
+    private final long[] tickPercentileNanos = new long[PERCENTILES.length];
+    private final long tickMaxNanos;
+    private final double[] phaseMeanNanos = new double[TickPhase.values().length];
+    private final long[] phaseP99Nanos = new long[TickPhase.values().length];
+    private final double neighboursMean;
+    private final long neighboursP50;
+    private final long neighboursP99;
+    private final long neighboursMax;
+
+    MetricsSnapshot(long timestampMillis, long intervalNanos, int boids, long ticks, long boidTicks, long frames,
+                    long allocatedBytes, Histogram tickNanos, Histogram[] phaseNanos, Histogram neighbours) {
+        this.timestampMillis = timestampMillis;
+        this.intervalNanos = intervalNanos;
+        this.boids = boids;
+        this.ticks = ticks;
+        this.boidTicks = boidTicks;
+        this.frames = frames;
+        this.allocatedBytes = allocatedBytes;
+        this.tickMeanNanos = mean(tickNanos);
+        for (int i = 0 ; i < PERCENTILES.length ; i++) {
+            tickPercentileNanos[i] = tickNanos.getValueAtPercentile(PERCENTILES[i]);
+        }
+        this.tickMaxNanos = tickNanos.getMaxValue();
+        for (TickPhase phase : TickPhase.values()) {
+            phaseMeanNanos[phase.ordinal()] = mean(phaseNanos[phase.ordinal()]);
+            phaseP99Nanos[phase.ordinal()] = phaseNanos[phase.ordinal()].getValueAtPercentile(99d);
+        }
+        this.neighboursMean = mean(neighbours);
+        this.neighboursP50 = neighbours.getValueAtPercentile(50d);
+        this.neighboursP99 = neighbours.getValueAtPercentile(99d);
+        this.neighboursMax = neighbours.getMaxValue();
+    }
+
+    private static double mean(Histogram h) {
+        return h.getTotalCount() == 0 ? 0d : h.getMean();
+    }
+
+    static double millis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private double perSecond(long count) {
+        return intervalNanos <= 0 ? 0d : count * (double) TimeUnit.SECONDS.toNanos(1) / intervalNanos;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public long getIntervalNanos() {
+        return intervalNanos;
+    }
+
+    public int getBoids() {
+        return boids;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public double getTicksPerSecond() {
+        return perSecond(ticks);
+    }
+
+    public double getBoidsPerSecond() {
+        return perSecond(boidTicks);
+    }
+
+    public double getFramesPerSecond() {
+        return perSecond(frames);
+    }
+
+    public double getAllocatedBytesPerTick() {
+        return ticks == 0 ? 0d : allocatedBytes / (double) ticks;
+    }
+
+    public double getTickMeanNanos() {
+        return tickMeanNanos;
+    }
+
+    public long getTickP50Nanos() {
+        return tickPercentileNanos[0];
+    }
+
+    public long getTickP99Nanos() {
+        return tickPercentileNanos[2];
+    }
+
+    public long getTickMaxNanos() {
+        return tickMaxNanos;
+    }
+
+    public double getPhaseMeanNanos(TickPhase phase) {
+        return phaseMeanNanos[phase.ordinal()];
+    }
+
+    public long getPhaseP99Nanos(TickPhase phase) {
+        return phaseP99Nanos[phase.ordinal()];
+    }
+
+    public double getNeighboursMean() {
+        return neighboursMean;
+    }
+
+    public long getNeighboursP50() {
+        return neighboursP50;
+    }
+
+    public long getNeighboursP99() {
+        return neighboursP99;
+    }
+
+    public long getNeighboursMax() {
+        return neighboursMax;
+    }
+
+    /**
+     * The snapshot as named columns, in a fixed order, for the CSV and JSON dumps.
+     */
+    public Map<String, Number> toMap() {
+        Map<String, Number> m = new LinkedHashMap<>();
+        m.put("timestamp_ms", timestampMillis);
+        m.put("interval_ms", millis(intervalNanos));
+        m.put("boids", boids);
+        m.put("ticks", ticks);
+        m.put("ticks_per_s", getTicksPerSecond());
+        m.put("boids_per_s", getBoidsPerSecond());
+        m.put("frames_per_s", getFramesPerSecond());
+        m.put("tick_mean_ms", millis(tickMeanNanos));
+        for (int i = 0 ; i < PERCENTILES.length ; i++) {
+            m.put("tick_" + PERCENTILE_KEYS[i] + "_ms", millis(tickPercentileNanos[i]));
+        }
+        m.put("tick_max_ms", millis(tickMaxNanos));
+        for (TickPhase phase : TickPhase.values()) {
+            m.put(phase.key() + "_mean_ms", millis(getPhaseMeanNanos(phase)));
+            m.put(phase.key() + "_p99_ms", millis(getPhaseP99Nanos(phase)));
+        }
+        m.put("neighbours_mean", neighboursMean);
+        m.put("neighbours_p50", neighboursP50);
+        m.put("neighbours_p99", neighboursP99);
+        m.put("neighbours_max", neighboursMax);
+        m.put("alloc_bytes_per_tick", getAllocatedBytesPerTick());
+        return m;
+    }
+
+    private static String format(Number n) {
+        if(n instanceof Double) {
+            double d = n.doubleValue();
+            return d == Math.rint(d) && !Double.isInfinite(d) ? String.valueOf((long) d) : String.format(Locale.ROOT, "%.4f", d);
+        }
+        return String.valueOf(n);
+    }
+
+    public String toCsvHeader() {
+        return String.join(",", toMap().keySet());
+    }
+
+    public String toCsv() {
+        return toMap().values().stream().map(MetricsSnapshot::format).collect(Collectors.joining(","));
+    }
+
+    public String toJson() {
+        return toMap().entrySet().stream()
+                .map(e -> "\"" + e.getKey() + "\":" + format(e.getValue()))
+                .collect(Collectors.joining(",", "{", "}"));
+    }
+
+    /**
+     * A few lines for a person to read, as shown in the context menu.
+     */
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%d boids, %.1f ticks/s, %.0f boids/s, %.1f fps%n",
+                boids, getTicksPerSecond(), getBoidsPerSecond(), getFramesPerSecond()));
+        sb.append(String.format(Locale.ROOT, "tick p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                millis(getTickP50Nanos()), millis(getTickP99Nanos()), millis(tickMaxNanos)));
+        for (TickPhase phase : TickPhase.values()) {
+            sb.append(String.format(Locale.ROOT, "  %-12s mean %.3f ms, p99 %.3f ms%n",
+                    phase.key(), millis(getPhaseMeanNanos(phase)), millis(getPhaseP99Nanos(phase))));
+        }
+        sb.append(String.format(Locale.ROOT, "neighbours mean %.1f, p99 %d, max %d%n",
+                neighboursMean, neighboursP99, neighboursMax));
+        sb.append(String.format(Locale.ROOT, "allocated %.0f bytes/tick", getAllocatedBytesPerTick()));
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsSnapshot" + toJson();
+    }
+}
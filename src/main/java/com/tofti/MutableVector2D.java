@@ -0,0 +1,117 @@
+package com.tofti;
+
+/**
+ * In-place companion to {@link Vector2D} for accumulating steering without allocating. Every mutator returns
+ * {@code this} so operations can be chained.
+ */
+public final class MutableVector2D {
+    private double x;
+    private double y;
+
+    public MutableVector2D() {
+    }
+
+    public MutableVector2D(double x, double y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public MutableVector2D set(double x, double y) {
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
+    public MutableVector2D set(Vector2D v) {
+        return set(v.getX(), v.getY());
+    }
+
+    public MutableVector2D add(double dx, double dy) {
+        x += dx;
+        y += dy;
+        return this;
+    }
+
+    public MutableVector2D add(Vector2D v) {
+        return add(v.getX(), v.getY());
+    }
+
+    public MutableVector2D add(MutableVector2D v) {
+        return add(v.x, v.y);
+    }
+
+    public MutableVector2D sub(double dx, double dy) {
+        x -= dx;
+        y -= dy;
+        return this;
+    }
+
+    public MutableVector2D sub(Vector2D v) {
+        return sub(v.getX(), v.getY());
+    }
+
+    public MutableVector2D scale(double factor) {
+        x *= factor;
+        y *= factor;
+        return this;
+    }
+
+    public MutableVector2D divide(double divisor) {
+        x /= divisor;
+        y /= divisor;
+        return this;
+    }
+
+    public MutableVector2D normalize() {
+        return normalizeTo(1d);
+    }
+
+    public MutableVector2D normalizeTo(double to) {
+        double magnitude = getMagnitude();
+        if(0d == magnitude) {
+            return set(0d, 0d);
+        }
+        x = x / magnitude * to;
+        y = y / magnitude * to;
+        return this;
+    }
+
+    public double getMagnitude() {
+        return Math.sqrt(getMagnitudeSquared());
+    }
+
+    public double getMagnitudeSquared() {
+        return x * x + y * y;
+    }
+
+    public double getDistanceSquaredTo(double ox, double oy) {
+        return distanceSquared(x, y, ox, oy);
+    }
+
+    public Vector2D toVector2D() {
+        return new Vector2D(x, y);
+    }
+
+    public static double distanceSquared(double ax, double ay, double bx, double by) {
+        double dx = ax - bx;
+        double dy = ay - by;
+        return dx * dx + dy * dy;
+    }
+
+    public static boolean isWithinDistance(double ax, double ay, double bx, double by, double distance) {
+        return distanceSquared(ax, ay, bx, by) < distance * distance;
+    }
+
+    @Override
+    public String toString() {
+        return "MutableVector2D{" + "x=" + x +", y=" + y +'}';
+    }
+}
@@ -0,0 +1,167 @@
+package com.tofti;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Verlet neighbour lists: every boid's flocking candidates within its neighbourhood plus a skin, gathered once from
+ * the {@link SpatialGrid} and walked instead of the grid until some boid has moved more than half the skin since.
+ * Until then no two boids can have closed the skin between them, so the lists still hold every neighbour. The
+ * lists are kept in compressed rows: boid {@code i}'s candidates are {@code items[start[i]]} to
+ * {@code items[start[i + 1] - 1]}, in the order the grid visited them.
+ * <p>
+ * Distances here are measured around the world, so a boid wrapping over an edge has only moved as far as it
+ * flew and its list already holds the boids on the other side. {@link FlockKernel} keeps measuring straight,
+ * these are only extra candidates. The lists are rebuilt as well when boids are added or removed, the world is
+ * resized, or a species' radii or who it flocks with change.
+ */
+final class NeighbourLists implements IntConsumer {
+    private final double skin;
+
+    int[] start = new int[1];
+    int[] items = new int[0];
+
+    private int count = -1;
+    private int version;
+    private double xBound;
+    private double yBound;
+    private double[] builtX = new double[0];
+    private double[] builtY = new double[0];
+    private double[] radius = new double[0];
+    private int[] flockMask = new int[0];
+    private int rebuilds;
+
+    // the boid whose list is being gathered
+    private FlockStore store;
+    private int self;
+    private double selfX;
+    private double selfY;
+    private double reachSquared;
+    private int mask;
+    private boolean filtered;
+    private int filled;
+
+    NeighbourLists(double skin) {
+        if(skin <= 0d) {
+            throw new IllegalArgumentException("skin must be positive: " + skin);
+        }
+        this.skin = skin;
+    }
+
+    double getSkin() {
+        return skin;
+    }
+
+    /**
+     * How many times the lists have been built.
+     */
+    int getRebuilds() {
+        return rebuilds;
+    }
+
+    /**
+     * Rebuilds the lists from {@code grid}, rebuilt over {@code store} for this tick, unless they still hold.
+     */
+    void update(FlockStore store, SpatialGrid grid, SpeciesTable species, double xBound, double yBound) {
+        if(!isValid(store, species, xBound, yBound)) {
+            build(store, grid, species, xBound, yBound);
+        }
+    }
+
+    boolean isValid(FlockStore store, SpeciesTable species, double xBound, double yBound) {
+        if(store.size != count || store.version != version || xBound != this.xBound || yBound != this.yBound
+                || species.size() != radius.length) {
+            return false;
+        }
+        for (int s = 0 ; s < radius.length ; s++) {
+            if(radius[s] != radius(species.get(s)) || flockMask[s] != species.mask(s, SpeciesTable.Interaction.FLOCK)) {
+                return false;
+            }
+        }
+        double limit = skin * skin / 4d;
+        for (int i = 0 ; i < count ; i++) {
+            double dx = wrapped(store.x[i] - builtX[i], xBound);
+            double dy = wrapped(store.y[i] - builtY[i], yBound);
+            if(dx * dx + dy * dy > limit) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double radius(SpeciesTable.Species sp) {
+        return Math.max(sp.cohesionRadius, Math.max(sp.separationRadius, sp.alignmentRadius));
+    }
+
+    // the shorter way round the world, for locations no more than a world apart
+    private static double wrapped(double d, double bound) {
+        if(d > bound / 2) {
+            return d - bound;
+        }
+        return d < -bound / 2 ? d + bound : d;
+    }
+
+    private void build(FlockStore store, SpatialGrid grid, SpeciesTable species, double xBound, double yBound) {
+        int n = store.size;
+        int speciesCount = species.size();
+        if(radius.length != speciesCount) {
+            radius = new double[speciesCount];
+            flockMask = new int[speciesCount];
+        }
+        for (int s = 0 ; s < speciesCount ; s++) {
+            radius[s] = radius(species.get(s));
+            flockMask[s] = species.mask(s, SpeciesTable.Interaction.FLOCK);
+        }
+        if(start.length < n + 1) {
+            start = new int[n + 1];
+            builtX = new double[n];
+            builtY = new double[n];
+        }
+        System.arraycopy(store.x, 0, builtX, 0, n);
+        System.arraycopy(store.y, 0, builtY, 0, n);
+
+        this.store = store;
+        this.xBound = xBound;
+        this.yBound = yBound;
+        // the grid wraps after whole cells, which can overshoot the world by up to a cell
+        double overshoot = Math.max(grid.getColumns() * grid.getCellSize() - xBound,
+                grid.getRows() * grid.getCellSize() - yBound);
+        filled = 0;
+        for (int i = 0 ; i < n ; i++) {
+            start[i] = filled;
+            int color = store.color[i];
+            double reach = radius[color] + skin;
+            self = i;
+            selfX = store.x[i];
+            selfY = store.y[i];
+            reachSquared = reach * reach;
+            mask = flockMask[color];
+            filtered = grid.getSpeciesCount() != speciesCount && mask != species.allMask();
+            // only a reach over the edge needs to allow for the grid wrapping later than the world
+            boolean edge = selfX < reach || selfY < reach || selfX + reach >= xBound || selfY + reach >= yBound;
+            grid.forEachCandidate(selfX, selfY, edge ? reach + overshoot : reach, mask, this);
+        }
+        start[n] = filled;
+        this.store = null;
+
+        count = n;
+        version = store.version;
+        rebuilds++;
+    }
+
+    @Override
+    public void accept(int j) {
+        if(j == self || (filtered && (mask >>> store.color[j] & 1) == 0)) {
+            return;
+        }
+        double dx = wrapped(store.x[j] - selfX, xBound);
+        double dy = wrapped(store.y[j] - selfY, yBound);
+        if(dx * dx + dy * dy >= reachSquared) {
+            return;
+        }
+        if(filled == items.length) {
+            items = Arrays.copyOf(items, Math.max(16, 2 * items.length));
+        }
+        items[filled++] = j;
+    }
+}
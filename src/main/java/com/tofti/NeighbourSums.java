@@ -0,0 +1,179 @@
+package com.tofti;
+
+/**
+ * Accumulates cohesion, separation and alignment for one boid in a single walk over its neighbour candidates, each
+ * rule with its own radius. Candidates need only be within {@link #getRadius()}; the per-rule distance tests happen
+ * here. Boids of other species the boid avoids or chases are accumulated separately, within the interaction radius.
+ */
+final class NeighbourSums {
+    // read by VectorNeighbourScan too
+    double cohesionRadiusSquared;
+    double separationRadiusSquared;
+    double alignmentRadiusSquared;
+    double radiusSquared;
+    private double radius;
+    private double interactionRadius;
+    private double interactionRadiusSquared;
+
+    int neighbourCount;
+
+    double cohesionX;
+    double cohesionY;
+    int cohesionCount;
+
+    double separationX;
+    double separationY;
+    int separationCount;
+
+    double alignmentX;
+    double alignmentY;
+    int alignmentCount;
+
+    double avoidX;
+    double avoidY;
+    int avoidCount;
+
+    // the offset to the nearest boid being chased
+    double chaseX;
+    double chaseY;
+    double chaseDistanceSquared;
+
+    private final MutableVector2D adj = new MutableVector2D();
+
+    NeighbourSums() {
+        this(Boid.CENTER_OF_MASS_NEIGHBORHOOD, Boid.SEPERATION_DISTANCE, Boid.ALIGNMENT_DISTANCE);
+    }
+
+    NeighbourSums(double cohesionRadius, double separationRadius, double alignmentRadius) {
+        setRadii(cohesionRadius, separationRadius, alignmentRadius);
+    }
+
+    NeighbourSums setRadii(double cohesionRadius, double separationRadius, double alignmentRadius) {
+        this.cohesionRadiusSquared = cohesionRadius * cohesionRadius;
+        this.separationRadiusSquared = separationRadius * separationRadius;
+        this.alignmentRadiusSquared = alignmentRadius * alignmentRadius;
+        this.radius = Math.max(cohesionRadius, Math.max(separationRadius, alignmentRadius));
+        this.radiusSquared = radius * radius;
+        return setInteractionRadius(cohesionRadius);
+    }
+
+    NeighbourSums setInteractionRadius(double interactionRadius) {
+        this.interactionRadius = interactionRadius;
+        this.interactionRadiusSquared = interactionRadius * interactionRadius;
+        return this;
+    }
+
+    double getInteractionRadius() {
+        return interactionRadius;
+    }
+
+    double getRadius() {
+        return radius;
+    }
+
+    NeighbourSums reset() {
+        neighbourCount = 0;
+        cohesionX = 0d;
+        cohesionY = 0d;
+        cohesionCount = 0;
+        separationX = 0d;
+        separationY = 0d;
+        separationCount = 0;
+        alignmentX = 0d;
+        alignmentY = 0d;
+        alignmentCount = 0;
+        avoidX = 0d;
+        avoidY = 0d;
+        avoidCount = 0;
+        chaseDistanceSquared = Double.MAX_VALUE;
+        return this;
+    }
+
+    void add(double selfX, double selfY, double x, double y, double vx, double vy) {
+        double dx = x - selfX;
+        double dy = y - selfY;
+        double d2 = dx * dx + dy * dy;
+        if(d2 >= radiusSquared) {
+            return;
+        }
+        neighbourCount++;
+        if(d2 < cohesionRadiusSquared) {
+            cohesionX += x;
+            cohesionY += y;
+            cohesionCount++;
+        }
+        if(d2 < separationRadiusSquared) {
+            separationX += selfX - x;
+            separationY += selfY - y;
+            separationCount++;
+        }
+        if(d2 < alignmentRadiusSquared) {
+            alignmentX += vx;
+            alignmentY += vy;
+            alignmentCount++;
+        }
+    }
+
+    /**
+     * Adds a boid to get away from, the closer the more urgently.
+     */
+    void avoid(double selfX, double selfY, double x, double y) {
+        double dx = selfX - x;
+        double dy = selfY - y;
+        double d2 = dx * dx + dy * dy;
+        if(d2 < interactionRadiusSquared && d2 > 0d) {
+            avoidX += dx / d2;
+            avoidY += dy / d2;
+            avoidCount++;
+        }
+    }
+
+    /**
+     * Adds a boid to chase, only the nearest one is chased.
+     */
+    void chase(double selfX, double selfY, double x, double y) {
+        double dx = x - selfX;
+        double dy = y - selfY;
+        double d2 = dx * dx + dy * dy;
+        if(d2 < interactionRadiusSquared && d2 < chaseDistanceSquared) {
+            chaseX = dx;
+            chaseY = dy;
+            chaseDistanceSquared = d2;
+        }
+    }
+
+    int getNeighbourCount() {
+        return neighbourCount;
+    }
+
+    /**
+     * Adds the three steering adjustments, each normalized to its weight, to {@code velocity}.
+     */
+    MutableVector2D steer(MutableVector2D velocity, double selfX, double selfY,
+                          double cohesionWeight, double separationWeight, double alignmentWeight) {
+        if(cohesionCount > 0) {
+            velocity.add(adj.set(cohesionX, cohesionY).divide(cohesionCount).sub(selfX, selfY).normalizeTo(cohesionWeight));
+        }
+        if(separationCount > 0) {
+            velocity.add(adj.set(separationX, separationY).normalizeTo(separationWeight));
+        }
+        if(alignmentCount > 0) {
+            velocity.add(adj.set(alignmentX, alignmentY).divide(alignmentCount).normalizeTo(alignmentWeight));
+        }
+        return velocity;
+    }
+
+    /**
+     * Adds fleeing from the avoided boids and heading for the nearest chased one, each normalized to
+     * {@code weight}, to {@code velocity}.
+     */
+    MutableVector2D steerInteractions(MutableVector2D velocity, double weight) {
+        if(avoidCount > 0) {
+            velocity.add(adj.set(avoidX, avoidY).normalizeTo(weight));
+        }
+        if(chaseDistanceSquared < interactionRadiusSquared) {
+            velocity.add(adj.set(chaseX, chaseY).normalizeTo(weight));
+        }
+        return velocity;
+    }
+}
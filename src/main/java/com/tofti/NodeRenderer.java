@@ -0,0 +1,113 @@
+package com.tofti;
+
+import com.google.common.collect.Lists;
+import javafx.scene.CacheHint;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.shape.Polygon;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One scene graph {@link Polygon} per visible boid, in world coordinates, for the camera to pan and zoom over. Views
+ * are handed out to the visible boids in index order every frame, so the node count follows the boids on screen
+ * rather than the flock.
+ */
+class NodeRenderer implements FlockRenderer {
+    // how far off screen a boid may be and still poke into view
+    static final double MARGIN = 2 * Boid.TRI_SIZE;
+
+    /**
+     * A boid's polygon, whose properties are only written when its colour, pixel position or heading step changed,
+     * since every write fires the property's listeners and marks the node dirty. Positions are rounded to whole
+     * screen pixels at the current zoom, then placed back in world units for the camera to scale.
+     */
+    static class BoidView {
+        static final double TRI_SIZE = Boid.TRI_SIZE;
+
+        final Polygon poly;
+        int color = -1;
+        int pixelX = Integer.MIN_VALUE;
+        int pixelY = Integer.MIN_VALUE;
+        int heading = -1;
+        double zoom = Double.NaN;
+
+        BoidView() {
+            this.poly = new Polygon();
+            poly.getPoints().addAll(new Double[]{0.0, TRI_SIZE, TRI_SIZE, -TRI_SIZE, -TRI_SIZE, -TRI_SIZE });
+            poly.setCache(true);
+            poly.setCacheHint(CacheHint.SPEED);
+        }
+
+        void render(FlockView flock, int i, double zoom) {
+            if(color != flock.getColor(i)) {
+                color = flock.getColor(i);
+                poly.setFill(COLORS.get(color));
+            }
+            // the same pixel is a different world position at another zoom
+            boolean zoomed = this.zoom != zoom;
+            this.zoom = zoom;
+            int x = (int) Math.round(flock.getX(i) * zoom);
+            if(pixelX != x || zoomed) {
+                pixelX = x;
+                poly.setTranslateX(x / zoom);
+            }
+            int y = (int) Math.round(flock.getY(i) * zoom);
+            if(pixelY != y || zoomed) {
+                pixelY = y;
+                poly.setTranslateY(y / zoom);
+            }
+            int h = Heading.quantize(flock.getVelocityX(i), flock.getVelocityY(i));
+            if(heading != h) {
+                heading = h;
+                poly.setRotate(Heading.rotation(h));
+            }
+        }
+
+        Node getNode() {
+            return poly;
+        }
+    }
+
+    private final Group group = new Group();
+    private final List<BoidView> views = Lists.newArrayList();
+    private int[] visible = new int[0];
+
+    @Override
+    public Node getNode() {
+        return group;
+    }
+
+    @Override
+    public void resize(double width, double height) {
+    }
+
+    @Override
+    public void render(FlockView flock, Viewport viewport) {
+        int n = 0;
+        for (int i = 0 ; i < flock.size() ; i++) {
+            if(viewport.contains(flock.getX(i), flock.getY(i), MARGIN)) {
+                if(n == visible.length) {
+                    visible = Arrays.copyOf(visible, Math.max(16, n * 2));
+                }
+                visible[n++] = i;
+            }
+        }
+        if(views.size() < n) {
+            List<Node> added = Lists.newArrayListWithCapacity(n - views.size());
+            while (views.size() < n) {
+                BoidView view = new BoidView();
+                views.add(view);
+                added.add(view.getNode());
+            }
+            group.getChildren().addAll(added);
+        } else if(views.size() > n) {
+            views.subList(n, views.size()).clear();
+            group.getChildren().remove(n, group.getChildren().size());
+        }
+        for (int k = 0 ; k < n ; k++) {
+            views.get(k).render(flock, visible[k], viewport.getZoom());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.tofti;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link FlockSimulation} split over the tiles of a {@link TileLayout}, each stepped by its own {@link TileWorker}
+ * that only sees its own boids and what its neighbours send it through a {@link TileTransport}. The halo every tile
+ * receives is as wide as the largest neighbourhood of any species, and tiles must be at least that wide.
+ * <p>
+ * For the same seed the tiles compute exactly the same flock as the single simulation they were split from. The
+ * species table is shared with that simulation and is, as there, only to be changed between steps.
+ */
+public class PartitionedSimulation implements AutoCloseable {
+    private final TileLayout layout;
+    private final TileTransport transport;
+    private final TileWorker[] workers;
+    private final ExecutorService executor;
+    private final SpeciesTable species;
+    private final EnvironmentField field;
+    private final long seed;
+    private final long nextId;
+    private long tick;
+
+    public PartitionedSimulation(FlockSimulation simulation, TileLayout layout, TileTransport transport) {
+        if(layout.getXBound() != simulation.getXBound() || layout.getYBound() != simulation.getYBound()) {
+            throw new IllegalArgumentException("the layout doesn't cover the world of the simulation");
+        }
+        this.layout = layout;
+        this.transport = transport;
+        this.species = simulation.getSpecies();
+        this.seed = simulation.getSeed();
+        this.tick = simulation.getTick();
+        Environment environment = simulation.getEnvironment();
+        this.field = environment == null ? null
+                : EnvironmentField.bake(environment, simulation.getXBound(), simulation.getYBound());
+        this.workers = new TileWorker[layout.size()];
+        for (int t = 0 ; t < workers.length ; t++) {
+            workers[t] = new TileWorker(t, layout, transport);
+        }
+        FlockStore store = simulation.getStore();
+        for (int i = 0 ; i < store.size() ; i++) {
+            workers[layout.tileOf(store.x[i], store.y[i])].add(store, i);
+        }
+        this.nextId = store.getNextId();
+        this.executor = Executors.newFixedThreadPool(workers.length, r -> {
+            Thread thread = new Thread(r, "tile-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The widest neighbourhood of any species, how far apart boids can be and still steer each other.
+     */
+    static double haloWidth(SpeciesTable species) {
+        double width = 0d;
+        for (int s = 0 ; s < species.size() ; s++) {
+            SpeciesTable.Species sp = species.get(s);
+            width = Math.max(width, Math.max(Math.max(sp.cohesionRadius, sp.separationRadius),
+                    Math.max(sp.alignmentRadius, sp.interactionRadius)));
+        }
+        return width;
+    }
+
+    /**
+     * Steps every tile by {@code dt} ticks, one thread per tile. If a tile fails the others are interrupted and
+     * the partitioned flock is left unusable.
+     */
+    public void step(double dt) {
+        double halo = haloWidth(species);
+        if((layout.getColumns() > 1 && halo > layout.getTileWidth())
+                || (layout.getRows() > 1 && halo > layout.getTileHeight())) {
+            throw new IllegalStateException("tiles of " + layout.getTileWidth() + "x" + layout.getTileHeight()
+                    + " are smaller than the halo of " + halo);
+        }
+        ExecutorCompletionService<Void> completion = new ExecutorCompletionService<>(executor);
+        Future<?>[] futures = new Future<?>[workers.length];
+        long t = tick;
+        for (int w = 0 ; w < workers.length ; w++) {
+            TileWorker worker = workers[w];
+            futures[w] = completion.submit(() -> {
+                worker.tick(species, field, seed, t, halo, dt);
+                return null;
+            });
+        }
+        try {
+            for (int w = 0 ; w < workers.length ; w++) {
+                completion.take().get();
+            }
+        } catch (ExecutionException e) {
+            for (Future<?> f : futures) {
+                f.cancel(true);
+            }
+            throw new IllegalStateException("a tile failed at tick " + tick, e.getCause());
+        } catch (InterruptedException e) {
+            for (Future<?> f : futures) {
+                f.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted at tick " + tick, e);
+        }
+        tick++;
+    }
+
+    public TileLayout getLayout() {
+        return layout;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public int size() {
+        int size = 0;
+        for (TileWorker w : workers) {
+            size += w.getStore().size();
+        }
+        return size;
+    }
+
+    /**
+     * How many boids tile {@code t} owns.
+     */
+    public int size(int t) {
+        return workers[t].getStore().size();
+    }
+
+    /**
+     * Replaces the flock of {@code simulation} with the boids of all tiles, in id order, and sets its tick, e.g. to
+     * save, record or render the partitioned flock.
+     */
+    public void copyTo(FlockSimulation simulation) {
+        FlockStore store = simulation.getStore();
+        store.clear();
+        store.ensureCapacity(size());
+        for (TileWorker w : workers) {
+            FlockStore from = w.getStore();
+            int n = store.size;
+            System.arraycopy(from.x, 0, store.x, n, from.size);
+            System.arraycopy(from.y, 0, store.y, n, from.size);
+            System.arraycopy(from.vx, 0, store.vx, n, from.size);
+            System.arraycopy(from.vy, 0, store.vy, n, from.size);
+            System.arraycopy(from.alignmentWeight, 0, store.alignmentWeight, n, from.size);
+            System.arraycopy(from.separationWeight, 0, store.separationWeight, n, from.size);
+            System.arraycopy(from.cohesionWeight, 0, store.cohesionWeight, n, from.size);
+            System.arraycopy(from.color, 0, store.color, n, from.size);
+            System.arraycopy(from.id, 0, store.id, n, from.size);
+            store.size += from.size;
+        }
+        store.sortById();
+        store.nextId = Math.max(store.nextId, nextId);
+        simulation.setTick(tick);
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        transport.close();
+    }
+}
@@ -0,0 +1,87 @@
+package com.tofti;
+
+import javafx.scene.Node;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+
+/**
+ * Plots the flock into an {@code int[]} ARGB buffer and uploads it to a {@link WritableImage} in one call per
+ * frame, so the frame cost stays low on the software pipeline with tens of thousands of boids. Each boid is a small
+ * square with a pixel trailing in the direction of travel, the same size at any zoom.
+ */
+class PixelRenderer implements FlockRenderer {
+    static final int DOT = 3;
+    static final int TAIL = 3;
+
+    private final ImageView view = new ImageView();
+    private final int[] argb = new int[COLORS.size()];
+
+    private WritableImage image;
+    private int[] pixels;
+    private int width;
+    private int height;
+
+    PixelRenderer(double width, double height) {
+        for (int c = 0 ; c < argb.length ; c++) {
+            argb[c] = toArgb(COLORS.get(c));
+        }
+        resize(width, height);
+    }
+
+    static int toArgb(Color color) {
+        return 0xff << 24
+                | (int) Math.round(color.getRed() * 255) << 16
+                | (int) Math.round(color.getGreen() * 255) << 8
+                | (int) Math.round(color.getBlue() * 255);
+    }
+
+    @Override
+    public Node getNode() {
+        return view;
+    }
+
+    @Override
+    public void resize(double w, double h) {
+        width = Math.max(1, (int) Math.ceil(w));
+        height = Math.max(1, (int) Math.ceil(h));
+        image = new WritableImage(width, height);
+        pixels = new int[width * height];
+        view.setImage(image);
+    }
+
+    @Override
+    public void render(FlockView flock, Viewport viewport) {
+        ViewportCamera.pin(view, viewport);
+        Arrays.fill(pixels, 0);
+        for (int i = 0 ; i < flock.size() ; i++) {
+            if(!viewport.contains(flock.getX(i), flock.getY(i), 0d)) {
+                continue;
+            }
+            int color = argb[flock.getColor(i)];
+            int x = (int) viewport.toScreenX(flock.getX(i));
+            int y = (int) viewport.toScreenY(flock.getY(i));
+            for (int dy = 0 ; dy < DOT ; dy++) {
+                for (int dx = 0 ; dx < DOT ; dx++) {
+                    plot(x + dx - DOT / 2, y + dy - DOT / 2, color);
+                }
+            }
+            double vx = flock.getVelocityX(i);
+            double vy = flock.getVelocityY(i);
+            double m = Math.sqrt(vx * vx + vy * vy);
+            if(m != 0d) {
+                plot(x - (int) Math.round(vx / m * TAIL), y - (int) Math.round(vy / m * TAIL), color);
+            }
+        }
+        image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+    }
+
+    private void plot(int x, int y, int color) {
+        if(x >= 0 && x < width && y >= 0 && y < height) {
+            pixels[y * width + x] = color;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.tofti;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * One run of a flock to be measured, as set out in a properties file:
+ * <pre>
+ * world = 1024 768
+ * boids = 500
+ * ticks = 2000
+ * seeds = 1..8
+ * distribution = uniform | rectangle x y width height | disc x y radius | gaussian x y sigma
+ * alignment = 0.5
+ * separation = 0.5
+ * cohesion = 0.5
+ * colorSensitive = false
+ * species.2.cohesion = 1.5
+ * species.2.radii = cohesion separation alignment interaction
+ * species.2.maxVelocity = 4
+ * species.2.interactionWeight = 2
+ * interaction.0.1 = flock | ignore | avoid | chase
+ * environment = scene.txt
+ * clusterDistance = 120
+ * </pre>
+ * Only {@code boids} and {@code ticks} are required. Any value can instead list alternatives separated by commas,
+ * and {@link #load} returns one scenario for every combination of them and every seed, so a single file sets out
+ * a whole parameter sweep. The species are the {@link Boid#COLOR_COUNT} colours of {@link FlockSimulation}, the
+ * environment is an {@link Environment} file relative to the scenario, and the cluster distance is the one
+ * {@link FlockStatistics} links boids within.
+ */
+public final class Scenario {
+    static final String SEEDS = "seeds";
+
+    private static final List<String> KEYS = Lists.newArrayList("world", "boids", "ticks", SEEDS, "distribution",
+            "alignment", "separation", "cohesion", "colorSensitive", "environment", "clusterDistance");
+    private static final List<String> SPECIES_KEYS = Lists.newArrayList("alignment", "separation", "cohesion",
+            "radii", "maxVelocity", "interactionWeight");
+
+    private final Map<String, String> values;
+    private final Map<String, String> swept;
+    private final long seed;
+    private final Path base;
+
+    private Scenario(Map<String, String> values, Map<String, String> swept, long seed, Path base) {
+        this.values = values;
+        this.swept = swept;
+        this.seed = seed;
+        this.base = base;
+    }
+
+    public static List<Scenario> load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        try {
+            return expand(properties, path.toAbsolutePath().getParent());
+        } catch (IllegalArgumentException e) {
+            throw new IOException(path + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Every combination of the alternatives in {@code properties}, keys in alphabetical order with the seed varying
+     * fastest. Throws IllegalArgumentException for an unknown key or a value that doesn't parse.
+     */
+    static List<Scenario> expand(Properties properties, Path base) throws IOException {
+        // sorted so that the combinations and the columns naming them come out the same every time
+        Map<String, List<String>> alternatives = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            checkKey(key);
+            List<String> list = Lists.newArrayList();
+            for (String value : properties.getProperty(key).split(",")) {
+                list.add(value.trim());
+            }
+            alternatives.put(key, list);
+        }
+        for (String required : new String[]{"boids", "ticks"}) {
+            if(!alternatives.containsKey(required)) {
+                throw new IllegalArgumentException("missing " + required);
+            }
+        }
+        List<Long> seeds = alternatives.containsKey(SEEDS)
+                ? parseSeeds(alternatives.remove(SEEDS))
+                : Lists.newArrayList(1L);
+
+        List<Map<String, String>> combinations = Lists.newArrayList();
+        combinations.add(new TreeMap<>());
+        for (Map.Entry<String, List<String>> e : alternatives.entrySet()) {
+            List<Map<String, String>> extended = Lists.newArrayList();
+            for (Map<String, String> combination : combinations) {
+                for (String value : e.getValue()) {
+                    Map<String, String> c = new TreeMap<>(combination);
+                    c.put(e.getKey(), value);
+                    extended.add(c);
+                }
+            }
+            combinations = extended;
+        }
+
+        List<Scenario> scenarios = Lists.newArrayList();
+        for (Map<String, String> combination : combinations) {
+            Map<String, String> swept = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> e : alternatives.entrySet()) {
+                if(e.getValue().size() > 1) {
+                    swept.put(e.getKey(), combination.get(e.getKey()));
+                }
+            }
+            for (long seed : seeds) {
+                Scenario scenario = new Scenario(ImmutableMap.copyOf(combination), ImmutableMap.copyOf(swept),
+                        seed, base);
+                // parse everything up front rather than hours into a sweep
+                scenario.configure(new FlockSimulation(scenario.getWidth(), scenario.getHeight(), seed));
+                scenario.getBoids();
+                scenario.getTicks();
+                scenario.getClusterDistance();
+                scenarios.add(scenario);
+            }
+        }
+        return scenarios;
+    }
+
+    private static void checkKey(String key) {
+        String[] parts = key.split("\\.");
+        boolean known;
+        if(parts[0].equals("species")) {
+            known = parts.length == 3 && isSpecies(parts[1]) && SPECIES_KEYS.contains(parts[2]);
+        } else if(parts[0].equals("interaction")) {
+            known = parts.length == 3 && isSpecies(parts[1]) && isSpecies(parts[2]);
+        } else {
+            known = parts.length == 1 && KEYS.contains(key);
+        }
+        if(!known) {
+            throw new IllegalArgumentException("unknown key '" + key + "'");
+        }
+    }
+
+    private static boolean isSpecies(String s) {
+        return s.matches("\\d+") && Integer.parseInt(s) < Boid.COLOR_COUNT;
+    }
+
+    // seeds are listed like any other alternatives, and first..last stands for every seed in between
+    private static List<Long> parseSeeds(List<String> values) {
+        TreeSet<Long> seeds = new TreeSet<>();
+        for (String value : values) {
+            int range = value.indexOf("..");
+            if(range < 0) {
+                seeds.add(parseSeed(value));
+            } else {
+                long last = parseSeed(value.substring(range + 2).trim());
+                for (long s = parseSeed(value.substring(0, range).trim()) ; s <= last ; s++) {
+                    seeds.add(s);
+                }
+            }
+        }
+        return Lists.newArrayList(seeds);
+    }
+
+    private static long parseSeed(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(SEEDS + " expected whole numbers, got '" + value + "'");
+        }
+    }
+
+    /**
+     * A new simulation with the flock of this scenario.
+     */
+    public FlockSimulation create() throws IOException {
+        FlockSimulation simulation = new FlockSimulation(getWidth(), getHeight(), seed);
+        configure(simulation);
+        simulation.spawn(getBoids(), distribution(getWidth(), getHeight()));
+        return simulation;
+    }
+
+    private void configure(FlockSimulation simulation) throws IOException {
+        if(values.containsKey("alignment")) {
+            simulation.setAlignmentWeight(number("alignment"));
+        }
+        if(values.containsKey("separation")) {
+            simulation.setSeparationWeight(number("separation"));
+        }
+        if(values.containsKey("cohesion")) {
+            simulation.setCohesionWeight(number("cohesion"));
+        }
+        if(values.containsKey("colorSensitive")) {
+            String colorSensitive = values.get("colorSensitive");
+            if(!colorSensitive.equals("true") && !colorSensitive.equals("false")) {
+                throw new IllegalArgumentException("colorSensitive expected true or false, got '"
+                        + colorSensitive + "'");
+            }
+            simulation.setColorSensitive(Boolean.parseBoolean(colorSensitive));
+        }
+        SpeciesTable species = simulation.getSpecies();
+        for (int s = 0 ; s < species.size() ; s++) {
+            String prefix = "species." + s + ".";
+            if(values.containsKey(prefix + "alignment")) {
+                simulation.setAlignmentWeight(s, number(prefix + "alignment"));
+            }
+            if(values.containsKey(prefix + "separation")) {
+                simulation.setSeparationWeight(s, number(prefix + "separation"));
+            }
+            if(values.containsKey(prefix + "cohesion")) {
+                simulation.setCohesionWeight(s, number(prefix + "cohesion"));
+            }
+            if(values.containsKey(prefix + "radii")) {
+                double[] radii = numbers(prefix + "radii", 4);
+                species.get(s).setRadii(radii[0], radii[1], radii[2], radii[3]);
+            }
+            if(values.containsKey(prefix + "maxVelocity")) {
+                species.get(s).setMaxVelocity(number(prefix + "maxVelocity"));
+            }
+            if(values.containsKey(prefix + "interactionWeight")) {
+                species.get(s).setInteractionWeight(number(prefix + "interactionWeight"));
+            }
+            // after colorSensitive, which sets the whole matrix
+            for (int t = 0 ; t < species.size() ; t++) {
+                String key = "interaction." + s + "." + t;
+                if(values.containsKey(key)) {
+                    species.setInteraction(s, t, SpeciesTable.Interaction.valueOf(values.get(key).toUpperCase()));
+                }
+            }
+        }
+        distribution(getWidth(), getHeight());
+        if(values.containsKey("environment")) {
+            simulation.setEnvironment(Environment.load(base.resolve(values.get("environment"))));
+        }
+    }
+
+    private SpawnRegion distribution(double width, double height) {
+        String[] words = values.getOrDefault("distribution", "uniform").split("\\s+");
+        double[] a = new double[words.length - 1];
+        for (int i = 0 ; i < a.length ; i++) {
+            a[i] = parse("distribution", words[i + 1]);
+        }
+        switch (words[0]) {
+            case "uniform":
+                expect("distribution", a, 0);
+                return SpawnRegion.rectangle(0, 0, width, height);
+            case "rectangle":
+                expect("distribution", a, 4);
+                return SpawnRegion.rectangle(a[0], a[1], a[2], a[3]);
+            case "disc":
+                expect("distribution", a, 3);
+                return SpawnRegion.disc(a[0], a[1], a[2]);
+            case "gaussian":
+                expect("distribution", a, 3);
+                return SpawnRegion.gaussian(a[0], a[1], a[2]);
+            default:
+                throw new IllegalArgumentException("unknown distribution '" + words[0] + "'");
+        }
+    }
+
+    private double number(String key) {
+        return parse(key, values.get(key));
+    }
+
+    private static double parse(String key, String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " expected a number, got '" + value + "'");
+        }
+    }
+
+    private int integer(String key) {
+        try {
+            return Integer.parseInt(values.get(key));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " expected a whole number, got '" + values.get(key) + "'");
+        }
+    }
+
+    private double[] numbers(String key, int count) {
+        String[] words = values.get(key).split("\\s+");
+        double[] a = new double[words.length];
+        for (int i = 0 ; i < a.length ; i++) {
+            a[i] = parse(key, words[i]);
+        }
+        expect(key, a, count);
+        return a;
+    }
+
+    private static void expect(String key, double[] values, int count) {
+        if(values.length != count) {
+            throw new IllegalArgumentException(key + " expected " + count + " numbers, got " + values.length);
+        }
+    }
+
+    public double getWidth() {
+        return values.containsKey("world") ? numbers("world", 2)[0] : HeadlessRunner.DEFAULT_WIDTH;
+    }
+
+    public double getHeight() {
+        return values.containsKey("world") ? numbers("world", 2)[1] : HeadlessRunner.DEFAULT_HEIGHT;
+    }
+
+    public int getBoids() {
+        return integer("boids");
+    }
+
+    public int getTicks() {
+        return integer("ticks");
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public double getClusterDistance() {
+        return values.containsKey("clusterDistance")
+                ? number("clusterDistance")
+                : FlockStatistics.DEFAULT_CLUSTER_DISTANCE;
+    }
+
+    /**
+     * The keys that have alternatives in the file and the value of each in this scenario, in key order.
+     */
+    public Map<String, String> getSwept() {
+        return swept;
+    }
+}
@@ -0,0 +1,196 @@
+package com.tofti;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Runs a {@link FlockSimulation} in fixed steps on a dedicated thread, publishing a {@link FlockSnapshot} after each
+ * burst of steps. Once started the simulation is confined to that thread: change it through {@link #submit}, and
+ * read it through {@link #acquire()}.
+ * <p>
+ * An exception thrown by the simulation, a command or a step listener stops the scheduler. It is passed to the
+ * {@link #setFailureHandler failure handler} and rethrown by {@link #close()}.
+ */
+public class SimulationScheduler implements AutoCloseable {
+    public enum CatchUpPolicy {
+        /** Run the missed steps back to back, up to the max steps per frame, then drop what is still missing. */
+        CATCH_UP,
+        /** Run one step at a time and let the simulation fall behind the wall clock when a step overruns. */
+        SLOW_DOWN
+    }
+
+    static final double DEFAULT_STEPS_PER_SECOND = 60;
+    static final int DEFAULT_MAX_STEPS_PER_FRAME = 5;
+
+    private final FlockSimulation simulation;
+    private final long stepNanos;
+    private final double dt;
+    private final CatchUpPolicy policy;
+    private final int maxStepsPerFrame;
+
+    private final TripleBuffer<FlockSnapshot> snapshots = new TripleBuffer<>(FlockSnapshot::new);
+    private final Queue<Consumer<FlockSimulation>> commands = new ConcurrentLinkedQueue<>();
+    private final List<Consumer<FlockSimulation>> stepListeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+    private volatile Throwable failure;
+    private volatile Consumer<Throwable> failureHandler = failure -> { };
+    private Thread thread;
+    private long nextStepNanos;
+
+    public SimulationScheduler(FlockSimulation simulation) {
+        this(simulation, DEFAULT_STEPS_PER_SECOND, 1d, CatchUpPolicy.CATCH_UP, DEFAULT_MAX_STEPS_PER_FRAME);
+    }
+
+    /**
+     * @param stepsPerSecond how many fixed steps to run per second of wall clock time
+     * @param dt simulation time advanced per step, see {@link FlockSimulation#step(double)}
+     */
+    public SimulationScheduler(FlockSimulation simulation, double stepsPerSecond, double dt,
+                               CatchUpPolicy policy, int maxStepsPerFrame) {
+        if(stepsPerSecond <= 0 || maxStepsPerFrame < 1) {
+            throw new IllegalArgumentException("stepsPerSecond and maxStepsPerFrame must be positive");
+        }
+        this.simulation = simulation;
+        this.stepNanos = (long) (TimeUnit.SECONDS.toNanos(1) / stepsPerSecond);
+        this.dt = dt;
+        this.policy = policy;
+        this.maxStepsPerFrame = maxStepsPerFrame;
+    }
+
+    public long getStepNanos() {
+        return stepNanos;
+    }
+
+    public synchronized void start() {
+        if(thread != null) {
+            throw new IllegalStateException("already started");
+        }
+        running = true;
+        nextStepNanos = System.nanoTime();
+        thread = new Thread(this::run, "flock-simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the simulation thread and waits for it.
+     *
+     * @throws IllegalStateException if the simulation thread stopped on an exception, which is the cause
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        if(thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                // the simulation thread stops after its current step anyway
+                Thread.currentThread().interrupt();
+            }
+        }
+        if(failure != null) {
+            throw new IllegalStateException("the simulation thread failed", failure);
+        }
+    }
+
+    /**
+     * Calls {@code handler} on the simulation thread with the exception that stopped it, if one does.
+     */
+    public void setFailureHandler(Consumer<Throwable> handler) {
+        this.failureHandler = handler;
+    }
+
+    /**
+     * The exception that stopped the simulation thread, or null.
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Queues a change to the simulation, applied on the simulation thread before its next step.
+     */
+    public void submit(Consumer<FlockSimulation> command) {
+        commands.add(command);
+    }
+
+    /**
+     * Calls {@code listener} on the simulation thread after every step, such as a {@link TrajectoryRecorder}.
+     */
+    public void addStepListener(Consumer<FlockSimulation> listener) {
+        stepListeners.add(listener);
+    }
+
+    /**
+     * The most recently published snapshot, which stays untouched until the next call.
+     */
+    public FlockSnapshot acquire() {
+        return snapshots.acquire();
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                long now = System.nanoTime();
+                int steps = schedule(now);
+                if(steps == 0) {
+                    LockSupport.parkNanos(nextStepNanos - now);
+                    continue;
+                }
+                runSteps(steps);
+            }
+        } catch (Throwable t) {
+            failure = t;
+            running = false;
+            failureHandler.accept(t);
+        }
+    }
+
+    /**
+     * How many steps are due at {@code now}, advancing the schedule past them.
+     */
+    int schedule(long now) {
+        if(now < nextStepNanos) {
+            return 0;
+        }
+        long due = (now - nextStepNanos) / stepNanos + 1;
+        if(policy == CatchUpPolicy.SLOW_DOWN) {
+            nextStepNanos = Math.max(nextStepNanos + stepNanos, now);
+            return 1;
+        }
+        int steps = (int) Math.min(due, maxStepsPerFrame);
+        if(due > steps) {
+            nextStepNanos = now + stepNanos;
+        } else {
+            nextStepNanos += steps * stepNanos;
+        }
+        return steps;
+    }
+
+    void runSteps(int steps) {
+        Consumer<FlockSimulation> command;
+        while ((command = commands.poll()) != null) {
+            command.accept(simulation);
+        }
+
+        FlockSnapshot snapshot = snapshots.back();
+        for (int i = 0 ; i < steps ; i++) {
+            if(i == steps - 1) {
+                snapshot.capturePrevious(simulation.getStore());
+            }
+            simulation.step(dt);
+            for (int l = 0 ; l < stepListeners.size() ; l++) {
+                stepListeners.get(l).accept(simulation);
+            }
+        }
+        snapshot.capture(simulation, stepNanos);
+        snapshots.publish();
+    }
+}
@@ -0,0 +1,259 @@
+package com.tofti;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Uniform grid over the toroidal world, rebuilt once per tick. Items are referred to by their index in the
+ * coordinate arrays passed to {@link #rebuild}. Cell coordinates wrap, so positions slightly outside the bounds
+ * (which {@link Vector2D#wrapAround} can produce) still land in a valid cell.
+ * <p>
+ * Given the items' species, each cell is further split into one list per species, so a query can skip the species
+ * it isn't interested in. Items are visited by cell, then species, then index.
+ * <p>
+ * {@link #pack} copies the items' locations and velocities into that same order, so the candidates of a query are
+ * a few contiguous {@link #candidateRanges ranges} that can be loaded a block of lanes at a time.
+ */
+public class SpatialGrid {
+    private final double cellSize;
+
+    private int columns;
+    private int rows;
+    private int count;
+    private int speciesCount = 1;
+
+    private int[] itemCell = new int[0];
+    private int[] cellStart = new int[1];
+    private int[] cellItems = new int[0];
+    private int[] cellFill = new int[0];
+
+    // the items' state in cell order, padded so that a block of lanes can be loaded past the last one
+    double[] packedX = new double[0];
+    double[] packedY = new double[0];
+    double[] packedVx = new double[0];
+    double[] packedVy = new double[0];
+    private int[] itemSlot = new int[0];
+
+    public SpatialGrid(double cellSize) {
+        if(cellSize <= 0d) {
+            throw new IllegalArgumentException("cellSize must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * How many species each cell is split into, 1 when the grid was rebuilt without species.
+     */
+    public int getSpeciesCount() {
+        return speciesCount;
+    }
+
+    public void rebuild(double[] x, double[] y, int n, double xBound, double yBound) {
+        rebuild(x, y, null, 1, n, xBound, yBound);
+    }
+
+    /**
+     * Rebuilds the grid with every cell split by {@code species}, each in [0, {@code speciesCount}).
+     */
+    public void rebuild(double[] x, double[] y, int[] species, int speciesCount, int n, double xBound, double yBound) {
+        columns = Math.max(1, (int) Math.ceil(xBound / cellSize));
+        rows = Math.max(1, (int) Math.ceil(yBound / cellSize));
+        count = n;
+        this.speciesCount = species == null ? 1 : speciesCount;
+
+        // a "cell" below is a list of one species in one grid cell
+        int cells = columns * rows * this.speciesCount;
+        if(cellStart.length < cells + 1) {
+            cellStart = new int[cells + 1];
+            cellFill = new int[cells];
+        }
+        if(itemCell.length < n) {
+            itemCell = new int[n];
+            cellItems = new int[n];
+        }
+
+        // counting sort of the items by cell, keeping index order within a cell
+        Arrays.fill(cellStart, 0, cells + 1, 0);
+        for(int i = 0 ; i < n ; i++) {
+            int c = cellOf(x[i], y[i]);
+            if(species != null) {
+                c = c * speciesCount + species[i];
+            }
+            itemCell[i] = c;
+            cellStart[c + 1]++;
+        }
+        for(int c = 0 ; c < cells ; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        System.arraycopy(cellStart, 0, cellFill, 0, cells);
+        for(int i = 0 ; i < n ; i++) {
+            cellItems[cellFill[itemCell[i]]++] = i;
+        }
+    }
+
+    /**
+     * Copies the state of the items into cell order, after {@link #rebuild}, with {@code padding} spare slots at
+     * the end.
+     */
+    void pack(double[] x, double[] y, double[] vx, double[] vy, int padding) {
+        if(packedX.length < count + padding) {
+            packedX = new double[count + padding];
+            packedY = new double[count + padding];
+            packedVx = new double[count + padding];
+            packedVy = new double[count + padding];
+            itemSlot = new int[count + padding];
+        }
+        for (int k = 0 ; k < count ; k++) {
+            int i = cellItems[k];
+            packedX[k] = x[i];
+            packedY[k] = y[i];
+            packedVx[k] = vx[i];
+            packedVy[k] = vy[i];
+            itemSlot[i] = k;
+        }
+    }
+
+    /**
+     * The slot of item {@code i} in the packed arrays.
+     */
+    int slotOf(int i) {
+        return itemSlot[i];
+    }
+
+    /**
+     * The most ranges {@link #candidateRanges} can return.
+     */
+    int maxRanges() {
+        return columns * rows * speciesCount;
+    }
+
+    /**
+     * The candidates {@link #forEachCandidate(double, double, double, int, IntConsumer)} visits, in the same order,
+     * as start and end slots in {@code ranges}, which must hold {@link #maxRanges()} pairs. Returns the number of
+     * ranges, ranges that continue one another being merged.
+     */
+    int candidateRanges(double x, double y, double radius, int speciesMask, int[] ranges) {
+        if(speciesMask == 0) {
+            return 0;
+        }
+        int all = speciesCount == 32 ? -1 : (1 << speciesCount) - 1;
+        speciesMask = speciesCount == 1 ? all : speciesMask & all;
+        int loX = (int) Math.floor((x - radius) / cellSize);
+        int hiX = (int) Math.floor((x + radius) / cellSize);
+        int loY = (int) Math.floor((y - radius) / cellSize);
+        int hiY = (int) Math.floor((y + radius) / cellSize);
+        if(hiX - loX + 1 >= columns) {
+            loX = 0;
+            hiX = columns - 1;
+        }
+        if(hiY - loY + 1 >= rows) {
+            loY = 0;
+            hiY = rows - 1;
+        }
+
+        int n = 0;
+        for(int gy = loY ; gy <= hiY ; gy++) {
+            int row = Math.floorMod(gy, rows) * columns;
+            for(int gx = loX ; gx <= hiX ; gx++) {
+                int c = (row + Math.floorMod(gx, columns)) * speciesCount;
+                if(speciesMask == all) {
+                    n = addRange(ranges, n, cellStart[c], cellStart[c + speciesCount]);
+                    continue;
+                }
+                for(int mask = speciesMask ; mask != 0 ; mask &= mask - 1) {
+                    int s = c + Integer.numberOfTrailingZeros(mask);
+                    n = addRange(ranges, n, cellStart[s], cellStart[s + 1]);
+                }
+            }
+        }
+        return n;
+    }
+
+    private static int addRange(int[] ranges, int n, int start, int end) {
+        if(start == end) {
+            return n;
+        }
+        if(n > 0 && ranges[2 * n - 1] == start) {
+            ranges[2 * n - 1] = end;
+            return n;
+        }
+        ranges[2 * n] = start;
+        ranges[2 * n + 1] = end;
+        return n + 1;
+    }
+
+    int cellOf(double x, double y) {
+        int cx = Math.floorMod((int) Math.floor(x / cellSize), columns);
+        int cy = Math.floorMod((int) Math.floor(y / cellSize), rows);
+        return cy * columns + cx;
+    }
+
+    /**
+     * Visits every item in a cell overlapping the square of half-width {@code radius} around (x, y). Each item is
+     * visited at most once; callers apply their own exact distance test.
+     */
+    public void forEachCandidate(double x, double y, double radius, IntConsumer visitor) {
+        forEachCandidate(x, y, radius, -1, visitor);
+    }
+
+    /**
+     * Visits the candidates of the species in the bitmask {@code speciesMask} only. Without species, every item is
+     * a candidate unless the mask is empty.
+     */
+    public void forEachCandidate(double x, double y, double radius, int speciesMask, IntConsumer visitor) {
+        if(speciesMask == 0) {
+            return;
+        }
+        int all = speciesCount == 32 ? -1 : (1 << speciesCount) - 1;
+        speciesMask = speciesCount == 1 ? all : speciesMask & all;
+        int loX = (int) Math.floor((x - radius) / cellSize);
+        int hiX = (int) Math.floor((x + radius) / cellSize);
+        int loY = (int) Math.floor((y - radius) / cellSize);
+        int hiY = (int) Math.floor((y + radius) / cellSize);
+
+        // a span covering the whole grid would visit wrapped cells twice
+        if(hiX - loX + 1 >= columns) {
+            loX = 0;
+            hiX = columns - 1;
+        }
+        if(hiY - loY + 1 >= rows) {
+            loY = 0;
+            hiY = rows - 1;
+        }
+
+        for(int gy = loY ; gy <= hiY ; gy++) {
+            int row = Math.floorMod(gy, rows) * columns;
+            for(int gx = loX ; gx <= hiX ; gx++) {
+                int c = (row + Math.floorMod(gx, columns)) * speciesCount;
+                if(speciesMask == all) {
+                    for(int k = cellStart[c], end = cellStart[c + speciesCount] ; k < end ; k++) {
+                        visitor.accept(cellItems[k]);
+                    }
+                    continue;
+                }
+                for(int mask = speciesMask ; mask != 0 ; mask &= mask - 1) {
+                    int s = c + Integer.numberOfTrailingZeros(mask);
+                    for(int k = cellStart[s], end = cellStart[s + 1] ; k < end ; k++) {
+                        visitor.accept(cellItems[k]);
+                    }
+                }
+            }
+        }
+    }
+}
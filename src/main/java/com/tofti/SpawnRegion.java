@@ -0,0 +1,44 @@
+package com.tofti;
+
+/**
+ * Where {@link FlockSimulation#spawn} places new boids. A region turns a boid's spawn stream into a location, so a
+ * spawned flock depends only on the seed and the ids it is given, however many boids are spawned at once.
+ */
+public interface SpawnRegion {
+    // the spawn stream draws left to regions, 0 to 2 are the velocity and colour
+    int FIRST_DRAW = 3;
+
+    void sample(long spawn, MutableVector2D location);
+
+    /**
+     * Uniform over the rectangle with top left corner {@code (x, y)}.
+     */
+    static SpawnRegion rectangle(double x, double y, double width, double height) {
+        return (spawn, location) -> location.set(
+                x + BoidRandom.nextDouble(spawn, FIRST_DRAW) * width,
+                y + BoidRandom.nextDouble(spawn, FIRST_DRAW + 1) * height);
+    }
+
+    /**
+     * Uniform over the disc of {@code radius} around {@code (x, y)}.
+     */
+    static SpawnRegion disc(double x, double y, double radius) {
+        return (spawn, location) -> {
+            double r = radius * Math.sqrt(BoidRandom.nextDouble(spawn, FIRST_DRAW));
+            double angle = 2 * Math.PI * BoidRandom.nextDouble(spawn, FIRST_DRAW + 1);
+            location.set(x + r * Math.cos(angle), y + r * Math.sin(angle));
+        };
+    }
+
+    /**
+     * Normally distributed around {@code (x, y)} with standard deviation {@code sigma} along each axis.
+     */
+    static SpawnRegion gaussian(double x, double y, double sigma) {
+        return (spawn, location) -> {
+            // Box-Muller, 1 - u keeps the logarithm finite
+            double r = sigma * Math.sqrt(-2 * Math.log(1d - BoidRandom.nextDouble(spawn, FIRST_DRAW)));
+            double angle = 2 * Math.PI * BoidRandom.nextDouble(spawn, FIRST_DRAW + 1);
+            location.set(x + r * Math.cos(angle), y + r * Math.sin(angle));
+        };
+    }
+}
@@ -0,0 +1,194 @@
+package com.tofti;
+
+import java.util.Arrays;
+
+/**
+ * The species of a flock, a boid's species being its colour. Each species has its own rule radii, default weights
+ * and top speed, and an NxN matrix says how a boid of one species reacts to a boid of another: flocking with it
+ * under the three rules, ignoring it, avoiding it or chasing it. Avoiding and chasing act within the species'
+ * interaction radius.
+ * <p>
+ * The matrix is also kept as one bitmask of target species per interaction, which {@link SpatialGrid} uses to skip
+ * the species a boid ignores instead of filtering every candidate.
+ */
+public class SpeciesTable {
+    public enum Interaction { FLOCK, IGNORE, AVOID, CHASE }
+
+    static final int MAX_SPECIES = 32;
+    static final double DEFAULT_INTERACTION_WEIGHT = 1d;
+
+    public static final class Species {
+        double cohesionRadius = Boid.CENTER_OF_MASS_NEIGHBORHOOD;
+        double separationRadius = Boid.SEPERATION_DISTANCE;
+        double alignmentRadius = Boid.ALIGNMENT_DISTANCE;
+        double interactionRadius = Boid.CENTER_OF_MASS_NEIGHBORHOOD;
+        double maxVelocity = Boid.MAX_VELOCITY;
+
+        double alignmentWeight = Boid.DEFAULT_WEIGHT;
+        double separationWeight = Boid.DEFAULT_WEIGHT;
+        double cohesionWeight = Boid.DEFAULT_WEIGHT;
+        double interactionWeight = DEFAULT_INTERACTION_WEIGHT;
+
+        public Species setRadii(double cohesion, double separation, double alignment, double interaction) {
+            this.cohesionRadius = cohesion;
+            this.separationRadius = separation;
+            this.alignmentRadius = alignment;
+            this.interactionRadius = interaction;
+            return this;
+        }
+
+        public Species setMaxVelocity(double maxVelocity) {
+            this.maxVelocity = maxVelocity;
+            return this;
+        }
+
+        /**
+         * The strength of avoiding and chasing.
+         */
+        public Species setInteractionWeight(double interactionWeight) {
+            this.interactionWeight = interactionWeight;
+            return this;
+        }
+
+        public double getCohesionRadius() {
+            return cohesionRadius;
+        }
+
+        public double getSeparationRadius() {
+            return separationRadius;
+        }
+
+        public double getAlignmentRadius() {
+            return alignmentRadius;
+        }
+
+        public double getInteractionRadius() {
+            return interactionRadius;
+        }
+
+        public double getMaxVelocity() {
+            return maxVelocity;
+        }
+
+        public double getAlignmentWeight() {
+            return alignmentWeight;
+        }
+
+        public double getSeparationWeight() {
+            return separationWeight;
+        }
+
+        public double getCohesionWeight() {
+            return cohesionWeight;
+        }
+
+        public double getInteractionWeight() {
+            return interactionWeight;
+        }
+    }
+
+    private final Species[] species;
+    private final Interaction[][] interactions;
+    // per species, the bitmask of the species it has each interaction with
+    private final int[][] masks;
+
+    public SpeciesTable(int count) {
+        if(count < 1 || count > MAX_SPECIES) {
+            throw new IllegalArgumentException("between 1 and " + MAX_SPECIES + " species, not " + count);
+        }
+        species = new Species[count];
+        interactions = new Interaction[count][count];
+        masks = new int[count][Interaction.values().length];
+        for (int s = 0 ; s < count ; s++) {
+            species[s] = new Species();
+            Arrays.fill(interactions[s], Interaction.FLOCK);
+        }
+        updateMasks();
+    }
+
+    /**
+     * {@link Boid#COLOR_COUNT} species with the original rules, each flocking with all or, when
+     * {@code colorSensitive}, only with its own.
+     */
+    public static SpeciesTable standard(boolean colorSensitive) {
+        SpeciesTable table = new SpeciesTable(Boid.COLOR_COUNT);
+        table.setColorSensitive(colorSensitive);
+        return table;
+    }
+
+    private void updateMasks() {
+        for (int s = 0 ; s < species.length ; s++) {
+            Arrays.fill(masks[s], 0);
+            for (int t = 0 ; t < species.length ; t++) {
+                masks[s][interactions[s][t].ordinal()] |= 1 << t;
+            }
+        }
+    }
+
+    public int size() {
+        return species.length;
+    }
+
+    public Species get(int s) {
+        return species[s];
+    }
+
+    public Interaction getInteraction(int from, int to) {
+        return interactions[from][to];
+    }
+
+    /**
+     * Sets how boids of species {@code from} react to boids of species {@code to}.
+     */
+    public void setInteraction(int from, int to, Interaction interaction) {
+        interactions[from][to] = interaction;
+        updateMasks();
+    }
+
+    /**
+     * The species {@code s} has {@code interaction} with, as a bitmask.
+     */
+    int mask(int s, Interaction interaction) {
+        return masks[s][interaction.ordinal()];
+    }
+
+    /**
+     * Every species flocks with its own and ignores the others, or flocks with all of them.
+     */
+    public void setColorSensitive(boolean colorSensitive) {
+        for (int s = 0 ; s < species.length ; s++) {
+            for (int t = 0 ; t < species.length ; t++) {
+                interactions[s][t] = s == t || !colorSensitive ? Interaction.FLOCK : Interaction.IGNORE;
+            }
+        }
+        updateMasks();
+    }
+
+    /**
+     * Whether the matrix is exactly the one {@link #setColorSensitive setColorSensitive(true)} sets.
+     */
+    public boolean isColorSensitive() {
+        for (int s = 0 ; s < species.length ; s++) {
+            if(mask(s, Interaction.FLOCK) != 1 << s || mask(s, Interaction.IGNORE) != (allMask() & ~(1 << s))) {
+                return false;
+            }
+        }
+        return species.length > 1;
+    }
+
+    /**
+     * Whether every species flocks with every other, so splitting the grid by species skips nothing.
+     */
+    boolean flocksWithAll() {
+        for (int s = 0 ; s < species.length ; s++) {
+            if(mask(s, Interaction.FLOCK) != allMask()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int allMask() {
+        return species.length == MAX_SPECIES ? -1 : (1 << species.length) - 1;
+    }
+}
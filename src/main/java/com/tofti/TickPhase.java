@@ -0,0 +1,13 @@
+package com.tofti;
+
+/**
+ * The parts of a tick timed by {@link FlockMetrics}. {@link #RENDER} is the time the UI spends drawing a frame,
+ * which runs alongside the simulation rather than inside the tick.
+ */
+public enum TickPhase {
+    INDEX, NEIGHBOURS, STEERING, INTEGRATION, RENDER;
+
+    String key() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,103 @@
+package com.tofti;
+
+import java.util.Arrays;
+
+/**
+ * The world split into {@code columns x rows} equal tiles, numbered row by row. A boid belongs to the tile its
+ * location falls in, locations past the far edges (which {@link Vector2D#wrap} can produce) belonging to the last
+ * column or row. Tiles are neighbours when they touch, including across the edges of the toroidal world.
+ */
+public class TileLayout {
+    private final double xBound;
+    private final double yBound;
+    private final int columns;
+    private final int rows;
+    private final double tileWidth;
+    private final double tileHeight;
+    private final int[][] neighbours;
+
+    public TileLayout(double xBound, double yBound, int columns, int rows) {
+        if(columns < 1 || rows < 1) {
+            throw new IllegalArgumentException("at least one tile, not " + columns + "x" + rows);
+        }
+        this.xBound = xBound;
+        this.yBound = yBound;
+        this.columns = columns;
+        this.rows = rows;
+        this.tileWidth = xBound / columns;
+        this.tileHeight = yBound / rows;
+        this.neighbours = new int[columns * rows][];
+        for (int t = 0 ; t < neighbours.length ; t++) {
+            neighbours[t] = findNeighbours(t);
+        }
+    }
+
+    private int[] findNeighbours(int tile) {
+        int column = tile % columns;
+        int row = tile / columns;
+        return Arrays.stream(new int[]{-1, 0, 1})
+                .flatMap(dy -> Arrays.stream(new int[]{-1, 0, 1})
+                        .map(dx -> Math.floorMod(row + dy, rows) * columns + Math.floorMod(column + dx, columns)))
+                .filter(t -> t != tile)
+                .distinct()
+                .sorted()
+                .toArray();
+    }
+
+    public int size() {
+        return columns * rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public double getTileWidth() {
+        return tileWidth;
+    }
+
+    public double getTileHeight() {
+        return tileHeight;
+    }
+
+    public double getXBound() {
+        return xBound;
+    }
+
+    public double getYBound() {
+        return yBound;
+    }
+
+    public int tileOf(double x, double y) {
+        int column = Math.max(0, Math.min(columns - 1, (int) Math.floor(x / tileWidth)));
+        int row = Math.max(0, Math.min(rows - 1, (int) Math.floor(y / tileHeight)));
+        return row * columns + column;
+    }
+
+    /**
+     * The other tiles touching {@code tile}, in ascending order.
+     */
+    public int[] neighbours(int tile) {
+        return neighbours[tile];
+    }
+
+    /**
+     * Whether {@code (x, y)} is within {@code distance} of {@code tile}, measured straight rather than around the
+     * world, as the steering rules measure it. The last column and row reach past the far edges.
+     */
+    boolean isNear(int tile, double x, double y, double distance) {
+        int column = tile % columns;
+        int row = tile / columns;
+        double left = column * tileWidth;
+        double right = column == columns - 1 ? Double.MAX_VALUE : left + tileWidth;
+        double top = row * tileHeight;
+        double bottom = row == rows - 1 ? Double.MAX_VALUE : top + tileHeight;
+        double dx = Math.max(0d, Math.max(left - x, x - right));
+        double dy = Math.max(0d, Math.max(top - y, y - bottom));
+        return dx * dx + dy * dy <= distance * distance;
+    }
+}
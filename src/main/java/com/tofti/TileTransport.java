@@ -0,0 +1,23 @@
+package com.tofti;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Carries messages between the tiles of a {@link PartitionedSimulation}. Messages from one tile to another arrive
+ * in the order they were sent. Sending never waits for the receiver, receiving waits for the next message.
+ */
+public interface TileTransport extends AutoCloseable {
+    /**
+     * Sends the remaining bytes of {@code message}, which the caller may reuse as soon as this returns.
+     */
+    void send(int from, int to, ByteBuffer message) throws IOException;
+
+    /**
+     * The next message tile {@code to} has from tile {@code from}, ready to read.
+     */
+    ByteBuffer receive(int to, int from) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,150 @@
+package com.tofti;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * The part of a {@link PartitionedSimulation} that owns one tile: the boids in it, plus during a tick copies of the
+ * boids near it that other tiles own, the halo. Workers only talk through their {@link TileTransport}, exchanging
+ * two messages with every neighbouring tile per tick, the boids within the halo width of it before the update and
+ * the boids that moved into it after.
+ * <p>
+ * Owned boids and halo are sorted by id before the grid is built, which puts every boid's neighbours in the order a
+ * single {@link FlockSimulation} visits them in, so a tile computes exactly what the single simulation would.
+ */
+final class TileWorker {
+    // id, location, velocity, the three weights and colour
+    static final int BOID_BYTES = 8 + 4 * 8 + 3 * 8 + 4;
+
+    private final int tile;
+    private final TileLayout layout;
+    private final TileTransport transport;
+    private final FlockStore store = new FlockStore();
+    private final SpatialGrid grid = new SpatialGrid(Boid.CENTER_OF_MASS_NEIGHBORHOOD);
+    private final FlockKernel kernel = new FlockKernel(store, grid);
+    private boolean[] owned = new boolean[0];
+    private ByteBuffer message = ByteBuffer.allocate(4);
+
+    TileWorker(int tile, TileLayout layout, TileTransport transport) {
+        this.tile = tile;
+        this.layout = layout;
+        this.transport = transport;
+    }
+
+    FlockStore getStore() {
+        return store;
+    }
+
+    /**
+     * Copies boid {@code i} of {@code from}, which must be in this tile.
+     */
+    void add(FlockStore from, int i) {
+        int j = store.size;
+        store.ensureCapacity(j + 1);
+        store.x[j] = from.x[i];
+        store.y[j] = from.y[i];
+        store.vx[j] = from.vx[i];
+        store.vy[j] = from.vy[i];
+        store.alignmentWeight[j] = from.alignmentWeight[i];
+        store.separationWeight[j] = from.separationWeight[i];
+        store.cohesionWeight[j] = from.cohesionWeight[i];
+        store.color[j] = from.color[i];
+        store.id[j] = from.id[i];
+        store.size++;
+    }
+
+    void tick(SpeciesTable species, EnvironmentField field, long seed, long tick, double halo, double dt)
+            throws IOException {
+        int[] neighbours = layout.neighbours(tile);
+        for (int to : neighbours) {
+            send(to, i -> layout.isNear(to, store.x[i], store.y[i], halo));
+        }
+        for (int from : neighbours) {
+            receive(from);
+        }
+
+        store.sortById();
+        int n = store.size;
+        if(owned.length < n) {
+            owned = new boolean[store.capacity()];
+        }
+        for (int i = 0 ; i < n ; i++) {
+            owned[i] = layout.tileOf(store.x[i], store.y[i]) == tile;
+        }
+        if(species.flocksWithAll()) {
+            grid.rebuild(store.x, store.y, n, layout.getXBound(), layout.getYBound());
+        } else {
+            grid.rebuild(store.x, store.y, store.color, species.size(), n, layout.getXBound(), layout.getYBound());
+        }
+        kernel.configure(layout.getXBound(), layout.getYBound(), species, dt)
+                .random(seed, tick)
+                .environment(field);
+        for (int i = 0 ; i < n ; i++) {
+            if(owned[i]) {
+                kernel.update(i);
+            }
+        }
+        store.swap();
+        store.removeIf(i -> !owned[i]);
+
+        for (int i = 0 ; i < store.size ; i++) {
+            int t = layout.tileOf(store.x[i], store.y[i]);
+            if(t != tile && Arrays.binarySearch(neighbours, t) < 0) {
+                throw new IllegalStateException("boid " + store.id[i] + " moved from tile " + tile + " past its neighbours");
+            }
+        }
+        for (int to : neighbours) {
+            send(to, i -> layout.tileOf(store.x[i], store.y[i]) == to);
+        }
+        store.removeIf(i -> layout.tileOf(store.x[i], store.y[i]) != tile);
+        for (int from : neighbours) {
+            receive(from);
+        }
+    }
+
+    private void send(int to, IntPredicate include) throws IOException {
+        int count = 0;
+        message.clear();
+        message.putInt(0);
+        for (int i = 0 ; i < store.size ; i++) {
+            if(!include.test(i)) {
+                continue;
+            }
+            if(message.remaining() < BOID_BYTES) {
+                ByteBuffer larger = ByteBuffer.allocate(2 * message.capacity() + BOID_BYTES);
+                message.flip();
+                message = larger.put(message);
+            }
+            message.putLong(store.id[i])
+                    .putDouble(store.x[i]).putDouble(store.y[i])
+                    .putDouble(store.vx[i]).putDouble(store.vy[i])
+                    .putDouble(store.alignmentWeight[i])
+                    .putDouble(store.separationWeight[i])
+                    .putDouble(store.cohesionWeight[i])
+                    .putInt(store.color[i]);
+            count++;
+        }
+        message.putInt(0, count).flip();
+        transport.send(tile, to, message);
+    }
+
+    private void receive(int from) throws IOException {
+        ByteBuffer m = transport.receive(tile, from);
+        int count = m.getInt();
+        store.ensureCapacity(store.size + count);
+        for (int k = 0 ; k < count ; k++) {
+            int j = store.size++;
+            store.id[j] = m.getLong();
+            store.x[j] = m.getDouble();
+            store.y[j] = m.getDouble();
+            store.vx[j] = m.getDouble();
+            store.vy[j] = m.getDouble();
+            store.alignmentWeight[j] = m.getDouble();
+            store.separationWeight[j] = m.getDouble();
+            store.cohesionWeight[j] = m.getDouble();
+            store.color[j] = m.getInt();
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.tofti;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The recording format shared by {@link TrajectoryRecorder} and {@link TrajectoryReader}.
+ * <p>
+ * A file starts with a header of magic, version, position and velocity scales, the tick interval between frames and
+ * the frames per chunk, as big endian ints. Chunks follow, each a header of magic, frame count, payload length and
+ * CRC32 of the payload, then the payload. Every value of a frame is quantized to an int with the file's scales and
+ * written as the zig-zag varint difference from the same boid in the previous frame of the chunk; the first frame of
+ * a chunk is a difference from zero, so every chunk decodes on its own. A frame is its tick, boid count and bounds,
+ * followed by all x, then all y, vx, vy and color, then the boids' ids, each as the difference from the id before
+ * it in the frame, which is small since a flock keeps its boids in id order.
+ */
+final class TrajectoryFormat {
+    static final int MAGIC = 0x46545241; // "FTRA"
+    static final int CHUNK_MAGIC = 0x43484E4B; // "CHNK"
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 6 * Integer.BYTES;
+    static final int CHUNK_HEADER_BYTES = 4 * Integer.BYTES;
+
+    // a 64th of a pixel, and a 4096th of a pixel per tick
+    static final int POSITION_SCALE = 64;
+    static final int VELOCITY_SCALE = 4096;
+    static final int DEFAULT_FRAMES_PER_CHUNK = 64;
+
+    private static final int FIELDS = 5;
+
+    private TrajectoryFormat() {
+    }
+
+    static int quantize(double value, int scale) {
+        return (int) Math.round(value * scale);
+    }
+
+    static double dequantize(int value, int scale) {
+        return value / (double) scale;
+    }
+
+    /**
+     * The quantized state of the previous frame in the chunk, which the next frame is written against.
+     */
+    private static class Previous {
+        long tick;
+        int size;
+        int[][] fields = new int[FIELDS][0];
+
+        void reset() {
+            tick = 0;
+            size = 0;
+        }
+
+        void ensureCapacity(int capacity) {
+            if(fields[0].length < capacity) {
+                for (int f = 0 ; f < FIELDS ; f++) {
+                    fields[f] = Arrays.copyOf(fields[f], capacity);
+                }
+            }
+        }
+
+        int get(int field, int i) {
+            return i < size ? fields[field][i] : 0;
+        }
+    }
+
+    static final class Encoder extends Previous {
+        private final int positionScale;
+        private final int velocityScale;
+        private int boundX;
+        private int boundY;
+
+        byte[] bytes = new byte[1 << 16];
+        int length;
+        int frames;
+
+        Encoder(int positionScale, int velocityScale) {
+            this.positionScale = positionScale;
+            this.velocityScale = velocityScale;
+        }
+
+        void startChunk() {
+            reset();
+            boundX = 0;
+            boundY = 0;
+            length = 0;
+            frames = 0;
+        }
+
+        void encode(TrajectoryFrame frame) {
+            int n = frame.size;
+            // worst case of five 5 byte varints and a 10 byte id per boid, plus the frame header
+            ensureBytes(length + n * (FIELDS * 5 + 10) + 40);
+            writeLong(frame.tick - tick);
+            writeInt(n - size);
+            int bx = quantize(frame.xBound, positionScale);
+            int by = quantize(frame.yBound, positionScale);
+            writeInt(bx - boundX);
+            writeInt(by - boundY);
+            boundX = bx;
+            boundY = by;
+
+            ensureCapacity(n);
+            encodeField(0, frame.x, n, positionScale);
+            encodeField(1, frame.y, n, positionScale);
+            encodeField(2, frame.vx, n, velocityScale);
+            encodeField(3, frame.vy, n, velocityScale);
+            int[] colors = fields[4];
+            for (int i = 0 ; i < n ; i++) {
+                writeInt(frame.color[i] - get(4, i));
+            }
+            // the previous colors are read above before any is overwritten, so copy them afterwards
+            System.arraycopy(frame.color, 0, colors, 0, n);
+            long id = 0;
+            for (int i = 0 ; i < n ; i++) {
+                writeId(frame.id[i] - id);
+                id = frame.id[i];
+            }
+            tick = frame.tick;
+            size = n;
+            frames++;
+        }
+
+        private void encodeField(int field, double[] values, int n, int scale) {
+            int[] previous = fields[field];
+            for (int i = 0 ; i < n ; i++) {
+                int q = quantize(values[i], scale);
+                writeInt(q - (i < size ? previous[i] : 0));
+                previous[i] = q;
+            }
+        }
+
+        private void ensureBytes(int capacity) {
+            if(bytes.length < capacity) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, 2 * bytes.length));
+            }
+        }
+
+        private void writeInt(int v) {
+            int z = (v << 1) ^ (v >> 31);
+            while ((z & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((z & 0x7F) | 0x80);
+                z >>>= 7;
+            }
+            bytes[length++] = (byte) z;
+        }
+
+        private void writeLong(long v) {
+            ensureBytes(length + 10);
+            writeId(v);
+        }
+
+        private void writeId(long v) {
+            long z = (v << 1) ^ (v >> 63);
+            while ((z & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((z & 0x7F) | 0x80);
+                z >>>= 7;
+            }
+            bytes[length++] = (byte) z;
+        }
+    }
+
+    static final class Decoder extends Previous {
+        private final int positionScale;
+        private final int velocityScale;
+        private int boundX;
+        private int boundY;
+
+        private byte[] bytes;
+        private int position;
+        private int end;
+
+        Decoder(int positionScale, int velocityScale) {
+            this.positionScale = positionScale;
+            this.velocityScale = velocityScale;
+        }
+
+        void startChunk(byte[] payload, int length) {
+            reset();
+            boundX = 0;
+            boundY = 0;
+            bytes = payload;
+            position = 0;
+            end = length;
+        }
+
+        void decode(TrajectoryFrame frame) throws IOException {
+            long t = tick + readLong();
+            int n = size + readInt();
+            if(n < 0) {
+                throw new IOException("corrupt trajectory frame, " + n + " boids");
+            }
+            boundX += readInt();
+            boundY += readInt();
+
+            ensureCapacity(n);
+            frame.ensureCapacity(n);
+            decodeField(0, frame.x, n, positionScale);
+            decodeField(1, frame.y, n, positionScale);
+            decodeField(2, frame.vx, n, velocityScale);
+            decodeField(3, frame.vy, n, velocityScale);
+            int[] colors = fields[4];
+            for (int i = 0 ; i < n ; i++) {
+                colors[i] = get(4, i) + readInt();
+                frame.color[i] = colors[i];
+            }
+            long id = 0;
+            for (int i = 0 ; i < n ; i++) {
+                id += readLong();
+                frame.id[i] = id;
+            }
+            frame.tick = t;
+            frame.size = n;
+            frame.xBound = dequantize(boundX, positionScale);
+            frame.yBound = dequantize(boundY, positionScale);
+            tick = t;
+            size = n;
+        }
+
+        private void decodeField(int field, double[] values, int n, int scale) throws IOException {
+            int[] previous = fields[field];
+            for (int i = 0 ; i < n ; i++) {
+                int q = (i < size ? previous[i] : 0) + readInt();
+                previous[i] = q;
+                values[i] = dequantize(q, scale);
+            }
+        }
+
+        private int readInt() throws IOException {
+            long z = readLong();
+            return (int) z;
+        }
+
+        private long readLong() throws IOException {
+            long z = 0;
+            for (int shift = 0 ; shift < 64 ; shift += 7) {
+                if(position >= end) {
+                    throw new IOException("truncated trajectory chunk");
+                }
+                byte b = bytes[position++];
+                z |= (long) (b & 0x7F) << shift;
+                if((b & 0x80) == 0) {
+                    return (z >>> 1) ^ -(z & 1);
+                }
+            }
+            throw new IOException("corrupt varint in trajectory chunk");
+        }
+    }
+}
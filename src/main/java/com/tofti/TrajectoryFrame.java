@@ -0,0 +1,174 @@
+package com.tofti;
+
+import java.util.Arrays;
+
+/**
+ * The state of a flock at one tick, as written by {@link TrajectoryRecorder} and read back by
+ * {@link TrajectoryReader}. Frames are reused: capturing or decoding into one overwrites it, and its arrays only
+ * grow.
+ */
+public final class TrajectoryFrame implements FlockView {
+    long tick;
+    int size;
+    double xBound;
+    double yBound;
+
+    double[] x = new double[0];
+    double[] y = new double[0];
+    double[] vx = new double[0];
+    double[] vy = new double[0];
+    int[] color = new int[0];
+    long[] id = new long[0];
+
+    void ensureCapacity(int capacity) {
+        if(x.length < capacity) {
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            vx = Arrays.copyOf(vx, capacity);
+            vy = Arrays.copyOf(vy, capacity);
+            color = Arrays.copyOf(color, capacity);
+            id = Arrays.copyOf(id, capacity);
+        }
+    }
+
+    void capture(FlockSimulation simulation) {
+        FlockStore store = simulation.getStore();
+        int n = store.size();
+        ensureCapacity(n);
+        System.arraycopy(store.x, 0, x, 0, n);
+        System.arraycopy(store.y, 0, y, 0, n);
+        System.arraycopy(store.vx, 0, vx, 0, n);
+        System.arraycopy(store.vy, 0, vy, 0, n);
+        System.arraycopy(store.color, 0, color, 0, n);
+        System.arraycopy(store.id, 0, id, 0, n);
+        this.size = n;
+        this.tick = simulation.getTick();
+        this.xBound = simulation.getXBound();
+        this.yBound = simulation.getYBound();
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public double getXBound() {
+        return xBound;
+    }
+
+    public double getYBound() {
+        return yBound;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public long getId(int i) {
+        return id[i];
+    }
+
+    @Override
+    public double getX(int i) {
+        return x[i];
+    }
+
+    @Override
+    public double getY(int i) {
+        return y[i];
+    }
+
+    @Override
+    public double getVelocityX(int i) {
+        return vx[i];
+    }
+
+    @Override
+    public double getVelocityY(int i) {
+        return vy[i];
+    }
+
+    @Override
+    public int getColor(int i) {
+        return color[i];
+    }
+
+    /**
+     * The flock at a point between two recorded frames, for smooth replay of a recording that kept every Nth tick.
+     * Boids are paired by id, so removing a boid doesn't shift the ones after it onto their neighbours. Boids only
+     * present in the later frame are shown where it has them.
+     */
+    public static final class Between implements FlockView {
+        private TrajectoryFrame from = new TrajectoryFrame();
+        private TrajectoryFrame to = from;
+        private double alpha;
+
+        // for each boid of to, the index of the same boid in from or -1, kept until the frames change
+        private int[] match = new int[0];
+        private TrajectoryFrame matchedFrom;
+        private TrajectoryFrame matchedTo;
+        private long matchedFromTick = -1;
+        private long matchedToTick = -1;
+
+        public Between set(TrajectoryFrame from, TrajectoryFrame to, double alpha) {
+            this.from = from;
+            this.to = to;
+            this.alpha = alpha;
+            if(from != matchedFrom || to != matchedTo || from.tick != matchedFromTick || to.tick != matchedToTick) {
+                match();
+            }
+            return this;
+        }
+
+        // a flock keeps its boids in id order, so one merge pass pairs them
+        private void match() {
+            if(match.length < to.size) {
+                match = new int[to.size];
+            }
+            int j = 0;
+            for (int i = 0 ; i < to.size ; i++) {
+                long id = to.id[i];
+                while(j < from.size && from.id[j] < id) {
+                    j++;
+                }
+                match[i] = j < from.size && from.id[j] == id ? j : -1;
+            }
+            matchedFrom = from;
+            matchedTo = to;
+            matchedFromTick = from.tick;
+            matchedToTick = to.tick;
+        }
+
+        @Override
+        public int size() {
+            return to.size;
+        }
+
+        @Override
+        public double getX(int i) {
+            int j = match[i];
+            return j >= 0 ? FlockSnapshot.interpolate(from.x[j], to.x[i], alpha, to.xBound) : to.x[i];
+        }
+
+        @Override
+        public double getY(int i) {
+            int j = match[i];
+            return j >= 0 ? FlockSnapshot.interpolate(from.y[j], to.y[i], alpha, to.yBound) : to.y[i];
+        }
+
+        @Override
+        public double getVelocityX(int i) {
+            return to.vx[i];
+        }
+
+        @Override
+        public double getVelocityY(int i) {
+            return to.vy[i];
+        }
+
+        @Override
+        public int getColor(int i) {
+            return to.color[i];
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.tofti;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays a recording back in real time, at the tick rate it is given, for a renderer to draw instead of a running
+ * simulation. Positions between recorded frames are interpolated, and the recording loops when it ends.
+ */
+public class TrajectoryPlayer implements AutoCloseable {
+    private final Path path;
+    private final double ticksPerNano;
+
+    private TrajectoryReader reader;
+    private TrajectoryFrame from = new TrajectoryFrame();
+    private TrajectoryFrame to = new TrajectoryFrame();
+    private TrajectoryFrame spare = new TrajectoryFrame();
+    private final TrajectoryFrame.Between between = new TrajectoryFrame.Between();
+
+    // playback goes from the first frame's tick at the time of the first call, and starts over on rewinding
+    private long firstTick;
+    private long startNanos;
+    private boolean started;
+
+    public TrajectoryPlayer(Path path, double ticksPerSecond) throws IOException {
+        this.path = path;
+        this.ticksPerNano = ticksPerSecond / TimeUnit.SECONDS.toNanos(1);
+        rewind();
+    }
+
+    private void rewind() throws IOException {
+        if(reader != null) {
+            reader.close();
+        }
+        reader = new TrajectoryReader(path);
+        if(!reader.next(from)) {
+            throw new IOException(path + " has no frames");
+        }
+        if(!reader.next(to)) {
+            copy(from, to);
+        }
+        firstTick = from.tick;
+        started = false;
+    }
+
+    private static void copy(TrajectoryFrame source, TrajectoryFrame target) {
+        target.ensureCapacity(source.size);
+        System.arraycopy(source.x, 0, target.x, 0, source.size);
+        System.arraycopy(source.y, 0, target.y, 0, source.size);
+        System.arraycopy(source.vx, 0, target.vx, 0, source.size);
+        System.arraycopy(source.vy, 0, target.vy, 0, source.size);
+        System.arraycopy(source.color, 0, target.color, 0, source.size);
+        System.arraycopy(source.id, 0, target.id, 0, source.size);
+        target.size = source.size;
+        target.tick = source.tick;
+        target.xBound = source.xBound;
+        target.yBound = source.yBound;
+    }
+
+    /**
+     * The flock as recorded at wall clock time {@code nowNanos}, counted from the first call.
+     */
+    public FlockView frameAt(long nowNanos) throws IOException {
+        if(!started) {
+            startNanos = nowNanos;
+            started = true;
+        }
+        double tick = firstTick + (nowNanos - startNanos) * ticksPerNano;
+        while (tick >= to.tick && to.tick > from.tick) {
+            TrajectoryFrame t = from;
+            from = to;
+            to = spare;
+            spare = t;
+            if(!reader.next(to)) {
+                rewind();
+                return between.set(from, from, 0d);
+            }
+        }
+        double span = to.tick - from.tick;
+        double alpha = span <= 0 ? 1d : Math.min(1d, (tick - from.tick) / span);
+        return between.set(from, to, alpha);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,104 @@
+package com.tofti;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a recording of {@link TrajectoryRecorder} back frame by frame. A chunk cut short at the end of the file, as
+ * left by a recording that was never closed, ends the recording rather than failing it.
+ */
+public class TrajectoryReader implements AutoCloseable {
+    private final DataInputStream in;
+    private final int every;
+    private final int framesPerChunk;
+    private final TrajectoryFormat.Decoder decoder;
+    private final CRC32 crc = new CRC32();
+
+    private byte[] payload = new byte[0];
+    private int framesLeft;
+
+    public TrajectoryReader(Path path) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+        try {
+            if(in.readInt() != TrajectoryFormat.MAGIC) {
+                throw new IOException(path + " is not a trajectory recording");
+            }
+            int version = in.readInt();
+            if(version != TrajectoryFormat.VERSION) {
+                throw new IOException(path + " has recording version " + version + ", expected " + TrajectoryFormat.VERSION);
+            }
+            int positionScale = in.readInt();
+            int velocityScale = in.readInt();
+            this.every = in.readInt();
+            this.framesPerChunk = in.readInt();
+            this.decoder = new TrajectoryFormat.Decoder(positionScale, velocityScale);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The tick interval between recorded frames.
+     */
+    public int getEvery() {
+        return every;
+    }
+
+    public int getFramesPerChunk() {
+        return framesPerChunk;
+    }
+
+    /**
+     * Decodes the next frame into {@code frame}, returning false at the end of the recording.
+     */
+    public boolean next(TrajectoryFrame frame) throws IOException {
+        if(framesLeft == 0 && !readChunk()) {
+            return false;
+        }
+        decoder.decode(frame);
+        framesLeft--;
+        return true;
+    }
+
+    private boolean readChunk() throws IOException {
+        int frames;
+        int length;
+        int checksum;
+        try {
+            if(in.readInt() != TrajectoryFormat.CHUNK_MAGIC) {
+                throw new IOException("corrupt trajectory recording, expected a chunk");
+            }
+            frames = in.readInt();
+            length = in.readInt();
+            checksum = in.readInt();
+            if(frames < 1 || length < 0) {
+                throw new IOException("corrupt trajectory chunk header");
+            }
+            if(payload.length < length) {
+                payload = new byte[length];
+            }
+            in.readFully(payload, 0, length);
+        } catch (EOFException e) {
+            return false;
+        }
+        crc.reset();
+        crc.update(payload, 0, length);
+        if((int) crc.getValue() != checksum) {
+            throw new IOException("corrupt trajectory chunk, checksum mismatch");
+        }
+        decoder.startChunk(payload, length);
+        framesLeft = frames;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
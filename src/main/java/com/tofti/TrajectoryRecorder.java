@@ -0,0 +1,164 @@
+package com.tofti;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Streams every Nth tick of a simulation to disk in the {@link TrajectoryFormat}. The simulation thread only copies
+ * the flock into a slot of a bounded ring; a background thread encodes the slots and writes them out. When the ring
+ * is full a frame is dropped, or with {@link Overflow#WAIT} the simulation waits for a free slot, which suits
+ * headless runs that must keep every frame.
+ * <p>
+ * Use as a step listener of {@link SimulationScheduler}, or call {@link #accept} after each step.
+ */
+public class TrajectoryRecorder implements Consumer<FlockSimulation>, AutoCloseable {
+    public enum Overflow { DROP, WAIT }
+
+    static final int DEFAULT_CAPACITY = 8;
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int every;
+    private final Overflow overflow;
+    private final TrajectoryFrame[] ring;
+    // frames published by the simulation thread and frames consumed by the writer, ever increasing
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+
+    private final DataOutputStream out;
+    private final TrajectoryFormat.Encoder encoder;
+    private final int framesPerChunk;
+    private final CRC32 crc = new CRC32();
+    private final Thread writer;
+
+    private volatile boolean closing;
+    private volatile IOException failure;
+    private long dropped;
+
+    public TrajectoryRecorder(Path path, int every) throws IOException {
+        this(path, every, DEFAULT_CAPACITY, TrajectoryFormat.DEFAULT_FRAMES_PER_CHUNK, Overflow.DROP);
+    }
+
+    /**
+     * @param every record the ticks that are a multiple of this
+     * @param capacity frames the ring holds while the writer catches up
+     */
+    public TrajectoryRecorder(Path path, int every, int capacity, int framesPerChunk, Overflow overflow)
+            throws IOException {
+        if(every < 1 || capacity < 1 || framesPerChunk < 1) {
+            throw new IllegalArgumentException("every, capacity and framesPerChunk must be positive");
+        }
+        this.every = every;
+        this.overflow = overflow;
+        this.framesPerChunk = framesPerChunk;
+        this.ring = new TrajectoryFrame[capacity];
+        for (int i = 0 ; i < capacity ; i++) {
+            ring[i] = new TrajectoryFrame();
+        }
+        this.encoder = new TrajectoryFormat.Encoder(TrajectoryFormat.POSITION_SCALE, TrajectoryFormat.VELOCITY_SCALE);
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        out.writeInt(TrajectoryFormat.MAGIC);
+        out.writeInt(TrajectoryFormat.VERSION);
+        out.writeInt(TrajectoryFormat.POSITION_SCALE);
+        out.writeInt(TrajectoryFormat.VELOCITY_SCALE);
+        out.writeInt(every);
+        out.writeInt(framesPerChunk);
+
+        this.writer = new Thread(this::write, "trajectory-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Records the current state of {@code simulation} if its tick is one to keep. Called on the simulation thread.
+     */
+    @Override
+    public void accept(FlockSimulation simulation) {
+        if(simulation.getTick() % every != 0) {
+            return;
+        }
+        long p = published.get();
+        while (p - consumed.get() >= ring.length) {
+            if(overflow == Overflow.DROP || failure != null) {
+                dropped++;
+                return;
+            }
+            LockSupport.parkNanos(IDLE_NANOS);
+        }
+        ring[(int) (p % ring.length)].capture(simulation);
+        published.lazySet(p + 1);
+    }
+
+    /**
+     * Frames dropped because the ring was full, as seen by the simulation thread.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    public long getWritten() {
+        return consumed.get();
+    }
+
+    private void write() {
+        try {
+            encoder.startChunk();
+            while (true) {
+                long c = consumed.get();
+                if(c == published.get()) {
+                    if(closing) {
+                        break;
+                    }
+                    LockSupport.parkNanos(IDLE_NANOS);
+                    continue;
+                }
+                encoder.encode(ring[(int) (c % ring.length)]);
+                consumed.lazySet(c + 1);
+                if(encoder.frames == framesPerChunk) {
+                    writeChunk();
+                }
+            }
+            writeChunk();
+            out.flush();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private void writeChunk() throws IOException {
+        if(encoder.frames == 0) {
+            return;
+        }
+        crc.reset();
+        crc.update(encoder.bytes, 0, encoder.length);
+        out.writeInt(TrajectoryFormat.CHUNK_MAGIC);
+        out.writeInt(encoder.frames);
+        out.writeInt(encoder.length);
+        out.writeInt((int) crc.getValue());
+        out.write(encoder.bytes, 0, encoder.length);
+        encoder.startChunk();
+    }
+
+    /**
+     * Writes out every frame recorded so far and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        // the file is only whole once the writer has drained the ring, so wait for it even when interrupted
+        Uninterruptibles.joinUninterruptibly(writer);
+        out.close();
+        if(failure != null) {
+            throw failure;
+        }
+    }
+}
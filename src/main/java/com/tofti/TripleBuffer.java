@@ -0,0 +1,53 @@
+package com.tofti;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Lock-free hand-over of the latest value from one writer thread to one reader thread. The writer fills
+ * {@link #back()} and {@link #publish()}es it, the reader {@link #acquire()}s the most recently published buffer.
+ * Neither side ever waits, and a buffer is never written while the reader holds it.
+ */
+public final class TripleBuffer<T> {
+    private static final int INDEX_MASK = 0x3;
+    private static final int FRESH = 0x4;
+
+    private final Object[] buffers = new Object[3];
+    // index of the buffer in the middle, plus FRESH when it was published after the reader's last acquire
+    private final AtomicInteger middle = new AtomicInteger(1);
+
+    // owned by the writer
+    private int back = 0;
+    // owned by the reader
+    private int front = 2;
+
+    public TripleBuffer(Supplier<T> factory) {
+        for (int i = 0 ; i < buffers.length ; i++) {
+            buffers[i] = factory.get();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T get(int i) {
+        return (T) buffers[i];
+    }
+
+    public T back() {
+        return get(back);
+    }
+
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    public boolean hasFresh() {
+        return (middle.get() & FRESH) != 0;
+    }
+
+    public T acquire() {
+        if(hasFresh()) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+        return get(front);
+    }
+}
@@ -30,13 +30,12 @@ public class Vector2D {
     }
 
     public Vector2D wrapAround(double xLimit, double yLimit) {
-        double wx = x > xLimit ? x - xLimit : x;
-        wx = wx < 0 ? xLimit - wx : wx;
-
-        double wy  = y > yLimit ? y - yLimit : y;
-        wy = wy < 0 ? yLimit - wy  : wy;
+        return new Vector2D(wrap(x, xLimit), wrap(y, yLimit));
+    }
 
-        return new Vector2D(wx, wy);
+    public static double wrap(double v, double limit) {
+        double w = v > limit ? v - limit : v;
+        return w < 0 ? limit - w : w;
     }
 
     public static Vector2D getArithmeticMean(Collection<? extends Vector2D> input) {
@@ -69,12 +68,23 @@ public class Vector2D {
     }
 
     public double getMagnitude() {
-        double m = Math.sqrt(Math.pow(x, 2) + Math.pow(y, 2));
-        return m;
+        return Math.sqrt(getMagnitudeSquared());
+    }
+
+    public double getMagnitudeSquared() {
+        return x * x + y * y;
     }
 
     public static double getDistanceBetween(Vector2D a, Vector2D b) {
-        return Math.sqrt(Math.pow(a.x - b.x, 2) + Math.pow(a.y - b.y, 2));
+        return Math.sqrt(getDistanceSquaredBetween(a, b));
+    }
+
+    public static double getDistanceSquaredBetween(Vector2D a, Vector2D b) {
+        return MutableVector2D.distanceSquared(a.x, a.y, b.x, b.y);
+    }
+
+    public static boolean isWithinDistance(Vector2D a, Vector2D b, double distance) {
+        return getDistanceSquaredBetween(a, b) < distance * distance;
     }
 
     @Override
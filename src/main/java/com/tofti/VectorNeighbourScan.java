@@ -0,0 +1,159 @@
+package com.tofti;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The flocking walk of {@link FlockKernel} in SIMD lanes: instead of visiting candidates one at a time, it loads a
+ * block of them from the {@link SpatialGrid#pack packed} grid and does the distance tests and the masked sums of
+ * all three rules for the whole block at once. Blocks take in self like any other candidate, and its share is
+ * taken back out of the sums at the end, so the walk needs no mask but for a range's last, partial block. The
+ * reduction across lanes and taking self back out round differently than the scalar walk, so both find the same
+ * neighbours and sums equal to rounding.
+ * <p>
+ * Needs the {@code jdk.incubator.vector} module, so it is only loaded when {@link FlockKernel#VECTOR_API} says the
+ * JVM was started with it.
+ */
+final class VectorNeighbourScan {
+    static final VectorSpecies<Double> LANES = DoubleVector.SPECIES_PREFERRED;
+
+    private final SpatialGrid grid;
+    private int[] ranges = new int[0];
+
+    VectorNeighbourScan(SpatialGrid grid) {
+        this.grid = grid;
+    }
+
+    /**
+     * Accumulates into {@code sums} the candidates of the species in {@code speciesMask} around boid {@code self},
+     * the grid having been packed with at least {@link #LANES} slots of padding.
+     */
+    void scan(NeighbourSums sums, int self, double selfX, double selfY, int speciesMask) {
+        if(ranges.length < 2 * grid.maxRanges()) {
+            ranges = new int[2 * grid.maxRanges()];
+        }
+        int count = grid.candidateRanges(selfX, selfY, sums.getRadius(), speciesMask, ranges);
+        double[] px = grid.packedX;
+        double[] py = grid.packedY;
+        double[] pvx = grid.packedVx;
+        double[] pvy = grid.packedVy;
+        int lanes = LANES.length();
+        int selfSlot = grid.slotOf(self);
+
+        DoubleVector sx = DoubleVector.broadcast(LANES, selfX);
+        DoubleVector sy = DoubleVector.broadcast(LANES, selfY);
+        double cx = 0d;
+        double cy = 0d;
+        double sepX = 0d;
+        double sepY = 0d;
+        double ax = 0d;
+        double ay = 0d;
+        int neighbours = 0;
+        int cohesionCount = 0;
+        int separationCount = 0;
+        int alignmentCount = 0;
+
+        boolean scannedSelf = false;
+        for (int r = 0 ; r < count ; r++) {
+            int start = ranges[2 * r];
+            int end = ranges[2 * r + 1];
+            scannedSelf |= selfSlot >= start && selfSlot < end;
+            // summed a range at a time and without branches, as C2 on JDK 17 keeps the vectors on the heap when
+            // they are carried around the outer loop or merged after an if
+            DoubleVector cohesionX = DoubleVector.zero(LANES);
+            DoubleVector cohesionY = DoubleVector.zero(LANES);
+            DoubleVector separationX = DoubleVector.zero(LANES);
+            DoubleVector separationY = DoubleVector.zero(LANES);
+            DoubleVector alignmentX = DoubleVector.zero(LANES);
+            DoubleVector alignmentY = DoubleVector.zero(LANES);
+            // whole blocks compare every lane, only the range's last, partial block needs a mask
+            int full = start + LANES.loopBound(end - start);
+            int k = start;
+            for ( ; k < full ; k += lanes) {
+                DoubleVector x = DoubleVector.fromArray(LANES, px, k);
+                DoubleVector y = DoubleVector.fromArray(LANES, py, k);
+                DoubleVector dx = x.sub(sx);
+                DoubleVector dy = y.sub(sy);
+                // not fused, so the tests agree with the scalar walk to the last bit
+                DoubleVector d2 = dx.mul(dx).add(dy.mul(dy));
+
+                neighbours += d2.lt(sums.radiusSquared).trueCount();
+                VectorMask<Double> cohesion = d2.lt(sums.cohesionRadiusSquared);
+                VectorMask<Double> separation = d2.lt(sums.separationRadiusSquared);
+                VectorMask<Double> alignment = d2.lt(sums.alignmentRadiusSquared);
+                cohesionX = cohesionX.add(x, cohesion);
+                cohesionY = cohesionY.add(y, cohesion);
+                cohesionCount += cohesion.trueCount();
+                separationX = separationX.add(sx.sub(x), separation);
+                separationY = separationY.add(sy.sub(y), separation);
+                separationCount += separation.trueCount();
+                alignmentX = alignmentX.add(DoubleVector.fromArray(LANES, pvx, k), alignment);
+                alignmentY = alignmentY.add(DoubleVector.fromArray(LANES, pvy, k), alignment);
+                alignmentCount += alignment.trueCount();
+            }
+            if(k < end) {
+                VectorMask<Double> in = LANES.indexInRange(k, end);
+                DoubleVector x = DoubleVector.fromArray(LANES, px, k);
+                DoubleVector y = DoubleVector.fromArray(LANES, py, k);
+                DoubleVector dx = x.sub(sx);
+                DoubleVector dy = y.sub(sy);
+                DoubleVector d2 = dx.mul(dx).add(dy.mul(dy));
+
+                neighbours += d2.lt(sums.radiusSquared).and(in).trueCount();
+                VectorMask<Double> cohesion = d2.lt(sums.cohesionRadiusSquared).and(in);
+                VectorMask<Double> separation = d2.lt(sums.separationRadiusSquared).and(in);
+                VectorMask<Double> alignment = d2.lt(sums.alignmentRadiusSquared).and(in);
+                cohesionX = cohesionX.add(x, cohesion);
+                cohesionY = cohesionY.add(y, cohesion);
+                cohesionCount += cohesion.trueCount();
+                separationX = separationX.add(sx.sub(x), separation);
+                separationY = separationY.add(sy.sub(y), separation);
+                separationCount += separation.trueCount();
+                alignmentX = alignmentX.add(DoubleVector.fromArray(LANES, pvx, k), alignment);
+                alignmentY = alignmentY.add(DoubleVector.fromArray(LANES, pvy, k), alignment);
+                alignmentCount += alignment.trueCount();
+            }
+            cx += cohesionX.reduceLanes(VectorOperators.ADD);
+            cy += cohesionY.reduceLanes(VectorOperators.ADD);
+            sepX += separationX.reduceLanes(VectorOperators.ADD);
+            sepY += separationY.reduceLanes(VectorOperators.ADD);
+            ax += alignmentX.reduceLanes(VectorOperators.ADD);
+            ay += alignmentY.reduceLanes(VectorOperators.ADD);
+        }
+
+        // the blocks took self, at distance 0 from itself, for a neighbour under every radius above 0
+        if(scannedSelf) {
+            if(sums.radiusSquared > 0d) {
+                neighbours--;
+            }
+            if(sums.cohesionRadiusSquared > 0d) {
+                cx -= px[selfSlot];
+                cy -= py[selfSlot];
+                cohesionCount--;
+            }
+            if(sums.separationRadiusSquared > 0d) {
+                sepX -= selfX - px[selfSlot];
+                sepY -= selfY - py[selfSlot];
+                separationCount--;
+            }
+            if(sums.alignmentRadiusSquared > 0d) {
+                ax -= pvx[selfSlot];
+                ay -= pvy[selfSlot];
+                alignmentCount--;
+            }
+        }
+
+        sums.neighbourCount += neighbours;
+        sums.cohesionX += cx;
+        sums.cohesionY += cy;
+        sums.cohesionCount += cohesionCount;
+        sums.separationX += sepX;
+        sums.separationY += sepY;
+        sums.separationCount += separationCount;
+        sums.alignmentX += ax;
+        sums.alignmentY += ay;
+        sums.alignmentCount += alignmentCount;
+    }
+}
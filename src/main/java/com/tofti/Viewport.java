@@ -0,0 +1,124 @@
+package com.tofti;
+
+/**
+ * The part of the world shown on screen: a centre in world coordinates and a zoom in pixels per world unit. Pan and
+ * zoom only ever change these, and renderers use {@link #contains} to leave off-screen boids out of a frame.
+ */
+public class Viewport {
+    static final double MIN_ZOOM = 0.02;
+    static final double MAX_ZOOM = 8d;
+
+    private double width;
+    private double height;
+    private double centerX;
+    private double centerY;
+    private double zoom = 1d;
+
+    // the visible world rectangle, kept up to date so contains() is four comparisons
+    private double left;
+    private double top;
+    private double right;
+    private double bottom;
+
+    public Viewport(double width, double height) {
+        this.width = width;
+        this.height = height;
+        this.centerX = width / 2;
+        this.centerY = height / 2;
+        update();
+    }
+
+    private void update() {
+        left = toWorldX(0);
+        top = toWorldY(0);
+        right = toWorldX(width);
+        bottom = toWorldY(height);
+    }
+
+    private static double clampZoom(double zoom) {
+        return Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+    }
+
+    /**
+     * Resizes the screen area, keeping the centre and zoom.
+     */
+    public void setScreenSize(double width, double height) {
+        this.width = width;
+        this.height = height;
+        update();
+    }
+
+    /**
+     * Centres a world of the given size and zooms so that all of it is visible.
+     */
+    public void fit(double worldWidth, double worldHeight) {
+        zoom = clampZoom(Math.min(width / worldWidth, height / worldHeight));
+        centerX = worldWidth / 2;
+        centerY = worldHeight / 2;
+        update();
+    }
+
+    /**
+     * Moves the view by a drag of {@code (dx, dy)} screen pixels.
+     */
+    public void pan(double dx, double dy) {
+        centerX -= dx / zoom;
+        centerY -= dy / zoom;
+        update();
+    }
+
+    /**
+     * Multiplies the zoom by {@code factor}, keeping the world point under screen position {@code (x, y)} in place.
+     */
+    public void zoomAt(double factor, double x, double y) {
+        double worldX = toWorldX(x);
+        double worldY = toWorldY(y);
+        zoom = clampZoom(zoom * factor);
+        centerX = worldX - (x - width / 2) / zoom;
+        centerY = worldY - (y - height / 2) / zoom;
+        update();
+    }
+
+    public double toScreenX(double x) {
+        return (x - centerX) * zoom + width / 2;
+    }
+
+    public double toScreenY(double y) {
+        return (y - centerY) * zoom + height / 2;
+    }
+
+    public double toWorldX(double x) {
+        return (x - width / 2) / zoom + centerX;
+    }
+
+    public double toWorldY(double y) {
+        return (y - height / 2) / zoom + centerY;
+    }
+
+    /**
+     * Whether world point {@code (x, y)} is on screen, or within {@code margin} world units of it.
+     */
+    public boolean contains(double x, double y, double margin) {
+        return x >= left - margin && x <= right + margin && y >= top - margin && y <= bottom + margin;
+    }
+
+    public double getWidth() {
+        return width;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    public double getCenterX() {
+        return centerX;
+    }
+
+    public double getCenterY() {
+        return centerY;
+    }
+
+    public double getZoom() {
+        return zoom;
+    }
+}
@@ -0,0 +1,47 @@
+package com.tofti;
+
+import javafx.scene.DepthTest;
+import javafx.scene.Node;
+import javafx.scene.PerspectiveCamera;
+
+/**
+ * Points the scene's {@link PerspectiveCamera} at a {@link Viewport}. Pan moves the camera across the world, and zoom
+ * moves it towards or away from the z = 0 plane the boids are drawn on, so scene graph nodes stay in world
+ * coordinates. Renderers that draw the frame themselves in screen coordinates {@link #pin} their node in front of
+ * the camera instead.
+ * <p>
+ * The camera's default clip planes scale with the eye distance, and leave room for the zoom range of
+ * {@link Viewport}.
+ */
+final class ViewportCamera {
+    static final double DEFAULT_FIELD_OF_VIEW = 30d;
+
+    private ViewportCamera() {
+    }
+
+    // how far the eye sits behind the z = 0 plane when that plane is shown one to one, see PerspectiveCamera
+    private static double eyeDistance(Viewport viewport, double fieldOfView) {
+        return viewport.getHeight() / 2 / Math.tan(Math.toRadians(fieldOfView / 2));
+    }
+
+    private static double translateZ(Viewport viewport, double fieldOfView) {
+        return eyeDistance(viewport, fieldOfView) * (1d - 1d / viewport.getZoom());
+    }
+
+    static void apply(PerspectiveCamera camera, Viewport viewport) {
+        camera.setTranslateX(viewport.getCenterX() - viewport.getWidth() / 2);
+        camera.setTranslateY(viewport.getCenterY() - viewport.getHeight() / 2);
+        camera.setTranslateZ(translateZ(viewport, camera.getFieldOfView()));
+    }
+
+    /**
+     * Keeps a screen sized {@code node} fixed on screen, at one pixel per unit, wherever {@link #apply} moved the
+     * camera.
+     */
+    static void pin(Node node, Viewport viewport) {
+        node.setDepthTest(DepthTest.DISABLE);
+        node.setTranslateX(viewport.getCenterX() - viewport.getWidth() / 2);
+        node.setTranslateY(viewport.getCenterY() - viewport.getHeight() / 2);
+        node.setTranslateZ(translateZ(viewport, DEFAULT_FIELD_OF_VIEW));
+    }
+}
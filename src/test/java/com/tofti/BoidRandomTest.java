@@ -0,0 +1,49 @@
+package com.tofti;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BoidRandomTest {
+    @Test
+    public void testStreamsAreUniformAndIndependent() {
+        int draws = 100000;
+        double sum = 0;
+        int perturbed = 0;
+        int[] colors = new int[Boid.COLOR_COUNT];
+        for (int id = 0 ; id < draws ; id++) {
+            long stream = BoidRandom.stream(1L, id, 3L);
+            double d = BoidRandom.nextDouble(stream, 0);
+            Assert.assertTrue(d >= 0d && d < 1d);
+            sum += d;
+            colors[BoidRandom.nextInt(stream, 1, Boid.COLOR_COUNT)]++;
+            perturbed += Boid.perturbation(stream, new MutableVector2D()) ? 1 : 0;
+        }
+        Assert.assertEquals(0.5d, sum / draws, 0.01d);
+        Assert.assertEquals(Boid.PERTURBATION_PROBABILITY, perturbed / (double) draws, 0.002d);
+        for (int c : colors) {
+            Assert.assertEquals(0.25d, c / (double) draws, 0.01d);
+        }
+    }
+
+    @Test
+    public void testStreamDependsOnSeedIdAndTick() {
+        long stream = BoidRandom.stream(1L, 2L, 3L);
+        Assert.assertEquals(stream, BoidRandom.stream(1L, 2L, 3L));
+        Assert.assertNotEquals(stream, BoidRandom.stream(2L, 2L, 3L));
+        Assert.assertNotEquals(stream, BoidRandom.stream(1L, 3L, 3L));
+        Assert.assertNotEquals(stream, BoidRandom.stream(1L, 2L, 4L));
+        Assert.assertNotEquals(BoidRandom.nextDouble(stream, 0), BoidRandom.nextDouble(stream, 1), 0d);
+    }
+
+    @Test
+    public void testPerturbationHasFixedMagnitude() {
+        MutableVector2D p = new MutableVector2D();
+        int found = 0;
+        for (int tick = 0 ; found < 20 ; tick++) {
+            if(Boid.perturbation(BoidRandom.stream(5L, 0L, tick), p)) {
+                Assert.assertEquals(Boid.PERTURBATION_MAGNITUDE, p.getMagnitude(), 1E-9);
+                found++;
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.tofti;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class EnvironmentTest {
+    // bilinear interpolation between nodes half a triangle apart
+    private static double TOLERANCE = 0.5d;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testBakedDistances() {
+        Environment environment = new Environment()
+                .addCircle(200, 200, 50)
+                .addPolygon(500, 100, 600, 100, 600, 300, 500, 300);
+        EnvironmentField field = EnvironmentField.bake(environment, 1024, 768);
+        Assert.assertEquals(-50d, field.distance(200, 200), TOLERANCE);
+        Assert.assertEquals(10d, field.distance(260, 200), TOLERANCE);
+        Assert.assertEquals(-20d, field.distance(580, 200), TOLERANCE);
+        Assert.assertEquals(15d, field.distance(550, 315), TOLERANCE);
+        // clamped beyond the avoidance range
+        Assert.assertEquals(EnvironmentField.AVOIDANCE_RANGE, field.distance(800, 600), 0d);
+    }
+
+    @Test
+    public void testLargeWorldKeepsTheAvoidanceRangeResolved() {
+        // coarsening alone would spread this grid's nodes about 40 apart, wider than the avoidance range
+        Environment environment = new Environment().addCircle(20000, 20000, 50);
+        EnvironmentField field = EnvironmentField.bake(environment, 40000, 40000);
+        Assert.assertTrue(field.getCellSize() <= EnvironmentField.AVOIDANCE_RANGE / 2);
+        Assert.assertEquals(-50d, field.distance(20000, 20000), 2 * TOLERANCE);
+        Assert.assertEquals(10d, field.distance(20060, 20000), 2 * TOLERANCE);
+        Assert.assertEquals(25d, field.distance(20000, 20075), 2 * TOLERANCE);
+
+        MutableVector2D v = new MutableVector2D();
+        // outwards, bar the skew of a one sided difference across a larger cell
+        field.steer(20060, 20000, v);
+        Assert.assertTrue(v.getX() > 5 * Math.abs(v.getY()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsWorldsTooLargeForTheGrid() {
+        EnvironmentField.bake(new Environment().addCircle(100, 100, 10), 100000, 100000);
+    }
+
+    @Test
+    public void testSteeringPushesAwayAndPullsIn() {
+        Environment environment = new Environment()
+                .addCircle(200, 200, 50)
+                .addAttractor(800, 500, 1d, 100)
+                .addAttractor(800, 200, -1d, 100);
+        EnvironmentField field = EnvironmentField.bake(environment, 1024, 768);
+
+        MutableVector2D v = new MutableVector2D();
+        field.steer(260, 200, v);
+        // straight out, bar the skew of a one sided difference across a cell
+        Assert.assertTrue(v.getX() > 10 * Math.abs(v.getY()));
+
+        field.steer(760, 500, v.set(0, 0));
+        Assert.assertEquals(0.6d, v.getX(), 0.05d);
+        field.steer(760, 200, v.set(0, 0));
+        Assert.assertEquals(-0.6d, v.getX(), 0.05d);
+
+        field.steer(500, 400, v.set(1, 2));
+        Assert.assertEquals(1d, v.getX(), 0d);
+        Assert.assertEquals(2d, v.getY(), 0d);
+    }
+
+    @Test
+    public void testBoidsStayOutOfObstacles() {
+        Environment environment = new Environment();
+        for (int x = 100 ; x < 1000 ; x += 100) {
+            for (int y = 100 ; y < 700 ; y += 100) {
+                environment.addCircle(x, y, 15);
+            }
+        }
+        FlockSimulation simulation = new FlockSimulation(1024, 768, 31);
+        simulation.setEnvironment(environment);
+        simulation.addRandomBoids(300);
+        simulation.removeBoids(i -> {
+            double dx = simulation.getStore().getX(i) % 100;
+            double dy = simulation.getStore().getY(i) % 100;
+            return Math.min(dx, 100 - dx) < 40 && Math.min(dy, 100 - dy) < 40;
+        });
+        Assert.assertTrue(simulation.size() > 50);
+        for (int t = 0 ; t < 300 ; t++) {
+            simulation.step(1d);
+            FlockStore store = simulation.getStore();
+            for (int i = 0 ; i < store.size() ; i++) {
+                // the offset from the nearest grid point, where there is a circle away from the edges
+                double dx = (store.getX(i) + 50) % 100 - 50;
+                double dy = (store.getY(i) + 50) % 100 - 50;
+                if(store.getX(i) > 50 && store.getX(i) < 950 && store.getY(i) > 50 && store.getY(i) < 650) {
+                    Assert.assertTrue(Math.hypot(dx, dy) > 15d);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("scene.txt");
+        Files.write(path, Arrays.asList(
+                "# a scene",
+                "circle 10 20 5",
+                "",
+                "polygon 0 0 10 0 10 10",
+                "attractor 50 60 -2 30"));
+        Environment environment = Environment.load(path);
+        Assert.assertEquals(5d, environment.getCircles().get(0).getRadius(), 0d);
+        Assert.assertEquals(6, environment.getPolygons().get(0).getPoints().length);
+        Assert.assertEquals(-2d, environment.getAttractors().get(0).getStrength(), 0d);
+    }
+
+    @Test(expected = IOException.class)
+    public void testLoadRejectsUnknownShapes() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("scene.txt");
+        Files.write(path, Arrays.asList("triangle 1 2 3"));
+        Environment.load(path);
+    }
+}
@@ -0,0 +1,161 @@
+package com.tofti;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class FlockCheckpointTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRestoredSimulationContinuesExactly() throws IOException {
+        FlockSimulation original = new FlockSimulation(1024, 768, 17L);
+        original.addRandomBoids(400);
+        original.setColorSensitive(true);
+        original.setCohesionWeight(1.25d);
+        original.getStore().setSeparationWeight(3, 2.5d);
+        for (int i = 0 ; i < 20 ; i++) {
+            original.step(1d);
+        }
+
+        Path path = folder.getRoot().toPath().resolve("flock.checkpoint");
+        FlockCheckpoint.save(original, path);
+        Assert.assertEquals(FlockCheckpoint.fileSize(400, 4), Files.size(path));
+
+        FlockSimulation restored = FlockCheckpoint.load(path);
+        Assert.assertEquals(20L, restored.getTick());
+        Assert.assertEquals(17L, restored.getSeed());
+        Assert.assertEquals(original.getStore().getId(399), restored.getStore().getId(399));
+        Assert.assertTrue(restored.isColorSensitive());
+        Assert.assertEquals(1.25d, restored.getCohesionWeight(), 0d);
+        Assert.assertEquals(2.5d, restored.getStore().getSeparationWeight(3), 0d);
+        FlockSimulationTest.assertSameState(original, restored);
+
+        for (int i = 0 ; i < 50 ; i++) {
+            original.step(1d);
+            restored.step(1d);
+        }
+        FlockSimulationTest.assertSameState(original, restored);
+        Assert.assertEquals(original.addBoid(1, 1), restored.addBoid(1, 1));
+        FlockSimulationTest.assertSameState(original, restored);
+    }
+
+    @Test
+    public void testRestoresTheSpeciesTableAsSaved() throws IOException {
+        SpeciesTable species = new SpeciesTable(3);
+        species.get(0).setRadii(40, 12, 20, 60).setMaxVelocity(3).setInteractionWeight(1.5d);
+        species.get(2).setRadii(30, 8, 15, 45);
+        species.setInteraction(0, 1, SpeciesTable.Interaction.CHASE);
+        species.setInteraction(1, 0, SpeciesTable.Interaction.AVOID);
+        species.setInteraction(2, 1, SpeciesTable.Interaction.IGNORE);
+        FlockSimulation original = new FlockSimulation(1024, 768, 31L, species);
+        original.addRandomBoids(200);
+        original.setAlignmentWeight(0.5d);
+        original.setCohesionWeight(1, 1.75d);
+        for (int i = 0 ; i < 10 ; i++) {
+            original.step(1d);
+        }
+
+        Path path = folder.getRoot().toPath().resolve("species.checkpoint");
+        FlockCheckpoint.save(original, path);
+        Assert.assertEquals(FlockCheckpoint.fileSize(200, 3), Files.size(path));
+
+        FlockSimulation restored = FlockCheckpoint.load(path);
+        SpeciesTable table = restored.getSpecies();
+        Assert.assertEquals(3, table.size());
+        for (int s = 0 ; s < 3 ; s++) {
+            SpeciesTable.Species expected = species.get(s);
+            SpeciesTable.Species actual = table.get(s);
+            Assert.assertEquals(expected.getCohesionRadius(), actual.getCohesionRadius(), 0d);
+            Assert.assertEquals(expected.getSeparationRadius(), actual.getSeparationRadius(), 0d);
+            Assert.assertEquals(expected.getAlignmentRadius(), actual.getAlignmentRadius(), 0d);
+            Assert.assertEquals(expected.getInteractionRadius(), actual.getInteractionRadius(), 0d);
+            Assert.assertEquals(expected.getMaxVelocity(), actual.getMaxVelocity(), 0d);
+            Assert.assertEquals(expected.getAlignmentWeight(), actual.getAlignmentWeight(), 0d);
+            Assert.assertEquals(expected.getSeparationWeight(), actual.getSeparationWeight(), 0d);
+            Assert.assertEquals(expected.getCohesionWeight(), actual.getCohesionWeight(), 0d);
+            Assert.assertEquals(expected.getInteractionWeight(), actual.getInteractionWeight(), 0d);
+            for (int t = 0 ; t < 3 ; t++) {
+                Assert.assertEquals(species.getInteraction(s, t), table.getInteraction(s, t));
+            }
+        }
+        Assert.assertEquals(1.75d, table.get(1).getCohesionWeight(), 0d);
+        Assert.assertEquals(Boid.DEFAULT_WEIGHT, table.get(0).getCohesionWeight(), 0d);
+
+        for (int i = 0 ; i < 30 ; i++) {
+            original.step(1d);
+            restored.step(1d);
+        }
+        FlockSimulationTest.assertSameState(original, restored);
+        Assert.assertEquals(original.addBoid(1, 1), restored.addBoid(1, 1));
+        FlockSimulationTest.assertSameState(original, restored);
+    }
+
+    @Test
+    public void testRestoreReplacesLargerFlock() throws IOException {
+        FlockSimulation small = new FlockSimulation(500, 500, 1L);
+        small.addRandomBoids(3);
+        Path path = folder.getRoot().toPath().resolve("small.checkpoint");
+        FlockCheckpoint.save(small, path);
+        FlockCheckpoint.save(small, path);
+
+        FlockSimulation large = new FlockSimulation(1000, 1000, 2L);
+        large.addRandomBoids(100);
+        FlockCheckpoint.restore(large, path);
+        Assert.assertEquals(500d, large.getXBound(), 0d);
+        FlockSimulationTest.assertSameState(small, large);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws IOException {
+        Path path = folder.newFile("not-a-checkpoint").toPath();
+        Files.write(path, new byte[FlockCheckpoint.HEADER_BYTES]);
+        FlockCheckpoint.load(path);
+    }
+
+    @Test
+    public void testRestoreShowsWeightsWithoutOverwritingThem() throws IOException {
+        FlockSimulation original = new FlockSimulation(1024, 768, 23L);
+        original.addRandomBoids(50);
+        original.setAlignmentWeight(0.75d);
+        original.setCohesionWeight(2, 1.75d);
+        original.getStore().setSeparationWeight(7, 2.5d);
+        Path path = folder.getRoot().toPath().resolve("flock.checkpoint");
+        FlockCheckpoint.save(original, path);
+
+        // sliders sending their weights to every boid, as the context menu's do
+        FlockSimulation live = new FlockSimulation(1024, 768, 1L);
+        AtomicBoolean showing = new AtomicBoolean();
+        List<DoubleProperty> sliders = Arrays.asList(new SimpleDoubleProperty(), new SimpleDoubleProperty(),
+                new SimpleDoubleProperty());
+        sliders.get(0).addListener(Boids.unlessShowing(showing,
+                (ov, o, n) -> live.setAlignmentWeight(n.doubleValue())));
+        sliders.get(1).addListener(Boids.unlessShowing(showing, (ov, o, n) -> live.setCohesionWeight(n.doubleValue())));
+        sliders.get(2).addListener(Boids.unlessShowing(showing,
+                (ov, o, n) -> live.setSeparationWeight(n.doubleValue())));
+
+        Boids.restore(live, path, 800, 600, weights -> Boids.showWeights(sliders, showing, weights));
+        Assert.assertEquals(0.75d, sliders.get(0).get(), 0d);
+        Assert.assertEquals(800d, live.getXBound(), 0d);
+        for (int i = 0 ; i < 50 ; i++) {
+            Assert.assertEquals(original.getStore().getCohesionWeight(i), live.getStore().getCohesionWeight(i), 0d);
+            Assert.assertEquals(original.getStore().getSeparationWeight(i), live.getStore().getSeparationWeight(i), 0d);
+        }
+        Assert.assertEquals(2.5d, live.getStore().getSeparationWeight(7), 0d);
+
+        // moving a slider afterwards still sets the weights
+        sliders.get(1).set(0.25d);
+        Assert.assertEquals(0.25d, live.getStore().getCohesionWeight(0), 0d);
+    }
+}
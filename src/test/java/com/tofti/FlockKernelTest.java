@@ -0,0 +1,192 @@
+package com.tofti;
+
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+public class FlockKernelTest {
+    private static double TOLERANCE = 1E-9;
+
+    private static void assertMatchesBoidRules(boolean colorSensitive, boolean vectorized) {
+        double xBound = 2000;
+        double yBound = 1500;
+        Random rng = new Random(23);
+        FlockStore store = new FlockStore();
+        List<Boid> boids = Lists.newArrayList();
+        for (int i = 0 ; i < 1500 ; i++) {
+            Boid b = new Boid(rng.nextDouble() * xBound, rng.nextDouble() * yBound, xBound, yBound, rng);
+            b.setAligmentWeight(rng.nextDouble() * Boid.MAX_WEIGHT);
+            b.setSeperationWeight(rng.nextDouble() * Boid.MAX_WEIGHT);
+            b.setCohesionWeight(rng.nextDouble() * Boid.MAX_WEIGHT);
+            b.setColorSensitive(colorSensitive);
+            boids.add(b);
+
+            int s = store.add(b.location.getX(), b.location.getY(), b.velocity.getX(), b.velocity.getY(), b.color);
+            store.setAlignmentWeight(s, b.aligmentWeight);
+            store.setSeparationWeight(s, b.seperationWeight);
+            store.setCohesionWeight(s, b.cohesionWeight);
+        }
+
+        SpatialGrid grid = new SpatialGrid(Boid.CENTER_OF_MASS_NEIGHBORHOOD);
+        grid.rebuild(store.x, store.y, store.size(), xBound, yBound);
+        // a tick with about 15 perturbed boids
+        long seed = 29L;
+        long tick = 8L;
+        if(vectorized) {
+            grid.pack(store.x, store.y, store.vx, store.vy, FlockKernel.padding());
+        }
+        new FlockKernel(store, grid).configure(xBound, yBound, SpeciesTable.standard(colorSensitive), 1d).random(seed, tick)
+                .vectorized(vectorized).update(0, boids.size());
+
+        int perturbed = 0;
+        for (int i = 0 ; i < boids.size() ; i++) {
+            Boid b = boids.get(i);
+            Vector2D perturbation = Boid.randomPerturbation(seed, store.getId(i), tick);
+            perturbed += perturbation == null ? 0 : 1;
+            b.update(boids, grid, perturbation, 1d);
+
+            Assert.assertEquals(b.nextVelocity.getX(), store.nextVx[i], TOLERANCE);
+            Assert.assertEquals(b.nextVelocity.getY(), store.nextVy[i], TOLERANCE);
+            Assert.assertEquals(b.nextLocation.getX(), store.nextX[i], TOLERANCE);
+            Assert.assertEquals(b.nextLocation.getY(), store.nextY[i], TOLERANCE);
+        }
+        Assert.assertTrue(perturbed > 0);
+    }
+
+    @Test
+    public void testMatchesBoidRules() {
+        assertMatchesBoidRules(false, false);
+    }
+
+    @Test
+    public void testMatchesBoidRulesWhenColorSensitive() {
+        assertMatchesBoidRules(true, false);
+    }
+
+    @Test
+    public void testVectorizedMatchesBoidRules() {
+        Assume.assumeTrue(FlockKernel.VECTOR_API);
+        assertMatchesBoidRules(false, true);
+        assertMatchesBoidRules(true, true);
+    }
+
+    @Test
+    public void testEachRuleUsesItsOwnRadius() {
+        // 100px apart: inside the alignment and cohesion radii, outside the separation radius
+        FlockStore store = new FlockStore();
+        store.add(500, 500, 1, 0, 0);
+        store.add(600, 500, 0, 1, 0);
+        store.setCohesionWeight(0d);
+        store.setSeparationWeight(1d);
+        store.setAlignmentWeight(1d);
+
+        SpatialGrid grid = new SpatialGrid(Boid.CENTER_OF_MASS_NEIGHBORHOOD);
+        grid.rebuild(store.x, store.y, store.size(), 2000, 2000);
+        new FlockKernel(store, grid).configure(2000, 2000, SpeciesTable.standard(false), 1d).update(0, false, 0d, 0d);
+
+        double expected = Boid.MAX_VELOCITY / Math.sqrt(2d);
+        Assert.assertEquals(expected, store.nextVx[0], TOLERANCE);
+        Assert.assertEquals(expected, store.nextVy[0], TOLERANCE);
+    }
+
+    @Test
+    public void testGridSplitBySpeciesMatchesFiltering() {
+        Random rng = new Random(31);
+        FlockStore filtered = new FlockStore();
+        for (int i = 0 ; i < 2000 ; i++) {
+            filtered.add(rng.nextDouble() * 1500, rng.nextDouble() * 1000, rng.nextDouble() - 0.5, rng.nextDouble() - 0.5,
+                    rng.nextInt(Boid.COLOR_COUNT));
+        }
+        FlockStore split = new FlockStore();
+        for (int i = 0 ; i < filtered.size() ; i++) {
+            split.add(filtered.getX(i), filtered.getY(i), filtered.getVelocityX(i), filtered.getVelocityY(i), filtered.getColor(i));
+        }
+        SpeciesTable species = SpeciesTable.standard(false);
+        species.setInteraction(0, 1, SpeciesTable.Interaction.IGNORE);
+        species.setInteraction(1, 2, SpeciesTable.Interaction.AVOID);
+        species.setInteraction(2, 3, SpeciesTable.Interaction.CHASE);
+
+        SpatialGrid unsplit = new SpatialGrid(Boid.CENTER_OF_MASS_NEIGHBORHOOD);
+        unsplit.rebuild(filtered.x, filtered.y, filtered.size(), 1500, 1000);
+        new FlockKernel(filtered, unsplit).configure(1500, 1000, species, 1d).update(0, filtered.size());
+        SpatialGrid bySpecies = new SpatialGrid(Boid.CENTER_OF_MASS_NEIGHBORHOOD);
+        bySpecies.rebuild(split.x, split.y, split.color, species.size(), split.size(), 1500, 1000);
+        new FlockKernel(split, bySpecies).configure(1500, 1000, species, 1d).update(0, split.size());
+
+        for (int i = 0 ; i < filtered.size() ; i++) {
+            Assert.assertEquals(filtered.nextVx[i], split.nextVx[i], TOLERANCE);
+            Assert.assertEquals(filtered.nextVy[i], split.nextVy[i], TOLERANCE);
+        }
+
+        if(FlockKernel.VECTOR_API) {
+            bySpecies.pack(split.x, split.y, split.vx, split.vy, FlockKernel.padding());
+            new FlockKernel(split, bySpecies).configure(1500, 1000, species, 1d).vectorized(true).update(0, split.size());
+            for (int i = 0 ; i < filtered.size() ; i++) {
+                Assert.assertEquals(filtered.nextVx[i], split.nextVx[i], TOLERANCE);
+                Assert.assertEquals(filtered.nextVy[i], split.nextVy[i], TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void testAvoidAndChase() {
+        // a red boid chases a green one 50px to its right, which flees further right
+        FlockStore store = new FlockStore();
+        store.add(500, 500, 0, 1, 0);
+        store.add(550, 500, 0, 1, 1);
+        store.setCohesionWeight(0d);
+        store.setSeparationWeight(0d);
+        store.setAlignmentWeight(0d);
+        SpeciesTable species = SpeciesTable.standard(false);
+        species.setInteraction(0, 1, SpeciesTable.Interaction.CHASE);
+        species.setInteraction(1, 0, SpeciesTable.Interaction.AVOID);
+        species.get(0).setMaxVelocity(4d);
+
+        SpatialGrid grid = new SpatialGrid(Boid.CENTER_OF_MASS_NEIGHBORHOOD);
+        grid.rebuild(store.x, store.y, store.color, species.size(), store.size(), 2000, 2000);
+        FlockKernel kernel = new FlockKernel(store, grid).configure(2000, 2000, species, 1d);
+        kernel.update(0, false, 0d, 0d);
+        kernel.update(1, false, 0d, 0d);
+
+        Assert.assertEquals(4d / Math.sqrt(2d), store.nextVx[0], TOLERANCE);
+        Assert.assertEquals(Boid.MAX_VELOCITY / Math.sqrt(2d), store.nextVx[1], TOLERANCE);
+        Assert.assertEquals(Boid.MAX_VELOCITY / Math.sqrt(2d), store.nextVy[1], TOLERANCE);
+    }
+
+    @Test
+    public void testNeighbourSumsCountsEachCandidateOnce() {
+        NeighbourSums sums = new NeighbourSums(30, 10, 20).reset();
+        sums.add(0, 0, 5, 0, 1, 1);
+        sums.add(0, 0, 15, 0, 1, 1);
+        sums.add(0, 0, 25, 0, 1, 1);
+        sums.add(0, 0, 35, 0, 1, 1);
+        Assert.assertEquals(30d, sums.getRadius(), 0d);
+        Assert.assertEquals(3, sums.getNeighbourCount());
+        Assert.assertEquals(3, sums.cohesionCount);
+        Assert.assertEquals(1, sums.separationCount);
+        Assert.assertEquals(2, sums.alignmentCount);
+        Assert.assertEquals(-5d, sums.separationX, 0d);
+    }
+
+    @Test
+    public void testSwapPublishesNextState() {
+        FlockStore store = new FlockStore(1);
+        store.add(10, 10, 1, 0, 0);
+        store.add(20, 20, 0, 1, 1);
+        Assert.assertTrue(store.capacity() >= 2);
+
+        SpatialGrid grid = new SpatialGrid(Boid.CENTER_OF_MASS_NEIGHBORHOOD);
+        grid.rebuild(store.x, store.y, store.size(), 100, 100);
+        new FlockKernel(store, grid).configure(100, 100, SpeciesTable.standard(false), 1d).random(1L, 0L).update(0, 2);
+        Assert.assertEquals(10d, store.getX(0), 0d);
+
+        store.swap();
+        Assert.assertNotEquals(10d, store.getX(0), 0d);
+        Assert.assertEquals(Boid.MAX_VELOCITY,
+                new Vector2D(store.getVelocityX(1), store.getVelocityY(1)).getMagnitude(), TOLERANCE);
+    }
+}
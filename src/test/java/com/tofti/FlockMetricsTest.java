@@ -0,0 +1,173 @@
+package com.tofti;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+
+public class FlockMetricsTest {
+    private static double TOLERANCE = 1E-9;
+
+    private static FlockSimulation clusterAndLoner(FlockMetrics metrics) {
+        // three boids within every rule's radius of each other, and one boid on its own
+        FlockSimulation simulation = new FlockSimulation(2000, 2000, 5L);
+        simulation.addBoid(100, 100);
+        simulation.addBoid(110, 100);
+        simulation.addBoid(100, 110);
+        simulation.addBoid(1000, 1000);
+        simulation.setMetrics(metrics);
+        return simulation;
+    }
+
+    @Test
+    public void testRecordsTicksAndNeighbourCounts() {
+        FlockMetrics metrics = new FlockMetrics();
+        FlockSimulation simulation = clusterAndLoner(metrics);
+        metrics.roll();
+        simulation.step(1d);
+
+        MetricsSnapshot snapshot = metrics.roll();
+        Assert.assertSame(snapshot, metrics.getLatest());
+        Assert.assertEquals(1L, snapshot.getTicks());
+        Assert.assertEquals(4, snapshot.getBoids());
+        Assert.assertEquals(1.5d, snapshot.getNeighboursMean(), TOLERANCE);
+        Assert.assertEquals(2L, snapshot.getNeighboursMax());
+        Assert.assertTrue(snapshot.getTickMaxNanos() > 0);
+        Assert.assertTrue(snapshot.getBoidsPerSecond() > 0d);
+        Assert.assertEquals(0d, snapshot.getPhaseMeanNanos(TickPhase.RENDER), 0d);
+    }
+
+    @Test
+    public void testRollStartsANewInterval() {
+        FlockMetrics metrics = new FlockMetrics();
+        FlockSimulation simulation = clusterAndLoner(metrics);
+        for (int i = 0 ; i < 10 ; i++) {
+            simulation.step(1d);
+        }
+        metrics.recordRender(1000L);
+        Assert.assertEquals(10L, metrics.roll().getTicks());
+
+        MetricsSnapshot empty = metrics.roll();
+        Assert.assertEquals(0L, empty.getTicks());
+        Assert.assertEquals(0L, empty.getNeighboursMax());
+        Assert.assertEquals(0d, empty.getFramesPerSecond(), 0d);
+    }
+
+    @Test
+    public void testParallelRecordsEveryBoid() {
+        FlockMetrics metrics = new FlockMetrics();
+        FlockSimulation simulation = new FlockSimulation(1024, 768, 9L);
+        simulation.addRandomBoids(4 * FlockSimulation.PARALLEL_THRESHOLD);
+        simulation.setUpdateMode(FlockSimulation.UpdateMode.PARALLEL);
+        simulation.setMetrics(metrics);
+        metrics.roll();
+        simulation.step(1d);
+        simulation.step(1d);
+
+        MetricsSnapshot snapshot = metrics.roll();
+        Assert.assertEquals(2L, snapshot.getTicks());
+        Assert.assertTrue(snapshot.getNeighboursMean() > 0d);
+        Assert.assertTrue(snapshot.getPhaseMeanNanos(TickPhase.NEIGHBOURS) > 0d);
+    }
+
+    @Test
+    public void testCountsAllocationOnWorkerThreads() throws InterruptedException {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+        FlockMetrics metrics = new FlockMetrics();
+        metrics.roll();
+        long[][] garbage = new long[1][];
+        CountDownLatch allocated = new CountDownLatch(1);
+        CountDownLatch recorded = new CountDownLatch(1);
+        // a live worker running part of the tick, as the fork-join workers of a parallel step do
+        Thread worker = new Thread(() -> {
+            metrics.probe();
+            garbage[0] = new long[1 << 20];
+            allocated.countDown();
+            Uninterruptibles.awaitUninterruptibly(recorded);
+        });
+        long start = metrics.startTick();
+        worker.start();
+        allocated.await();
+        long end = System.nanoTime();
+        metrics.endTick(1, start, start, start, end, end);
+        recorded.countDown();
+        worker.join();
+        Assert.assertTrue(metrics.roll().getAllocatedBytesPerTick() >= 8 << 20);
+    }
+
+    @Test
+    public void testDropsProbesOfDeadThreads() throws InterruptedException {
+        FlockMetrics metrics = new FlockMetrics();
+        metrics.probe();
+        // workers retiring and respawning, as an idle fork-join pool's do
+        for (int i = 0 ; i < 5 ; i++) {
+            Thread worker = new Thread(() -> metrics.probe().recordNeighbours(3));
+            worker.start();
+            worker.join();
+        }
+        Assert.assertEquals(6, metrics.probeCount());
+        long start = metrics.startTick();
+        long end = System.nanoTime();
+        metrics.endTick(1, start, start, start, end, end);
+
+        Assert.assertEquals(1, metrics.probeCount());
+        Assert.assertEquals(3L, metrics.roll().getNeighboursMax());
+    }
+
+    @Test
+    public void testCsvAndJsonHaveTheSameColumns() {
+        FlockMetrics metrics = new FlockMetrics();
+        clusterAndLoner(metrics).step(1d);
+        MetricsSnapshot snapshot = metrics.roll();
+
+        String[] header = snapshot.toCsvHeader().split(",");
+        String[] row = snapshot.toCsv().split(",");
+        Assert.assertEquals(header.length, row.length);
+        Assert.assertEquals("boids", header[2]);
+        Assert.assertEquals("4", row[2]);
+
+        String json = snapshot.toJson();
+        Assert.assertTrue(json.startsWith("{") && json.endsWith("}"));
+        Assert.assertTrue(json.contains("\"boids\":4,"));
+        Assert.assertTrue(json.contains("\"neighbours_max\":2,"));
+    }
+
+    @Test
+    public void testRegistersMXBean() throws Exception {
+        FlockMetrics metrics = new FlockMetrics();
+        clusterAndLoner(metrics).step(1d);
+        metrics.roll();
+
+        ObjectName name = metrics.register();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            Assert.assertEquals(4, server.getAttribute(name, "Boids"));
+            Assert.assertEquals(1L, server.getAttribute(name, "Ticks"));
+            Assert.assertNotNull(server.getAttribute(name, "PhaseMeanMillis"));
+        } finally {
+            metrics.unregister();
+        }
+    }
+
+    @Test
+    public void testRegistersEachInstanceUnderItsOwnName() {
+        FlockMetrics first = new FlockMetrics();
+        FlockMetrics second = new FlockMetrics();
+        ObjectName a = first.register();
+        try {
+            ObjectName b = second.register();
+            second.unregister();
+            Assert.assertNotEquals(a, b);
+        } finally {
+            first.unregister();
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.tofti;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class FlockSimulationTest {
+    private static double TOLERANCE = 1E-6;
+
+    private static FlockSimulation newSimulation(long seed, int boids) {
+        FlockSimulation simulation = new FlockSimulation(1024, 768, seed);
+        simulation.addRandomBoids(boids);
+        return simulation;
+    }
+
+    static void assertSameState(FlockSimulation expected, FlockSimulation actual) {
+        FlockStore e = expected.getStore();
+        FlockStore a = actual.getStore();
+        Assert.assertEquals(e.size(), a.size());
+        for (int i = 0 ; i < e.size() ; i++) {
+            Assert.assertEquals(e.getX(i), a.getX(i), 0d);
+            Assert.assertEquals(e.getY(i), a.getY(i), 0d);
+            Assert.assertEquals(e.getVelocityX(i), a.getVelocityX(i), 0d);
+            Assert.assertEquals(e.getVelocityY(i), a.getVelocityY(i), 0d);
+            Assert.assertEquals(e.getColor(i), a.getColor(i));
+        }
+    }
+
+    @Test
+    public void testSameSeedIsReproducible() {
+        FlockSimulation a = newSimulation(7, 300);
+        FlockSimulation b = newSimulation(7, 300);
+        for (int i = 0 ; i < 50 ; i++) {
+            a.step(1d);
+            b.step(1d);
+        }
+        Assert.assertEquals(50, a.getTick());
+        assertSameState(a, b);
+    }
+
+    @Test
+    public void testRandomDrawsDoNotDependOnOtherBoids() {
+        // the same boid perturbed the same way whether or not boids were spawned before it in another order
+        FlockSimulation a = newSimulation(21, 0);
+        FlockSimulation b = newSimulation(21, 0);
+        a.addRandomBoids(2);
+        b.addRandomBoids(1);
+        b.addBoid(a.getStore().getX(1), a.getStore().getY(1));
+        Assert.assertEquals(a.getStore().getVelocityX(1), b.getStore().getVelocityX(1), 0d);
+        Assert.assertEquals(a.getStore().getColor(1), b.getStore().getColor(1));
+
+        FlockSimulation other = newSimulation(22, 2);
+        Assert.assertNotEquals(a.getStore().getX(0), other.getStore().getX(0), 0d);
+    }
+
+    @Test
+    public void testParallelMatchesSequential() {
+        FlockSimulation sequential = newSimulation(13, 3000);
+        FlockSimulation parallel = newSimulation(13, 3000);
+        parallel.setUpdateMode(FlockSimulation.UpdateMode.PARALLEL);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            parallel.setPool(pool);
+            for (int i = 0 ; i < 10 ; i++) {
+                sequential.step(1d);
+                parallel.step(1d);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertSameState(sequential, parallel);
+    }
+
+    @Test
+    public void testUpdateOrderDoesNotMatter() {
+        Random rng = new Random(17);
+        Boid a = new Boid(100, 100, 1024, 768, rng);
+        Boid b = new Boid(110, 105, 1024, 768, rng);
+        List<Boid> all = Arrays.asList(a, b);
+        SpatialGrid grid = new SpatialGrid(Boid.CENTER_OF_MASS_NEIGHBORHOOD);
+        grid.rebuild(new double[]{ 100, 110 }, new double[]{ 100, 105 }, 2, 1024, 768);
+
+        a.update(all, grid, null, 1d);
+        b.update(all, grid, null, 1d);
+        Vector2D aFirst = a.nextVelocity;
+        Vector2D bSecond = b.nextVelocity;
+
+        b.update(all, grid, null, 1d);
+        a.update(all, grid, null, 1d);
+        Assert.assertEquals(aFirst.getX(), a.nextVelocity.getX(), 0d);
+        Assert.assertEquals(aFirst.getY(), a.nextVelocity.getY(), 0d);
+        Assert.assertEquals(bSecond.getX(), b.nextVelocity.getX(), 0d);
+        Assert.assertEquals(bSecond.getY(), b.nextVelocity.getY(), 0d);
+        Assert.assertEquals(100d, a.getLocation().getX(), 0d);
+
+        a.commit();
+        Assert.assertEquals(aFirst.getX(), a.getVelocity().getX(), 0d);
+    }
+
+    @Test
+    public void testStepMovesEveryBoidAtMaxVelocity() {
+        FlockSimulation simulation = newSimulation(11, 200);
+        for (int i = 0 ; i < 20 ; i++) {
+            simulation.step(1d);
+        }
+        FlockStore store = simulation.getStore();
+        for (int i = 0 ; i < store.size() ; i++) {
+            Assert.assertEquals(Boid.MAX_VELOCITY, new Vector2D(store.getVelocityX(i), store.getVelocityY(i)).getMagnitude(), TOLERANCE);
+            Assert.assertTrue(store.getX(i) >= 0 && store.getX(i) <= 1024 + Boid.MAX_VELOCITY);
+            Assert.assertTrue(store.getY(i) >= 0 && store.getY(i) <= 768 + Boid.MAX_VELOCITY);
+        }
+    }
+
+    @Test
+    public void testStepScalesDisplacementByDt() {
+        FlockSimulation simulation = new FlockSimulation(1024, 768, 3);
+        int boid = simulation.addBoid(500, 400);
+        simulation.step(0.5d);
+        FlockStore store = simulation.getStore();
+        Vector2D moved = new Vector2D(store.getX(boid), store.getY(boid)).minus(new Vector2D(500, 400));
+        Assert.assertEquals(0.5d * Boid.MAX_VELOCITY, moved.getMagnitude(), TOLERANCE);
+    }
+
+    @Test
+    public void testSettingsApplyToExistingAndNewBoids() {
+        FlockSimulation simulation = newSimulation(5, 3);
+        simulation.setAlignmentWeight(1d);
+        simulation.setSeparationWeight(2d);
+        simulation.setCohesionWeight(3d);
+        simulation.addBoid(10, 10);
+
+        FlockStore store = simulation.getStore();
+        Assert.assertEquals(4, store.size());
+        for (int i = 0 ; i < store.size() ; i++) {
+            Assert.assertEquals(1d, store.getAlignmentWeight(i), 0d);
+            Assert.assertEquals(2d, store.getSeparationWeight(i), 0d);
+            Assert.assertEquals(3d, store.getCohesionWeight(i), 0d);
+        }
+
+        simulation.clear();
+        Assert.assertEquals(0, simulation.size());
+    }
+
+    @Test
+    public void testSpawnPlacesBoidsInRegion() {
+        FlockSimulation simulation = new FlockSimulation(1000, 1000, 23);
+        Assert.assertEquals(0, simulation.spawn(500, SpawnRegion.disc(100, 200, 30)));
+        Assert.assertEquals(500, simulation.spawn(500, SpawnRegion.gaussian(990, 500, 20)));
+        FlockStore store = simulation.getStore();
+        for (int i = 0 ; i < 500 ; i++) {
+            Assert.assertTrue(Math.hypot(store.getX(i) - 100, store.getY(i) - 200) <= 30);
+        }
+        // the gaussian straddles the right edge, the boids beyond it wrap around
+        for (int i = 500 ; i < 1000 ; i++) {
+            Assert.assertTrue(store.getX(i) >= 0 && store.getX(i) < 1000);
+        }
+
+        FlockSimulation again = new FlockSimulation(1000, 1000, 23);
+        again.spawn(500, SpawnRegion.disc(100, 200, 30));
+        again.spawn(500, SpawnRegion.gaussian(990, 500, 20));
+        assertSameState(simulation, again);
+    }
+
+    @Test
+    public void testRemovedBoidsTakeNothingWithThem() {
+        FlockSimulation simulation = newSimulation(29, 1000);
+        FlockSimulation expected = newSimulation(29, 1000);
+        FlockStore store = simulation.getStore();
+        store.setCohesionWeight(999, 4d);
+        int removed = simulation.removeBoidsWithin(500, 400, 200);
+        Assert.assertTrue(removed > 0);
+        Assert.assertEquals(1000 - removed, simulation.size());
+        Assert.assertEquals(4d, store.getCohesionWeight(simulation.size() - 1), 0d);
+        Assert.assertEquals(999L, store.getId(simulation.size() - 1));
+
+        // the survivors keep their state and order
+        int k = 0;
+        for (int i = 0 ; i < expected.size() ; i++) {
+            if(Math.hypot(expected.getStore().getX(i) - 500, expected.getStore().getY(i) - 400) > 200) {
+                Assert.assertEquals(expected.getStore().getId(i), store.getId(k));
+                Assert.assertEquals(expected.getStore().getX(i), store.getX(k), 0d);
+                Assert.assertEquals(expected.getStore().getVelocityY(i), store.getVelocityY(k), 0d);
+                k++;
+            }
+        }
+        Assert.assertEquals(simulation.size(), k);
+        Assert.assertEquals(simulation.size(), simulation.removeBoids(i -> true));
+        Assert.assertEquals(0, simulation.size());
+    }
+
+    @Test
+    public void testSpeciesWeightsApplyToTheirBoidsOnly() {
+        FlockSimulation simulation = newSimulation(37, 400);
+        simulation.setCohesionWeight(2, 2.5d);
+        simulation.addRandomBoids(400);
+        FlockStore store = simulation.getStore();
+        for (int i = 0 ; i < store.size() ; i++) {
+            double expected = store.getColor(i) == 2 ? 2.5d : Boid.DEFAULT_WEIGHT;
+            Assert.assertEquals(expected, store.getCohesionWeight(i), 0d);
+        }
+
+        simulation.setColorSensitive(true);
+        Assert.assertTrue(simulation.isColorSensitive());
+        simulation.getSpecies().setInteraction(0, 1, SpeciesTable.Interaction.AVOID);
+        Assert.assertFalse(simulation.isColorSensitive());
+    }
+
+    @Test
+    public void testNeighbourListsMatchGridQueries() {
+        FlockSimulation grid = newSimulation(41, 600);
+        FlockSimulation listed = newSimulation(41, 600);
+        listed.setNeighbourSkin(30d);
+        for (int t = 0 ; t < 60 ; t++) {
+            if(t == 20) {
+                for (FlockSimulation s : new FlockSimulation[]{grid, listed}) {
+                    s.removeBoidsWithin(500, 400, 150);
+                    s.setColorSensitive(true);
+                }
+            }
+            grid.step(1d);
+            listed.step(1d);
+            FlockStore e = grid.getStore();
+            FlockStore a = listed.getStore();
+            Assert.assertEquals(e.size(), a.size());
+            for (int i = 0 ; i < e.size() ; i++) {
+                Assert.assertEquals(e.getX(i), a.getX(i), TOLERANCE);
+                Assert.assertEquals(e.getY(i), a.getY(i), TOLERANCE);
+            }
+        }
+        // boids fly 3px a tick, so the lists last about five ticks
+        Assert.assertTrue(listed.getNeighbourListRebuilds() > 5);
+        Assert.assertTrue(listed.getNeighbourListRebuilds() < 20);
+    }
+
+    @Test
+    public void testSequentialStepDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        FlockSimulation simulation = newSimulation(19, 2000);
+        for (int i = 0 ; i < 20 ; i++) {
+            simulation.step(1d);
+        }
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0 ; i < 20 ; i++) {
+            simulation.step(1d);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        Assert.assertEquals(0L, allocated);
+    }
+
+    @Test
+    public void testVectorizedStepDoesNotAllocate() {
+        Assume.assumeTrue(FlockKernel.VECTOR_API);
+        java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        FlockSimulation simulation = newSimulation(19, 2000);
+        simulation.setVectorized(true);
+        // the vectors only stay off the heap once C2 has compiled the walk
+        for (int i = 0 ; i < 200 ; i++) {
+            simulation.step(1d);
+        }
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0 ; i < 20 ; i++) {
+            simulation.step(1d);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        Assert.assertEquals(0L, allocated);
+    }
+}
@@ -0,0 +1,49 @@
+package com.tofti;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FlockStatisticsTest {
+    private static double TOLERANCE = 1e-9;
+
+    private static FlockSimulation flock(double... xyVxVy) {
+        FlockSimulation simulation = new FlockSimulation(1000, 1000, 3L);
+        for (int k = 0 ; k < xyVxVy.length ; k += 4) {
+            simulation.getStore().add(xyVxVy[k], xyVxVy[k + 1], xyVxVy[k + 2], xyVxVy[k + 3], 0);
+        }
+        return simulation;
+    }
+
+    @Test
+    public void testPolarization() {
+        Assert.assertEquals(1d, FlockStatistics.of(flock(10, 10, 1, 1, 500, 500, 2, 2)).getPolarization(), TOLERANCE);
+        Assert.assertEquals(0d, FlockStatistics.of(flock(10, 10, 1, 0, 500, 500, -3, 0)).getPolarization(),
+                TOLERANCE);
+        Assert.assertEquals(Math.sqrt(2) / 2,
+                FlockStatistics.of(flock(10, 10, 1, 0, 500, 500, 0, 1)).getPolarization(), TOLERANCE);
+    }
+
+    @Test
+    public void testClustersJoinChainsAndWrapAroundTheWorld() {
+        // a chain of boids 100px apart, a pair either side of the left and right edges, and a loner
+        FlockSimulation simulation = flock(
+                100, 300, 1, 0, 200, 300, 1, 0, 300, 300, 1, 0,
+                5, 700, 1, 0, 990, 700, 1, 0,
+                600, 600, 1, 0);
+        FlockStatistics statistics = FlockStatistics.of(simulation, 120d);
+        Assert.assertEquals(3, statistics.getClusters());
+        // the chain falls apart, the pair holds
+        Assert.assertEquals(5, FlockStatistics.of(simulation, 50d).getClusters());
+        // 100 for each of the chain, 15 for each of the pair, and the loner's distance to the pair's right boid
+        Assert.assertEquals((3 * 100d + 2 * 15d + Math.hypot(390, 100)) / 6, statistics.getMeanNearestNeighbour(),
+                TOLERANCE);
+    }
+
+    @Test
+    public void testFewBoids() {
+        FlockStatistics one = FlockStatistics.of(flock(10, 10, 1, 0));
+        Assert.assertEquals(1, one.getClusters());
+        Assert.assertTrue(Double.isNaN(one.getMeanNearestNeighbour()));
+        Assert.assertEquals(0, FlockStatistics.of(flock()).getClusters());
+    }
+}
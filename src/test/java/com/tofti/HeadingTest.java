@@ -0,0 +1,41 @@
+package com.tofti;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HeadingTest {
+    private static double TOLERANCE = 1d;
+
+    // the rotation NodeRenderer used to compute for every boid on every frame
+    private static double trigRotation(double vx, double vy) {
+        double r = -90 + Math.toDegrees(Math.atan(vy / vx));
+        return vx < 0.0d ? r - 180d : r;
+    }
+
+    private static double angleBetween(double a, double b) {
+        double d = Math.abs(a - b) % 360d;
+        return Math.min(d, 360d - d);
+    }
+
+    @Test
+    public void testMatchesTrigonometryAllTheWayRound() {
+        for (int degree = 0 ; degree < 3600 ; degree++) {
+            double angle = Math.toRadians(degree / 10d);
+            double vx = Boid.MAX_VELOCITY * Math.cos(angle);
+            double vy = Boid.MAX_VELOCITY * Math.sin(angle);
+            int step = Heading.quantize(vx, vy);
+            Assert.assertTrue(step >= 0 && step < Heading.STEPS);
+            Assert.assertEquals(0d, angleBetween(trigRotation(vx, vy), Heading.rotation(step)), TOLERANCE);
+        }
+    }
+
+    @Test
+    public void testAxesAndZero() {
+        Assert.assertEquals(0, Heading.quantize(0d, 0d));
+        Assert.assertEquals(0d, angleBetween(-90d, Heading.rotation(Heading.quantize(1d, 0d))), TOLERANCE);
+        Assert.assertEquals(0d, angleBetween(0d, Heading.rotation(Heading.quantize(0d, 1d))), TOLERANCE);
+        Assert.assertEquals(0d, angleBetween(90d, Heading.rotation(Heading.quantize(-1d, 0d))), TOLERANCE);
+        Assert.assertEquals(0d, angleBetween(180d, Heading.rotation(Heading.quantize(0d, -1d))), TOLERANCE);
+        Assert.assertEquals(Heading.quantize(2d, 1d), Heading.quantize(4d, 2d));
+    }
+}
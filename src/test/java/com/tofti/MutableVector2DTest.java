@@ -0,0 +1,51 @@
+package com.tofti;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MutableVector2DTest {
+    private static double TOLERANCE = 1E-6;
+
+    @Test
+    public void testArithmeticIsInPlace() {
+        MutableVector2D v = new MutableVector2D(1d, 2d);
+        Assert.assertSame(v, v.add(3d, 4d));
+        Assert.assertEquals(4d, v.getX(), TOLERANCE);
+        Assert.assertEquals(6d, v.getY(), TOLERANCE);
+
+        v.sub(new Vector2D(1d, 1d)).scale(2d);
+        Assert.assertEquals(6d, v.getX(), TOLERANCE);
+        Assert.assertEquals(10d, v.getY(), TOLERANCE);
+
+        v.divide(2d).add(new MutableVector2D(-3d, -5d));
+        Assert.assertEquals(0d, v.getX(), TOLERANCE);
+        Assert.assertEquals(0d, v.getY(), TOLERANCE);
+    }
+
+    @Test
+    public void testNormalizeMatchesVector2D() {
+        double[][] inputs = { {3d, 4d}, {-3d, -4d}, {10d, 0d}, {0d, 0d}, {0.1d, -7.3d} };
+        for(double[] in : inputs) {
+            Vector2D expected = new Vector2D(in[0], in[1]).normalizeTo(2.5d);
+            MutableVector2D actual = new MutableVector2D(in[0], in[1]).normalizeTo(2.5d);
+            Assert.assertEquals(expected.getX(), actual.getX(), 0d);
+            Assert.assertEquals(expected.getY(), actual.getY(), 0d);
+        }
+        Assert.assertEquals(1d, new MutableVector2D(-3d, 4d).normalize().getMagnitude(), TOLERANCE);
+    }
+
+    @Test
+    public void testDistanceSquared() {
+        Assert.assertEquals(25d, new MutableVector2D(0d, 0d).getDistanceSquaredTo(3d, 4d), TOLERANCE);
+        Assert.assertEquals(25d, new MutableVector2D(3d, 4d).getMagnitudeSquared(), TOLERANCE);
+        Assert.assertTrue(MutableVector2D.isWithinDistance(0d, 0d, 3d, 4d, 5.001d));
+        Assert.assertFalse(MutableVector2D.isWithinDistance(0d, 0d, 3d, 4d, 5d));
+    }
+
+    @Test
+    public void testSetAndToVector2D() {
+        Vector2D v = new MutableVector2D().set(new Vector2D(1.5d, -2.5d)).toVector2D();
+        Assert.assertEquals(1.5d, v.getX(), 0d);
+        Assert.assertEquals(-2.5d, v.getY(), 0d);
+    }
+}
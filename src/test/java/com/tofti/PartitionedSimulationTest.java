@@ -0,0 +1,85 @@
+package com.tofti;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class PartitionedSimulationTest {
+
+    private static FlockSimulation newSimulation(long seed, int boids) {
+        FlockSimulation simulation = new FlockSimulation(1024, 768, seed);
+        simulation.addRandomBoids(boids);
+        return simulation;
+    }
+
+    private static void assertSameAsSingle(FlockSimulation single, FlockSimulation split, TileLayout layout,
+                                           TileTransport transport, int ticks) throws IOException {
+        FlockSimulation gathered = new FlockSimulation(1024, 768, split.getSeed());
+        try (PartitionedSimulation tiles = new PartitionedSimulation(split, layout, transport)) {
+            for (int t = 0 ; t < ticks ; t++) {
+                single.step(1d);
+                tiles.step(1d);
+            }
+            Assert.assertEquals(single.size(), tiles.size());
+            tiles.copyTo(gathered);
+        }
+        Assert.assertEquals(single.getTick(), gathered.getTick());
+        FlockSimulationTest.assertSameState(single, gathered);
+        for (int i = 0 ; i < single.size() ; i++) {
+            Assert.assertEquals(single.getStore().getId(i), gathered.getStore().getId(i));
+        }
+    }
+
+    @Test
+    public void testTilesMatchSingleSimulation() throws IOException {
+        TileLayout layout = new TileLayout(1024, 768, 2, 2);
+        assertSameAsSingle(newSimulation(17, 600), newSimulation(17, 600), layout,
+                new InProcessTransport(layout.size()), 150);
+    }
+
+    @Test
+    public void testSocketTilesMatchWithSpeciesAndObstacles() throws IOException {
+        FlockSimulation single = newSimulation(23, 500);
+        FlockSimulation split = newSimulation(23, 500);
+        for (FlockSimulation s : new FlockSimulation[]{single, split}) {
+            s.setEnvironment(new Environment().addCircle(512, 384, 60).addAttractor(200, 200, 1d, 150));
+            s.getSpecies().setInteraction(0, 1, SpeciesTable.Interaction.AVOID);
+            s.getSpecies().setInteraction(1, 0, SpeciesTable.Interaction.CHASE);
+            s.getSpecies().setInteraction(2, 3, SpeciesTable.Interaction.IGNORE);
+        }
+        TileLayout layout = new TileLayout(1024, 768, 3, 2);
+        assertSameAsSingle(single, split, layout, new LoopbackSocketTransport(layout), 100);
+    }
+
+    @Test
+    public void testBoidsMigrateAcrossTilesAndEdges() throws IOException {
+        FlockSimulation simulation = new FlockSimulation(1024, 768, 3L);
+        int i = simulation.addBoid(510, 100);
+        simulation.getStore().vx[i] = Boid.MAX_VELOCITY;
+        simulation.getStore().vy[i] = 0d;
+        TileLayout layout = new TileLayout(1024, 768, 2, 1);
+        try (PartitionedSimulation tiles = new PartitionedSimulation(simulation, layout,
+                new InProcessTransport(layout.size()))) {
+            Assert.assertEquals(1, tiles.size(0));
+            for (int t = 0 ; t < 20 ; t++) {
+                tiles.step(1d);
+            }
+            Assert.assertEquals(1, tiles.size(1));
+            for (int t = 0 ; t < 1000 && tiles.size(0) == 0 ; t++) {
+                tiles.step(1d);
+            }
+            // wrapped around the edge of the world back into the first tile
+            Assert.assertEquals(1, tiles.size(0));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTilesNarrowerThanTheHaloAreRejected() throws IOException {
+        TileLayout layout = new TileLayout(1024, 768, 8, 1);
+        try (PartitionedSimulation tiles = new PartitionedSimulation(newSimulation(1, 10), layout,
+                new InProcessTransport(layout.size()))) {
+            tiles.step(1d);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.tofti;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+public class ScenarioTest {
+    private static double TOLERANCE = 1e-9;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path write(String... lines) throws IOException {
+        Path path = folder.getRoot().toPath().resolve("scenario.properties");
+        Files.write(path, Arrays.asList(lines));
+        return path;
+    }
+
+    @Test
+    public void testSweepExpandsEveryCombination() throws IOException {
+        Files.write(folder.getRoot().toPath().resolve("scene.txt"), Arrays.asList("circle 100 100 20"));
+        List<Scenario> scenarios = Scenario.load(write(
+                "boids = 50",
+                "ticks = 10",
+                "seeds = 1..3",
+                "cohesion = 0.5, 1.5",
+                "distribution = disc 500 400 100, gaussian 500 400 50",
+                "species.1.radii = 100 20 60 100",
+                "interaction.0.1 = avoid",
+                "environment = scene.txt"));
+        Assert.assertEquals(12, scenarios.size());
+        Assert.assertEquals(Arrays.asList("cohesion", "distribution"),
+                Arrays.asList(scenarios.get(0).getSwept().keySet().toArray()));
+        Assert.assertEquals(3L, scenarios.get(2).getSeed());
+        Assert.assertEquals("gaussian 500 400 50", scenarios.get(3).getSwept().get("distribution"));
+        Assert.assertEquals("1.5", scenarios.get(6).getSwept().get("cohesion"));
+
+        FlockSimulation simulation = scenarios.get(6).create();
+        Assert.assertEquals(50, simulation.size());
+        Assert.assertEquals(1.5d, simulation.getCohesionWeight(), 0d);
+        Assert.assertEquals(20d, simulation.getSpecies().get(1).getSeparationRadius(), 0d);
+        Assert.assertEquals(SpeciesTable.Interaction.AVOID, simulation.getSpecies().getInteraction(0, 1));
+        Assert.assertFalse(simulation.getEnvironment().isEmpty());
+        for (int i = 0 ; i < simulation.size() ; i++) {
+            Assert.assertTrue(Math.hypot(simulation.getStore().getX(i) - 500, simulation.getStore().getY(i) - 400)
+                    <= 100d);
+        }
+    }
+
+    @Test
+    public void testRejectsMistakesUpFront() throws IOException {
+        for (String[] lines : new String[][]{
+                {"ticks = 10"},
+                {"boids = 10", "ticks = 10", "cohesoin = 1"},
+                {"boids = 10", "ticks = 10", "species.9.cohesion = 1"},
+                {"boids = 10", "ticks = 10", "cohesion = 1, lots"},
+                {"boids = 10", "ticks = 10", "distribution = disc 1 2"},
+                {"boids = 10", "ticks = 10", "interaction.0.1 = hug"}}) {
+            try {
+                Scenario.load(write(lines));
+                Assert.fail(Arrays.toString(lines));
+            } catch (IOException expected) {
+                Assert.assertTrue(expected.getMessage().startsWith(folder.getRoot().toString()));
+            }
+        }
+    }
+
+    @Test
+    public void testBatchRowsMatchSingleRuns() throws IOException, InterruptedException {
+        List<Scenario> scenarios = Scenario.load(write(
+                "boids = 60",
+                "ticks = 50",
+                "world = 400 300",
+                "seeds = 7, 8",
+                "alignment = 0.2, 2"));
+        StringWriter out = new StringWriter();
+        BatchRunner.run(scenarios, 3, out);
+        String[] lines = out.toString().split("\n");
+        Assert.assertEquals("trial,seed,alignment,boids,ticks,polarization,clusters,mean_nearest_neighbour,seconds",
+                lines[0]);
+        Assert.assertEquals(5, lines.length);
+        for (int l = 1 ; l < lines.length ; l++) {
+            String[] row = lines[l].split(",");
+            Scenario scenario = scenarios.get(Integer.parseInt(row[0]));
+            Assert.assertEquals(scenario.getSwept().get("alignment"), row[2]);
+
+            FlockSimulation simulation = scenario.create();
+            for (int t = 0 ; t < 50 ; t++) {
+                simulation.step(1d);
+            }
+            FlockStatistics statistics = FlockStatistics.of(simulation);
+            Assert.assertEquals(statistics.getPolarization(), Double.parseDouble(row[5]), 1e-6);
+            Assert.assertEquals(statistics.getClusters(), Integer.parseInt(row[6]));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.tofti;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SimulationSchedulerTest {
+    private static double TOLERANCE = 1E-9;
+
+    private static SimulationScheduler scheduler(SimulationScheduler.CatchUpPolicy policy) {
+        // 10 steps per second, so one step every 100ms
+        return new SimulationScheduler(new FlockSimulation(1000, 1000, 3L), 10, 1d, policy, 3);
+    }
+
+    @Test
+    public void testCatchUpRunsMissedStepsUpToTheLimit() {
+        SimulationScheduler s = scheduler(SimulationScheduler.CatchUpPolicy.CATCH_UP);
+        long step = s.getStepNanos();
+        Assert.assertEquals(1, s.schedule(0));
+        Assert.assertEquals(0, s.schedule(step / 2));
+        Assert.assertEquals(2, s.schedule(2 * step));
+        Assert.assertEquals(0, s.schedule(2 * step + 1));
+        // ten steps behind: three are run and the rest are dropped
+        Assert.assertEquals(3, s.schedule(13 * step));
+        Assert.assertEquals(0, s.schedule(13 * step + step / 2));
+        Assert.assertEquals(1, s.schedule(14 * step));
+    }
+
+    @Test
+    public void testSlowDownRunsOneStepAtATime() {
+        SimulationScheduler s = scheduler(SimulationScheduler.CatchUpPolicy.SLOW_DOWN);
+        long step = s.getStepNanos();
+        Assert.assertEquals(1, s.schedule(0));
+        // four steps late: one step now and one straight after, the rest of the backlog is forgotten
+        Assert.assertEquals(1, s.schedule(5 * step));
+        Assert.assertEquals(1, s.schedule(5 * step + 1));
+        Assert.assertEquals(0, s.schedule(5 * step + 2));
+        Assert.assertEquals(1, s.schedule(6 * step));
+    }
+
+    @Test
+    public void testCommandsAreAppliedBeforeStepping() {
+        SimulationScheduler s = scheduler(SimulationScheduler.CatchUpPolicy.CATCH_UP);
+        s.submit(sim -> sim.addRandomBoids(25));
+        s.submit(sim -> sim.setAlignmentWeight(2d));
+        s.runSteps(2);
+
+        FlockSnapshot snapshot = s.acquire();
+        Assert.assertEquals(25, snapshot.size());
+        Assert.assertEquals(2L, snapshot.getTick());
+        Assert.assertSame(snapshot, s.acquire());
+    }
+
+    @Test
+    public void testFailingCommandStopsTheSchedulerAndIsRethrownOnClose() throws InterruptedException {
+        SimulationScheduler s = scheduler(SimulationScheduler.CatchUpPolicy.CATCH_UP);
+        AtomicReference<Throwable> handled = new AtomicReference<>();
+        CountDownLatch failed = new CountDownLatch(1);
+        s.setFailureHandler(t -> {
+            handled.set(t);
+            failed.countDown();
+        });
+        AtomicInteger steps = new AtomicInteger();
+        s.addStepListener(sim -> steps.incrementAndGet());
+        RuntimeException thrown = new RuntimeException("bad command");
+        s.submit(sim -> {
+            throw thrown;
+        });
+        s.start();
+
+        Assert.assertTrue(failed.await(5, TimeUnit.SECONDS));
+        Assert.assertSame(thrown, handled.get());
+        Assert.assertSame(thrown, s.getFailure());
+        Assert.assertEquals(0, steps.get());
+        try {
+            s.close();
+            Assert.fail("close should rethrow the failure");
+        } catch (IllegalStateException e) {
+            Assert.assertSame(thrown, e.getCause());
+        }
+    }
+
+    @Test
+    public void testInterpolatesFromPreviousStep() {
+        SimulationScheduler s = scheduler(SimulationScheduler.CatchUpPolicy.CATCH_UP);
+        s.submit(sim -> sim.addBoid(500, 500));
+        s.runSteps(1);
+
+        FlockSnapshot snapshot = s.acquire();
+        FlockSnapshot.Interpolated view = new FlockSnapshot.Interpolated();
+        Assert.assertEquals(500d, view.set(snapshot, 0d).getX(0), TOLERANCE);
+        Assert.assertEquals(snapshot.getX(0), view.set(snapshot, 1d).getX(0), TOLERANCE);
+        Assert.assertEquals((500d + snapshot.getX(0)) / 2, view.set(snapshot, 0.5d).getX(0), TOLERANCE);
+        // no sweep back across the world when a boid wraps
+        Assert.assertEquals(2d, FlockSnapshot.interpolate(998d, 2d, 0.5d, 1000d), TOLERANCE);
+    }
+
+    @Test
+    public void testTripleBufferNeverHandsOutTheWriteBuffer() {
+        AtomicInteger created = new AtomicInteger();
+        TripleBuffer<int[]> buffer = new TripleBuffer<>(() -> new int[] {created.getAndIncrement()});
+        Assert.assertFalse(buffer.hasFresh());
+        int[] held = buffer.acquire();
+
+        for (int i = 1 ; i <= 10 ; i++) {
+            int[] back = buffer.back();
+            Assert.assertNotSame(held, back);
+            back[0] = 100 + i;
+            buffer.publish();
+            Assert.assertTrue(buffer.hasFresh());
+            if(i % 3 == 0) {
+                held = buffer.acquire();
+                Assert.assertEquals(100 + i, held[0]);
+                Assert.assertFalse(buffer.hasFresh());
+            }
+        }
+        Assert.assertEquals(110, buffer.acquire()[0]);
+    }
+}
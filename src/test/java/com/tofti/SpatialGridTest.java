@@ -0,0 +1,122 @@
+package com.tofti;
+
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class SpatialGridTest {
+
+    private static Set<Integer> withinByGrid(SpatialGrid grid, double[] xs, double[] ys, double x, double y, double r) {
+        Set<Integer> found = new TreeSet<>();
+        Set<Integer> visited = new TreeSet<>();
+        grid.forEachCandidate(x, y, r, i -> {
+            Assert.assertTrue("candidate visited twice: " + i, visited.add(i));
+            if(withinDistance(xs, ys, i, x, y, r)) {
+                found.add(i);
+            }
+        });
+        return found;
+    }
+
+    private static Set<Integer> withinByScan(double[] xs, double[] ys, int n, double x, double y, double r) {
+        Set<Integer> found = new TreeSet<>();
+        for(int i = 0 ; i < n ; i++) {
+            if(withinDistance(xs, ys, i, x, y, r)) {
+                found.add(i);
+            }
+        }
+        return found;
+    }
+
+    private static boolean withinDistance(double[] xs, double[] ys, int i, double x, double y, double r) {
+        return Vector2D.getDistanceBetween(new Vector2D(xs[i], ys[i]), new Vector2D(x, y)) < r;
+    }
+
+    @Test
+    public void testMatchesLinearScan() {
+        Random rng = new Random(42);
+        int n = 2000;
+        double xBound = 1024;
+        double yBound = 768;
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for(int i = 0 ; i < n ; i++) {
+            // include positions just outside the bounds, as produced by Vector2D.wrapAround
+            xs[i] = rng.nextDouble() * (xBound + 6) - 3;
+            ys[i] = rng.nextDouble() * (yBound + 6) - 3;
+        }
+
+        SpatialGrid grid = new SpatialGrid(200);
+        grid.rebuild(xs, ys, n, xBound, yBound);
+        Assert.assertEquals(6, grid.getColumns());
+        Assert.assertEquals(4, grid.getRows());
+
+        for(double r : new double[]{ 10, 80, 120, 200, 203 }) {
+            for(int q = 0 ; q < 200 ; q++) {
+                double x = xs[q];
+                double y = ys[q];
+                Assert.assertEquals(withinByScan(xs, ys, n, x, y, r), withinByGrid(grid, xs, ys, x, y, r));
+            }
+        }
+    }
+
+    @Test
+    public void testVisitsEachItemOnceWhenQueryCoversWholeGrid() {
+        double[] xs = { 1, 50, 99, 10 };
+        double[] ys = { 1, 50, 99, 90 };
+        SpatialGrid grid = new SpatialGrid(40);
+        grid.rebuild(xs, ys, xs.length, 100, 100);
+
+        int[] visits = new int[xs.length];
+        grid.forEachCandidate(50, 50, 500, i -> visits[i]++);
+        for(int v : visits) {
+            Assert.assertEquals(1, v);
+        }
+    }
+
+    @Test
+    public void testRebuildReusesGrid() {
+        SpatialGrid grid = new SpatialGrid(10);
+        grid.rebuild(new double[]{ 5, 15 }, new double[]{ 5, 5 }, 2, 100, 100);
+        grid.rebuild(new double[]{ 95 }, new double[]{ 95 }, 1, 20, 20);
+        Assert.assertEquals(1, grid.size());
+        Assert.assertEquals(2, grid.getColumns());
+
+        int[] count = new int[1];
+        grid.forEachCandidate(95, 95, 1, i -> count[0]++);
+        Assert.assertEquals(1, count[0]);
+    }
+
+    @Test
+    public void testSpeciesMaskSkipsOtherSpecies() {
+        double[] xs = { 5, 6, 7, 8, 15 };
+        double[] ys = { 5, 5, 5, 5, 5 };
+        int[] species = { 2, 0, 2, 1, 0 };
+        SpatialGrid grid = new SpatialGrid(10);
+        grid.rebuild(xs, ys, species, 3, xs.length, 100, 100);
+        Assert.assertEquals(3, grid.getSpeciesCount());
+
+        List<Integer> visited = Lists.newArrayList();
+        grid.forEachCandidate(5, 5, 5, 1 << 2 | 1, visited::add);
+        // by cell, then species, then index
+        Assert.assertEquals(Arrays.asList(1, 0, 2, 4), visited);
+
+        visited.clear();
+        grid.forEachCandidate(5, 5, 5, visited::add);
+        Assert.assertEquals(5, visited.size());
+        visited.clear();
+        grid.forEachCandidate(5, 5, 5, 0, visited::add);
+        Assert.assertTrue(visited.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNonPositiveCellSize() {
+        new SpatialGrid(0);
+    }
+}
@@ -0,0 +1,182 @@
+package com.tofti;
+
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class TrajectoryRecorderTest {
+    private static double POSITION_TOLERANCE = 0.5 / TrajectoryFormat.POSITION_SCALE;
+    private static double VELOCITY_TOLERANCE = 0.5 / TrajectoryFormat.VELOCITY_SCALE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void assertSameFrame(TrajectoryFrame expected, TrajectoryFrame actual) {
+        Assert.assertEquals(expected.getTick(), actual.getTick());
+        Assert.assertEquals(expected.size(), actual.size());
+        Assert.assertEquals(expected.getXBound(), actual.getXBound(), POSITION_TOLERANCE);
+        for (int i = 0 ; i < expected.size() ; i++) {
+            Assert.assertEquals(expected.getX(i), actual.getX(i), POSITION_TOLERANCE);
+            Assert.assertEquals(expected.getY(i), actual.getY(i), POSITION_TOLERANCE);
+            Assert.assertEquals(expected.getVelocityX(i), actual.getVelocityX(i), VELOCITY_TOLERANCE);
+            Assert.assertEquals(expected.getVelocityY(i), actual.getVelocityY(i), VELOCITY_TOLERANCE);
+            Assert.assertEquals(expected.getColor(i), actual.getColor(i));
+            Assert.assertEquals(expected.getId(i), actual.getId(i));
+        }
+    }
+
+    // records 120 ticks of a flock that grows, then is cleared and regrown, returning every recorded frame
+    private static List<TrajectoryFrame> record(Path path, int every, int framesPerChunk) throws Exception {
+        List<TrajectoryFrame> expected = Lists.newArrayList();
+        FlockSimulation simulation = new FlockSimulation(800, 600, 11L);
+        simulation.addRandomBoids(150);
+        try (TrajectoryRecorder recorder = new TrajectoryRecorder(path, every, 2, framesPerChunk,
+                TrajectoryRecorder.Overflow.WAIT)) {
+            for (int i = 0 ; i < 120 ; i++) {
+                if(i == 40) {
+                    simulation.addRandomBoids(30);
+                }
+                if(i == 80) {
+                    simulation.clear();
+                    simulation.addRandomBoids(20);
+                }
+                simulation.step(1d);
+                recorder.accept(simulation);
+                if(simulation.getTick() % every == 0) {
+                    TrajectoryFrame frame = new TrajectoryFrame();
+                    frame.capture(simulation);
+                    expected.add(frame);
+                }
+            }
+            Assert.assertEquals(0L, recorder.getDropped());
+        }
+        return expected;
+    }
+
+    @Test
+    public void testReadsBackWhatWasRecorded() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("flock.trajectory");
+        List<TrajectoryFrame> expected = record(path, 3, 7);
+
+        try (TrajectoryReader reader = new TrajectoryReader(path)) {
+            Assert.assertEquals(3, reader.getEvery());
+            TrajectoryFrame frame = new TrajectoryFrame();
+            for (TrajectoryFrame e : expected) {
+                Assert.assertTrue(reader.next(frame));
+                assertSameFrame(e, frame);
+            }
+            Assert.assertFalse(reader.next(frame));
+        }
+        // far smaller than the 36 bytes a boid takes in doubles and ints
+        long boidFrames = expected.stream().mapToLong(TrajectoryFrame::size).sum();
+        Assert.assertTrue(Files.size(path) < boidFrames * 12);
+    }
+
+    @Test
+    public void testTruncatedRecordingEndsAtLastWholeChunk() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("flock.trajectory");
+        List<TrajectoryFrame> expected = record(path, 1, 50);
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 10));
+
+        try (TrajectoryReader reader = new TrajectoryReader(path)) {
+            TrajectoryFrame frame = new TrajectoryFrame();
+            int frames = 0;
+            while (reader.next(frame)) {
+                assertSameFrame(expected.get(frames), frame);
+                frames++;
+            }
+            Assert.assertEquals(100, frames);
+        }
+    }
+
+    @Test
+    public void testDropsFramesRatherThanBlocking() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("flock.trajectory");
+        FlockSimulation simulation = new FlockSimulation(800, 600, 3L);
+        simulation.addRandomBoids(10);
+        TrajectoryRecorder recorder = new TrajectoryRecorder(path, 1, 1, 4, TrajectoryRecorder.Overflow.DROP);
+        for (int i = 0 ; i < 1000 ; i++) {
+            simulation.step(1d);
+            recorder.accept(simulation);
+        }
+        recorder.close();
+        Assert.assertEquals(1000L, recorder.getWritten() + recorder.getDropped());
+    }
+
+    @Test
+    public void testPlayerInterpolatesBetweenRecordedFrames() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("flock.trajectory");
+        List<TrajectoryFrame> expected = record(path, 4, 16);
+        long nanosPerTick = TimeUnit.MILLISECONDS.toNanos(10);
+
+        try (TrajectoryPlayer player = new TrajectoryPlayer(path, 100d)) {
+            TrajectoryFrame first = expected.get(0);
+            TrajectoryFrame second = expected.get(1);
+            Assert.assertEquals(first.getX(5), player.frameAt(1000L).getX(5), POSITION_TOLERANCE);
+
+            double halfway = FlockSnapshot.interpolate(first.getX(5), second.getX(5), 0.5d, first.getXBound());
+            Assert.assertEquals(halfway, player.frameAt(1000L + 2 * nanosPerTick).getX(5), POSITION_TOLERANCE);
+            Assert.assertEquals(second.getX(5), player.frameAt(1000L + 4 * nanosPerTick).getX(5), POSITION_TOLERANCE);
+            Assert.assertEquals(expected.get(20).size(), player.frameAt(1000L + 80 * nanosPerTick).size());
+        }
+    }
+
+    @Test
+    public void testPlayerKeepsTimeAcrossRecordedFrames() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("flock.trajectory");
+        List<TrajectoryFrame> expected = record(path, 10, 16);
+        long nanosPerTick = TimeUnit.MILLISECONDS.toNanos(10);
+
+        try (TrajectoryPlayer player = new TrajectoryPlayer(path, 100d)) {
+            // drawn at about 60 frames a second, landing on each recorded frame before the flock is cleared at 80
+            long frameNanos = TimeUnit.MILLISECONDS.toNanos(16);
+            long now = 1000L;
+            for (int f = 0 ; f < 7 ; f++) {
+                long due = 1000L + f * 10 * nanosPerTick;
+                for ( ; now < due ; now += frameNanos) {
+                    player.frameAt(now);
+                }
+                Assert.assertEquals(expected.get(f).getX(5), player.frameAt(due).getX(5), POSITION_TOLERANCE);
+                now = due;
+            }
+        }
+    }
+
+    @Test
+    public void testInterpolatesEachBoidBetweenItsOwnPositions() {
+        FlockSimulation simulation = new FlockSimulation(800, 600, 5L);
+        simulation.addRandomBoids(30);
+        simulation.step(1d);
+        TrajectoryFrame from = new TrajectoryFrame();
+        from.capture(simulation);
+        // the boids after each removed one move down an index
+        simulation.removeBoids(i -> i % 3 == 0);
+        simulation.step(1d);
+        simulation.addRandomBoids(2);
+        TrajectoryFrame to = new TrajectoryFrame();
+        to.capture(simulation);
+
+        TrajectoryFrame.Between between = new TrajectoryFrame.Between().set(from, to, 0.5d);
+        Assert.assertEquals(to.size(), between.size());
+        for (int i = 0 ; i < to.size() ; i++) {
+            int j = 0;
+            while(j < from.size() && from.getId(j) != to.getId(i)) {
+                j++;
+            }
+            double x = j < from.size()
+                    ? FlockSnapshot.interpolate(from.getX(j), to.getX(i), 0.5d, to.getXBound())
+                    : to.getX(i);
+            Assert.assertEquals(x, between.getX(i), 1e-9);
+        }
+    }
+}
@@ -63,4 +63,12 @@ public class Vector2DTest extends TestCase {
         Assert.assertEquals(new Vector2D(-2d, -2d).getDistanceFrom(new Vector2D(-3d,-3d)), Math.sqrt(2d), 0.01);
         Assert.assertEquals(new Vector2D(-3d, -4d).getDistanceFrom(new Vector2D(3d,3d)), 9.219544457292887, 0.01);
     }
+
+    @Test
+    public void testDistanceSquaredBetween() {
+        Assert.assertEquals(Vector2D.getDistanceSquaredBetween(new Vector2D(2d, 2d), new Vector2D(3d,3d)), 2d, TOLERANCE);
+        Assert.assertEquals(new Vector2D(-3d, 4d).getMagnitudeSquared(), 25d, TOLERANCE);
+        Assert.assertTrue(Vector2D.isWithinDistance(new Vector2D(0d, 0d), new Vector2D(3d, 4d), 5.001d));
+        Assert.assertFalse(Vector2D.isWithinDistance(new Vector2D(0d, 0d), new Vector2D(3d, 4d), 5d));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.tofti;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ViewportTest {
+    private static double TOLERANCE = 1e-9;
+
+    @Test
+    public void testDefaultViewportShowsWorldOneToOne() {
+        Viewport viewport = new Viewport(1024, 768);
+        Assert.assertEquals(100d, viewport.toScreenX(100d), TOLERANCE);
+        Assert.assertEquals(700d, viewport.toScreenY(700d), TOLERANCE);
+        Assert.assertTrue(viewport.contains(0d, 0d, 0d));
+        Assert.assertFalse(viewport.contains(1030d, 10d, 0d));
+        Assert.assertTrue(viewport.contains(1030d, 10d, 10d));
+    }
+
+    @Test
+    public void testFitShowsWholeWorld() {
+        Viewport viewport = new Viewport(1000, 500);
+        viewport.fit(20000, 20000);
+        Assert.assertEquals(0.025d, viewport.getZoom(), TOLERANCE);
+        Assert.assertTrue(viewport.contains(0d, 0d, 0d));
+        Assert.assertTrue(viewport.contains(20000d, 20000d, 0d));
+        Assert.assertEquals(250d, viewport.toScreenX(0d), TOLERANCE);
+    }
+
+    @Test
+    public void testZoomKeepsPointUnderMouse() {
+        Viewport viewport = new Viewport(800, 600);
+        double x = viewport.toWorldX(200);
+        double y = viewport.toWorldY(150);
+        viewport.zoomAt(4d, 200, 150);
+        Assert.assertEquals(4d, viewport.getZoom(), TOLERANCE);
+        Assert.assertEquals(200d, viewport.toScreenX(x), TOLERANCE);
+        Assert.assertEquals(150d, viewport.toScreenY(y), TOLERANCE);
+        Assert.assertFalse(viewport.contains(700d, 500d, 0d));
+
+        viewport.zoomAt(1e-6, 0, 0);
+        Assert.assertEquals(Viewport.MIN_ZOOM, viewport.getZoom(), TOLERANCE);
+    }
+
+    @Test
+    public void testPanFollowsDrag() {
+        Viewport viewport = new Viewport(800, 600);
+        viewport.zoomAt(2d, 400, 300);
+        double x = viewport.toWorldX(100);
+        viewport.pan(50, -20);
+        Assert.assertEquals(150d, viewport.toScreenX(x), TOLERANCE);
+        Assert.assertEquals(x - 25d, viewport.toWorldX(100), TOLERANCE);
+    }
+
+    @Test
+    public void testDensityTilesCountOnlyVisibleBoids() {
+        FlockSimulation simulation = new FlockSimulation(4000, 4000, 5L);
+        simulation.addBoid(10, 10);
+        simulation.addBoid(12, 14);
+        simulation.addBoid(30, 10);
+        simulation.addBoid(3000, 3000);
+        TrajectoryFrame frame = new TrajectoryFrame();
+        frame.capture(simulation);
+
+        Viewport viewport = new Viewport(100, 100);
+        viewport.fit(200, 200);
+        DensityTiles tiles = new DensityTiles(Boid.COLOR_COUNT);
+        tiles.accumulate(frame, viewport, 8d);
+        Assert.assertEquals(13, tiles.getColumns());
+        Assert.assertEquals(2, tiles.getCount(0, 0));
+        Assert.assertEquals(1, tiles.getCount(1, 0));
+        Assert.assertEquals(2, tiles.getMax());
+        int total = 0;
+        for (int row = 0 ; row < tiles.getRows() ; row++) {
+            for (int column = 0 ; column < tiles.getColumns() ; column++) {
+                total += tiles.getCount(column, row);
+            }
+        }
+        Assert.assertEquals(3, total);
+        Assert.assertEquals(frame.getColor(2), tiles.getDominantColor(1, 0));
+    }
+}